@@ -0,0 +1,66 @@
+package com.yuriykoziy.tetris.benchmark;
+
+import com.yuriykoziy.tetris.logic.Board;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the Board movement operations. A new seeded board is started 
+ * whenever the game is over, so its cost is amortized over many operations.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private long seed;
+    private Board board;
+    
+    @Setup
+    public void setup() {
+        newBoard();
+    }
+    
+    @Benchmark
+    public Board fall() {
+        if(!board.isGameRunning()) {
+            newBoard();
+        }
+        board.fall();
+        return board;
+    }
+    
+    @Benchmark
+    public Board instantDrop() {
+        if(!board.isGameRunning()) {
+            newBoard();
+        }
+        board.instantDrop();
+        return board;
+    }
+    
+    @Benchmark
+    public Board rotate() {
+        board.rotate();
+        return board;
+    }
+    
+    private void newBoard() {
+        board = new Board(10, 20, 0, seed++);
+        board.startGame();
+    }
+}
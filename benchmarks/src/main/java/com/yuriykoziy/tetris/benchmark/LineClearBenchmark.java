@@ -0,0 +1,62 @@
+package com.yuriykoziy.tetris.benchmark;
+
+import com.yuriykoziy.tetris.logic.Field;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks full row detection and row collapsing (what Board.checkRows and 
+ * Board.collapseRows do on landing) for 0-4 cleared rows on a half filled field.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineClearBenchmark {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+    
+    @Param({"0", "1", "2", "3", "4"})
+    public int clears;
+    
+    private Field field;
+    
+    @Setup(Level.Invocation)
+    public void fill() {
+        field = new Field(WIDTH, HEIGHT);
+        for(int y = HEIGHT / 2; y < HEIGHT; y++) {
+            boolean full = (y >= HEIGHT - clears);
+            for(int x = 0; x < WIDTH; x++) {
+                if(full || (x != y % WIDTH)) {
+                    field.setBlock(x, y, 1 + (x % 7));
+                }
+            }
+        }
+    }
+    
+    @Benchmark
+    public int checkAndCollapseRows() {
+        for(int y = 0; y < field.getHeight(); y++) {
+            if(field.isRowFull(y)) {
+                return field.clearFullRows();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,76 @@
+package com.yuriykoziy.tetris.benchmark;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.panels.BoardPanel;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks BoardPanel painting into an offscreen image, both full paint and
+ * repaint of the dirty region around the spawned tetromino. The panel is never 
+ * displayed, so its game loop is not running and the board stays still.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+    private static final int WIDTH = 205;
+    private static final int HEIGHT = 405;
+    
+    private BoardPanel panel;
+    private BufferedImage image;
+    
+    @Setup
+    public void setup() {
+        Board board = new Board(10, 20, 0, 0);
+        board.startGame();
+        // land a few pieces so there is something on the ground
+        for(int i = 0; i < 8 && board.isGameRunning(); i++) {
+            board.instantDrop();
+        }
+        board.publishSnapshot();
+        panel = new BoardPanel(WIDTH, HEIGHT, board);
+        panel.setSize(WIDTH, HEIGHT);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    }
+    
+    @Benchmark
+    public BufferedImage paintComponent() {
+        Graphics2D g = image.createGraphics();
+        try {
+            panel.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+    
+    @Benchmark
+    public BufferedImage paintFallingTetrominoRegion() {
+        Graphics2D g = image.createGraphics();
+        try {
+            g.clipRect(60, 0, 81, 61);
+            panel.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,71 @@
+package com.yuriykoziy.tetris.benchmark;
+
+import com.yuriykoziy.tetris.ai.PlacementFinder;
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Field;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks enumeration of reachable placements of all seven tetrominoes 
+ * on an empty field and on a field with a ragged stack, and the shortest 
+ * path search done once the placement is chosen.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlacementBenchmark {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+    
+    @Param({"0", "8"})
+    public int stackHeight;
+    
+    private Field field;
+    private PlacementFinder finder;
+    private int type;
+    
+    @Setup
+    public void setup() {
+        field = new Field(WIDTH, HEIGHT);
+        SplittableRandom random = new SplittableRandom(1);
+        for(int y = HEIGHT - stackHeight; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                if(random.nextInt(100) < 60) {
+                    field.setBlock(x, y, 1 + (x % 7));
+                }
+            }
+        }
+        finder = new PlacementFinder(WIDTH, HEIGHT);
+    }
+    
+    @Benchmark
+    public int findPlacements() {
+        type = (type + 1) % 7;
+        return finder.find(field, type, 0, Board.getSpawnX(WIDTH), Board.SPAWN_Y);
+    }
+    
+    @Benchmark
+    public Object findPlacementAndPath() {
+        type = (type + 1) % 7;
+        finder.find(field, type, 0, Board.getSpawnX(WIDTH), Board.SPAWN_Y);
+        return finder.getPath(0);
+    }
+}
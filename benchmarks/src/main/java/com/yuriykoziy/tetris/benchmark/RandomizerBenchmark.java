@@ -0,0 +1,49 @@
+package com.yuriykoziy.tetris.benchmark;
+
+import com.yuriykoziy.tetris.logic.PieceQueue;
+import com.yuriykoziy.tetris.random.RandomizerType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks dealing a full bag worth of tetrominoes through the piece queue 
+ * for each randomizer.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomizerBenchmark {
+    @Param({"BAG", "CLASSIC", "HISTORY"})
+    public RandomizerType type;
+    
+    private PieceQueue pieces;
+    
+    @Setup
+    public void setup() {
+        pieces = new PieceQueue(type.create(0), 4);
+    }
+    
+    @Benchmark
+    public void dealBag(Blackhole bh) {
+        for(int i = 0; i < 7; i++) {
+            bh.consume(pieces.poll());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.yuriykoziy.tetris.benchmark;
+
+import com.yuriykoziy.tetris.logic.RowKernels;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks scalar and Vector API row kernels on a tall field whose lower three quarters
+ * are filled with a ragged stack without full rows: scanning the whole field for a full row
+ * and computing column heights with hole count.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class RowKernelsBenchmark {
+    private static final int HEIGHT = 2048;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"10", "64", "256"})
+    public int width;
+
+    private RowKernels rowKernels;
+    private long[] rows;
+    private int words;
+    private long lastWordMask;
+    private int[] heights;
+
+    @Setup
+    public void fill() {
+        rowKernels = "vector".equals(kernels) ? RowKernels.vector() : RowKernels.scalar();
+        if(rowKernels == null) {
+            throw new IllegalStateException("jdk.incubator.vector module is not available");
+        }
+        words = (width + Long.SIZE - 1) / Long.SIZE;
+        lastWordMask = ((width % Long.SIZE) == 0) ? -1L : (1L << (width % Long.SIZE)) - 1;
+        rows = new long[words * HEIGHT];
+        heights = new int[width];
+        SplittableRandom random = new SplittableRandom(width);
+        for(int y = HEIGHT / 4; y < HEIGHT; y++) {
+            for(int x = 0; x < width; x++) {
+                if(random.nextInt(8) != 0) {
+                    rows[y * words + x / Long.SIZE] |= 1L << x;
+                }
+            }
+            // keep one hole in every row so no row is full
+            int hole = random.nextInt(width);
+            rows[y * words + hole / Long.SIZE] &= ~(1L << hole);
+        }
+    }
+
+    @Benchmark
+    public int findFullRow() {
+        return rowKernels.findFullRow(rows, words, lastWordMask, 0, HEIGHT);
+    }
+
+    @Benchmark
+    public int analyzeColumns() {
+        return rowKernels.analyzeColumns(rows, words, width, 0, HEIGHT, heights);
+    }
+}
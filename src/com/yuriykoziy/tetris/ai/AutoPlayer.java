@@ -0,0 +1,108 @@
+package com.yuriykoziy.tetris.ai;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import com.yuriykoziy.tetris.sim.Player;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Player that plans placement of every tetromino with a {@link BeamSearch} and then feeds
+ * the shortest input path towards it, one input per call. If the tetromino ends up somewhere
+ * else than the path expects (gravity pulled it down meanwhile) the placement is planned again
+ * from where the tetromino is.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class AutoPlayer implements Player {
+    private final BeamSearch search;
+    private final int lookahead;
+    private Input[] path;
+    private int step;
+    private int expectedX;
+    private int expectedY;
+    private int expectedRotation;
+    private int plannedPiece = -1;
+
+    /**
+     * Constructs player searching current and next piece exhaustively on the calling thread.
+     *
+     * @param width  board width.
+     * @param height board height.
+     */
+    public AutoPlayer(int width, int height) {
+        this(width, height, Heuristic.DEFAULT, 1, 0, null);
+    }
+
+    /**
+     * @param width     board width.
+     * @param height    board height.
+     * @param heuristic field evaluation.
+     * @param lookahead number of preview pieces to search (0 - {@link Board#PREVIEW_SIZE}).
+     * @param beamWidth nodes kept on each search level, 0 keeps all of them.
+     * @param pool      pool used to parallelize the search, null to search on the calling thread.
+     */
+    public AutoPlayer(int width, int height, Heuristic heuristic, int lookahead, int beamWidth, ForkJoinPool pool) {
+        this(width, height, heuristic, lookahead, beamWidth, pool, 
+                (lookahead > 0) ? new EvaluationCache(EvaluationCache.DEFAULT_CAPACITY) : null);
+    }
+
+    /**
+     * @param width     board width.
+     * @param height    board height.
+     * @param heuristic field evaluation.
+     * @param lookahead number of preview pieces to search (0 - {@link Board#PREVIEW_SIZE}).
+     * @param beamWidth nodes kept on each search level, 0 keeps all of them.
+     * @param pool      pool used to parallelize the search, null to search on the calling thread.
+     * @param cache     evaluation cache, null to evaluate every node. Searches two and more 
+     *                  pieces ahead repeat most expansions of the previous search.
+     */
+    public AutoPlayer(int width, int height, Heuristic heuristic, int lookahead, int beamWidth, ForkJoinPool pool,
+            EvaluationCache cache) {
+        if((lookahead < 0) || (lookahead > Board.PREVIEW_SIZE)) {
+            throw new IllegalArgumentException("Invalid lookahead: " + lookahead);
+        }
+        this.lookahead = lookahead;
+        search = new BeamSearch(width, height, heuristic, beamWidth, pool, cache);
+    }
+
+    @Override
+    public Input nextInput(Board board) {
+        Tetromino tetro = board.getCurrentTetromino();
+        if((plannedPiece != board.getPiecesPlaced()) || (tetro.getXposition() != expectedX)
+                || (tetro.getYposition() != expectedY) || (tetro.getRotation() != expectedRotation)) {
+            plan(board);
+        }
+        if(step >= path.length) {
+            return Input.NONE;
+        }
+        Input input = path[step++];
+        switch(input) {
+            case LEFT: expectedX--; break;
+            case RIGHT: expectedX++; break;
+            case ROTATE: expectedRotation = Tetromino.nextRotation(expectedRotation); break;
+            case SOFT_DROP: expectedY++; break;
+            default: break;
+        }
+        return input;
+    }
+
+    /**
+     * @return search used by this player.
+     */
+    public BeamSearch getSearch() {
+        return search;
+    }
+
+    private void plan(Board board) {
+        Tetromino tetro = board.getCurrentTetromino();
+        int best = search.search(board, lookahead);
+        path = (best >= 0) ? search.getPlacements().getPath(best) : new Input[] {Input.HARD_DROP};
+        step = 0;
+        plannedPiece = board.getPiecesPlaced();
+        expectedX = tetro.getXposition();
+        expectedY = tetro.getYposition();
+        expectedRotation = tetro.getRotation();
+    }
+}
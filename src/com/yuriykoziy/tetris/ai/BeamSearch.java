@@ -0,0 +1,464 @@
+package com.yuriykoziy.tetris.ai;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.FieldView;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Chooses placement of the current tetromino by looking ahead at the known preview pieces.
+ * Every level expands all fields of the beam by every placement of the next piece,
+ * the best nodes by heuristic score form the next beam. With unlimited beam width the search
+ * is exhaustive, which is practical for current and next piece. Expansion of a level is split
+ * between workers on a ForkJoinPool, each worker owns its finder and scratch fields.
+ * Search of the next tetromino expands again most of the fields the previous search expanded
+ * one level deeper with the same piece, an {@link EvaluationCache} keeps such expansions
+ * so their placements are neither enumerated nor evaluated again.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class BeamSearch {
+    // mixed into field hash to tell expansions by different pieces apart
+    private static final long[] PIECE_KEYS = new SplittableRandom(Tetromino.TYPES).longs(Tetromino.TYPES).toArray();
+    // keeps packed placement coordinates positive
+    private static final int OFFSET = Tetromino.SIZE;
+
+    private final int width;
+    private final int height;
+    private final int spawnX;
+    private final Heuristic heuristic;
+    private final int beamWidth;
+    private final ForkJoinPool pool;
+    private final EvaluationCache cache;
+    private final long[] zobrist;
+    private final PlacementFinder rootFinder;
+    private final SearchField scratch;
+    private final Worker[] workers;
+    private final List<Callable<Void>> tasks = new ArrayList<>();
+    private final int[] preview = new int[Board.PREVIEW_SIZE];
+    private Nodes beam;
+    private Nodes next;
+    private int[] heap = new int[0];
+    private long nodes;
+
+    /**
+     * @param width     board width.
+     * @param height    board height.
+     * @param heuristic field evaluation.
+     * @param beamWidth number of nodes kept on each level, 0 keeps all of them.
+     * @param pool      pool used to expand levels in parallel, null to search on the calling thread.
+     */
+    public BeamSearch(int width, int height, Heuristic heuristic, int beamWidth, ForkJoinPool pool) {
+        this(width, height, heuristic, beamWidth, pool, null);
+    }
+
+    /**
+     * @param width     board width (1-64).
+     * @param height    board height.
+     * @param heuristic field evaluation.
+     * @param beamWidth number of nodes kept on each level, 0 keeps all of them.
+     * @param pool      pool used to expand levels in parallel, null to search on the calling thread.
+     * @param cache     cache of evaluations made with the same heuristic, null to evaluate every node.
+     */
+    public BeamSearch(int width, int height, Heuristic heuristic, int beamWidth, ForkJoinPool pool, 
+            EvaluationCache cache) {
+        if((width < 1) || (width > Long.SIZE)) {
+            throw new IllegalArgumentException("Search supports widths up to 64: " + width);
+        }
+        this.width = width;
+        this.height = height;
+        spawnX = Board.getSpawnX(width);
+        this.heuristic = heuristic;
+        this.beamWidth = beamWidth;
+        this.pool = pool;
+        this.cache = cache;
+        zobrist = SearchField.createZobristKeys(width, height);
+        rootFinder = new PlacementFinder(width, height);
+        scratch = new SearchField(width, height, zobrist);
+        workers = new Worker[(pool != null) ? pool.getParallelism() : 1];
+        for(int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker();
+        }
+        beam = new Nodes(height);
+        next = new Nodes(height);
+    }
+
+    /**
+     * Searches placements of the current tetromino of the board from its current position.
+     * The board must not change during the search.
+     *
+     * @param board     game board.
+     * @param lookahead number of preview pieces to look at (0 - {@link Board#PREVIEW_SIZE}).
+     * @return index of the best placement in {@link #getPlacements()}, -1 if there is none.
+     */
+    public int search(Board board, int lookahead) {
+        for(int i = 0; i < lookahead; i++) {
+            preview[i] = board.getPreviewType(i);
+        }
+        Tetromino tetro = board.getCurrentTetromino();
+        return search(board.getField(), tetro.getType(), tetro.getRotation(), tetro.getXposition(),
+                tetro.getYposition(), preview, lookahead);
+    }
+
+    /**
+     * Searches placements of a tetromino on a field that is not backed by a board,
+     * e.g. one rebuilt from a remote game. The field must not change during the search.
+     *
+     * @param field     field to search.
+     * @param type      tetromino type (0-6).
+     * @param rotation  tetromino rotation.
+     * @param x         tetromino X position.
+     * @param y         tetromino Y position.
+     * @param preview   types of the upcoming tetrominoes.
+     * @param lookahead number of preview pieces to look at, at most preview length.
+     * @return index of the best placement in {@link #getPlacements()}, -1 if there is none.
+     */
+    public int search(FieldView field, int type, int rotation, int x, int y, int[] preview, int lookahead) {
+        int count = rootFinder.find(field, type, rotation, x, y);
+        if(count == 0) {
+            return -1;
+        }
+        beam.clear();
+        for(int i = 0; i < count; i++) {
+            scratch.copyFrom(field);
+            int lines = scratch.place(type, rootFinder.getRotation(i), rootFinder.getX(i), rootFinder.getY(i));
+            beam.add(scratch, i, lines, heuristic.evaluate(scratch, lines));
+        }
+        nodes += count;
+
+        for(int depth = 0; depth < lookahead; depth++) {
+            prune(beam);
+            boolean last = (depth == lookahead - 1);
+            int best = expand(preview[depth], !last);
+            if(best < 0) {
+                // no piece can spawn on any field of the beam, judge by what we have
+                break;
+            }
+            if(last) {
+                return best;
+            }
+            Nodes swap = beam;
+            beam = next;
+            next = swap;
+        }
+        int best = 0;
+        for(int i = 1; i < beam.size; i++) {
+            if(beam.scores[i] > beam.scores[best]) {
+                best = i;
+            }
+        }
+        return beam.roots[best];
+    }
+
+    /**
+     * @return finder holding placements of the current tetromino from the last search.
+     */
+    public PlacementFinder getPlacements() {
+        return rootFinder;
+    }
+
+    /**
+     * @return evaluation cache or null if not used.
+     */
+    public EvaluationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return total number of evaluated nodes.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Expands every node of the beam by placements of given piece into the next beam.
+     *
+     * @return root placement of the best child, -1 if there are no children.
+     */
+    private int expand(int type, boolean keepNodes) {
+        int parts = Math.min(workers.length, beam.size);
+        int chunk = (beam.size + parts - 1) / parts;
+        for(int i = 0; i < parts; i++) {
+            workers[i].prepare(type, i * chunk, Math.min(beam.size, (i + 1) * chunk), keepNodes);
+        }
+        if(parts == 1) {
+            workers[0].call();
+        } else {
+            tasks.clear();
+            for(int i = 0; i < parts; i++) {
+                tasks.add(workers[i]);
+            }
+            try {
+                for(Future<Void> f : pool.invokeAll(tasks)) {
+                    f.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Search failed", ex.getCause());
+            }
+        }
+
+        next.clear();
+        int bestRoot = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < parts; i++) {
+            Worker w = workers[i];
+            nodes += w.expanded;
+            if(w.bestScore > bestScore) {
+                bestScore = w.bestScore;
+                bestRoot = w.bestRoot;
+            }
+            if(keepNodes) {
+                next.addAll(w.children);
+            }
+        }
+        return bestRoot;
+    }
+
+    /**
+     * Keeps only the best {@code beamWidth} nodes, selected with a min-heap on score.
+     */
+    private void prune(Nodes nodes) {
+        if((beamWidth <= 0) || (nodes.size <= beamWidth)) {
+            return;
+        }
+        if(heap.length < beamWidth) {
+            heap = new int[beamWidth];
+        }
+        int size = 0;
+        for(int i = 0; i < nodes.size; i++) {
+            if(size < beamWidth) {
+                heap[size] = i;
+                siftUp(nodes.scores, size++);
+            } else if(nodes.scores[i] > nodes.scores[heap[0]]) {
+                heap[0] = i;
+                siftDown(nodes.scores, size);
+            }
+        }
+        Arrays.sort(heap, 0, size);
+        for(int i = 0; i < size; i++) {
+            nodes.move(heap[i], i);
+        }
+        nodes.size = size;
+    }
+
+    private void siftUp(double[] scores, int i) {
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(scores[heap[parent]] <= scores[heap[i]]) {
+                return;
+            }
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(double[] scores, int size) {
+        int i = 0;
+        while(true) {
+            int least = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if((left < size) && (scores[heap[left]] < scores[heap[least]])) {
+                least = left;
+            }
+            if((right < size) && (scores[heap[right]] < scores[heap[least]])) {
+                least = right;
+            }
+            if(least == i) {
+                return;
+            }
+            swap(least, i);
+            i = least;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+
+    /**
+     * Expands a slice of the beam, children go into worker's own buffer.
+     */
+    private final class Worker implements Callable<Void> {
+        private final PlacementFinder finder = new PlacementFinder(width, height);
+        private final SearchField parent = new SearchField(width, height, zobrist);
+        private final SearchField child = new SearchField(width, height, zobrist);
+        private final Nodes children = new Nodes(height);
+        // expansion of the current parent: packed placements, field scores and cleared lines
+        private int[] placements = new int[64];
+        private double[] scores = new double[64];
+        private byte[] lines = new byte[64];
+        private int type;
+        private int from;
+        private int to;
+        private boolean keepNodes;
+        private int bestRoot;
+        private double bestScore;
+        private int expanded;
+
+        void prepare(int type, int from, int to, boolean keepNodes) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.keepNodes = keepNodes;
+        }
+
+        @Override
+        public Void call() {
+            children.clear();
+            bestRoot = -1;
+            bestScore = Double.NEGATIVE_INFINITY;
+            expanded = 0;
+            for(int i = from; i < to; i++) {
+                beam.load(i, parent);
+                int count = expand();
+                for(int j = 0; j < count; j++) {
+                    int total = beam.lines[i] + lines[j];
+                    double score = scores[j] + heuristic.evaluateLines(total);
+                    if(keepNodes) {
+                        int packed = placements[j];
+                        child.copyFrom(parent);
+                        child.place(type, packed >>> 24, (packed & 0xFFF) - OFFSET, ((packed >>> 12) & 0xFFF) - OFFSET);
+                        children.add(child, beam.roots[i], total, score);
+                    }
+                    if(score > bestScore) {
+                        bestScore = score;
+                        bestRoot = beam.roots[i];
+                    }
+                }
+                expanded += count;
+            }
+            return null;
+        }
+
+        /**
+         * Fills placements of the piece on parent field with their evaluations, from cache if possible.
+         *
+         * @return number of placements.
+         */
+        private int expand() {
+            long key = parent.getHash() ^ PIECE_KEYS[type];
+            EvaluationCache.Entry entry = (cache != null) ? cache.get(key) : null;
+            if(entry != null) {
+                int count = entry.placements.length;
+                ensureCapacity(count);
+                System.arraycopy(entry.placements, 0, placements, 0, count);
+                System.arraycopy(entry.scores, 0, scores, 0, count);
+                System.arraycopy(entry.lines, 0, lines, 0, count);
+                return count;
+            }
+            int count = finder.find(parent, type, 0, spawnX, Board.SPAWN_Y);
+            ensureCapacity(count);
+            for(int j = 0; j < count; j++) {
+                int rotation = finder.getRotation(j);
+                int x = finder.getX(j);
+                int y = finder.getY(j);
+                child.copyFrom(parent);
+                lines[j] = (byte) child.place(type, rotation, x, y);
+                scores[j] = heuristic.evaluateField(child);
+                placements[j] = (rotation << 24) | ((y + OFFSET) << 12) | (x + OFFSET);
+            }
+            if(cache != null) {
+                cache.put(new EvaluationCache.Entry(key, Arrays.copyOf(placements, count), 
+                        Arrays.copyOf(scores, count), Arrays.copyOf(lines, count)));
+            }
+            return count;
+        }
+
+        private void ensureCapacity(int count) {
+            if(count > placements.length) {
+                placements = Arrays.copyOf(placements, count);
+                scores = Arrays.copyOf(scores, count);
+                lines = Arrays.copyOf(lines, count);
+            }
+        }
+    }
+
+    /**
+     * Growable column store of search nodes: field rows and hash, root placement, cleared lines and score.
+     */
+    private static final class Nodes {
+        private final int height;
+        private long[] rows;
+        private long[] hashes;
+        private int[] roots;
+        private int[] lines;
+        private double[] scores;
+        private int size;
+
+        Nodes(int height) {
+            this.height = height;
+            rows = new long[height * Tetromino.TYPES * 16];
+            roots = new int[Tetromino.TYPES * 16];
+            hashes = new long[roots.length];
+            lines = new int[roots.length];
+            scores = new double[roots.length];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(SearchField field, int root, int cleared, double score) {
+            ensureCapacity(size + 1);
+            field.store(rows, size * height);
+            hashes[size] = field.getHash();
+            roots[size] = root;
+            lines[size] = cleared;
+            scores[size] = score;
+            size++;
+        }
+
+        void addAll(Nodes other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.rows, 0, rows, size * height, other.size * height);
+            System.arraycopy(other.hashes, 0, hashes, size, other.size);
+            System.arraycopy(other.roots, 0, roots, size, other.size);
+            System.arraycopy(other.lines, 0, lines, size, other.size);
+            System.arraycopy(other.scores, 0, scores, size, other.size);
+            size += other.size;
+        }
+
+        void load(int index, SearchField field) {
+            field.load(rows, index * height, hashes[index]);
+        }
+
+        /**
+         * Moves node to a lower or equal index.
+         */
+        void move(int from, int to) {
+            if(from != to) {
+                System.arraycopy(rows, from * height, rows, to * height, height);
+                hashes[to] = hashes[from];
+                roots[to] = roots[from];
+                lines[to] = lines[from];
+                scores[to] = scores[from];
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if(capacity > roots.length) {
+                int length = Math.max(capacity, roots.length * 2);
+                rows = Arrays.copyOf(rows, length * height);
+                hashes = Arrays.copyOf(hashes, length);
+                roots = Arrays.copyOf(roots, length);
+                lines = Arrays.copyOf(lines, length);
+                scores = Arrays.copyOf(scores, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.yuriykoziy.tetris.ai;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free cache of evaluated expansions: for a field and a piece type it keeps
+ * every placement of the piece with the evaluation of the resulting field. Keys are Zobrist
+ * hashes of the field occupancy mixed with a key of the piece type.
+ * The table is split into buckets of {@link #WAYS} slots, a full bucket evicts with the clock
+ * policy: recently hit slots get a second chance, the hand stops at the first slot not hit
+ * since its last pass. Slots are written without locks, entries are immutable and carry
+ * their key, so a reader sees either a complete entry or a miss.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class EvaluationCache {
+    public static final int WAYS = 4;
+    public static final int DEFAULT_CAPACITY = 1 << 13;
+
+    private final Entry[] entries;
+    private final boolean[] referenced;
+    private final byte[] hands;
+    private final int bucketMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries, rounded up to a power of two.
+     */
+    public EvaluationCache(int capacity) {
+        int size = (capacity <= WAYS) ? WAYS : Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entry[size];
+        referenced = new boolean[size];
+        hands = new byte[size / WAYS];
+        bucketMask = size / WAYS - 1;
+    }
+
+    /**
+     * @param key field and piece hash.
+     * @return cached entry or null.
+     */
+    Entry get(long key) {
+        int base = bucket(key) * WAYS;
+        for(int i = base; i < base + WAYS; i++) {
+            Entry entry = entries[i];
+            if((entry != null) && (entry.key == key)) {
+                referenced[i] = true;
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param entry entry to store, replaces entry with the same key.
+     */
+    void put(Entry entry) {
+        int bucket = bucket(entry.key);
+        int base = bucket * WAYS;
+        int slot = -1;
+        for(int i = base; i < base + WAYS; i++) {
+            Entry old = entries[i];
+            if((old == null) || (old.key == entry.key)) {
+                slot = i;
+                break;
+            }
+        }
+        if(slot < 0) {
+            int hand = hands[bucket];
+            while(referenced[base + hand]) {
+                referenced[base + hand] = false;
+                hand = (hand + 1) & (WAYS - 1);
+            }
+            slot = base + hand;
+            hands[bucket] = (byte) ((hand + 1) & (WAYS - 1));
+            evictions.increment();
+        }
+        referenced[slot] = false;
+        entries[slot] = entry;
+    }
+
+    /**
+     * @return maximum number of entries.
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return fraction of lookups that found the key.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    /**
+     * Resets hit, miss and eviction counters.
+     */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EvaluationCache[capacity=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.3f]",
+                getCapacity(), getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+
+    private int bucket(long key) {
+        return (int) (key ^ (key >>> 32)) & bucketMask;
+    }
+
+    /**
+     * Placements of a piece on a field with evaluation of the field after each of them.
+     * Final fields make the entry safe to publish through the racy table.
+     */
+    static final class Entry {
+        final long key;
+        final int[] placements;
+        final double[] scores;
+        final byte[] lines;
+
+        Entry(long key, int[] placements, double[] scores, byte[] lines) {
+            this.key = key;
+            this.placements = placements;
+            this.scores = scores;
+            this.lines = lines;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.yuriykoziy.tetris.ai;
+
+import java.util.Arrays;
+
+/**
+ * Linear evaluation of a field after placement, higher is better.
+ * Weights apply to holes, aggregate height, bumpiness, wells and cleared lines.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class Heuristic {
+    public static final int FEATURES = 5;
+    public static final Heuristic DEFAULT = new Heuristic(-0.35663, -0.510066, -0.184483, -0.1, 0.760666);
+
+    private final double holes;
+    private final double aggregateHeight;
+    private final double bumpiness;
+    private final double wells;
+    private final double lines;
+
+    /**
+     * @param holes           weight of empty cells covered by blocks.
+     * @param aggregateHeight weight of the sum of column heights.
+     * @param bumpiness       weight of the sum of height differences between neighbour columns.
+     * @param wells           weight of the depth of columns lower than both neighbours.
+     * @param lines           weight of lines cleared on the way to the field.
+     */
+    public Heuristic(double holes, double aggregateHeight, double bumpiness, double wells, double lines) {
+        this.holes = holes;
+        this.aggregateHeight = aggregateHeight;
+        this.bumpiness = bumpiness;
+        this.wells = wells;
+        this.lines = lines;
+    }
+
+    /**
+     * @param weights weights in the order of {@link #toArray()}.
+     */
+    public Heuristic(double[] weights) {
+        this(weights[0], weights[1], weights[2], weights[3], weights[4]);
+    }
+
+    /**
+     * @return weights of holes, aggregate height, bumpiness, wells and lines.
+     */
+    public double[] toArray() {
+        return new double[] {holes, aggregateHeight, bumpiness, wells, lines};
+    }
+
+    /**
+     * @param field        field to evaluate.
+     * @param clearedLines lines cleared by placements leading to the field.
+     * @return evaluation score.
+     */
+    double evaluate(SearchField field, int clearedLines) {
+        return evaluateField(field) + evaluateLines(clearedLines);
+    }
+
+    /**
+     * @return part of the evaluation that depends only on field occupancy.
+     */
+    double evaluateField(SearchField field) {
+        field.analyze();
+        return holes * field.getHoles()
+                + aggregateHeight * field.getAggregateHeight()
+                + bumpiness * field.getBumpiness()
+                + wells * field.getWells();
+    }
+
+    double evaluateLines(int clearedLines) {
+        return lines * clearedLines;
+    }
+
+    @Override
+    public String toString() {
+        return "Heuristic" + Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,468 @@
+package com.yuriykoziy.tetris.ai;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.FieldView;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.Arrays;
+
+/**
+ * Enumerates every distinct final position a tetromino can reach from its current position
+ * using the same moves and collision rules as the Board (shift, in place rotation, soft drop).
+ * Reachable positions are flooded row by row as bitmasks of X positions, one mask per rotation,
+ * so a whole row is shifted, rotated and dropped at once. Shortest input paths are found by
+ * a breadth first search over (x, y, rotation) states, run only when a path is requested.
+ * All buffers are allocated once per field size and reused.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class PlacementFinder {
+    // tetromino cells may hang this far outside of the field on left and top side
+    private static final int PAD = Tetromino.SIZE - 1;
+
+    private static final Input[] INPUTS = Input.values();
+
+    // first rotation with identical occupied shape, e.g. I, S and Z have only two distinct shapes
+    private static final int[][] CANONICAL_ROTATION = new int[Tetromino.TYPES][Tetromino.ROTATIONS];
+
+    static {
+        for(int type = 0; type < Tetromino.TYPES; type++) {
+            for(int rotation = 0; rotation < Tetromino.ROTATIONS; rotation++) {
+                int canonical = rotation;
+                for(int other = 0; other < rotation; other++) {
+                    if(getShape(type, other) == getShape(type, rotation)) {
+                        canonical = other;
+                        break;
+                    }
+                }
+                CANONICAL_ROTATION[type][rotation] = canonical;
+            }
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rowStride;
+    private final boolean bitParallel;
+    private final long[] fitMasks;
+    private final long[] reachMasks;
+    private final long[] visited;
+    private final long[] landed;
+    private final int[] queue;
+    private final int[] parent;
+    private final byte[] move;
+    private final int[] placements;
+    private final int[] columnHeights;
+
+    // per rotation position limits of the searched tetromino
+    private final int[] minX = new int[Tetromino.ROTATIONS];
+    private final int[] maxX = new int[Tetromino.ROTATIONS];
+    private final int[] minY = new int[Tetromino.ROTATIONS];
+    private final int[] maxY = new int[Tetromino.ROTATIONS];
+    // tetromino above this Y position cannot touch any landed block
+    private final int[] openY = new int[Tetromino.ROTATIONS];
+
+    private FieldView field;
+    private int type;
+    private int start;
+    private int count;
+    private boolean pathsValid;
+    // fit masks of the rows below the starting position are filled in
+    private boolean floodDone;
+
+    /**
+     * Constructs finder for fields of given size.
+     *
+     * @param width field width.
+     * @param height field height.
+     */
+    public PlacementFinder(int width, int height) {
+        this.width = width;
+        this.height = height;
+        columns = width + PAD;
+        rowStride = columns * (height + PAD);
+        bitParallel = columns <= Long.SIZE;
+        int states = rowStride * Tetromino.ROTATIONS;
+        fitMasks = new long[(height + PAD) * Tetromino.ROTATIONS];
+        reachMasks = new long[(height + PAD) * Tetromino.ROTATIONS];
+        visited = new long[(states + 63) >>> 6];
+        landed = new long[(states + 63) >>> 6];
+        queue = new int[states];
+        parent = new int[states];
+        move = new byte[states];
+        placements = new int[states];
+        columnHeights = new int[width];
+    }
+
+    /**
+     * Enumerates placements of the current tetromino of the board.
+     *
+     * @param board game board.
+     * @return number of distinct placements found.
+     */
+    public int find(Board board) {
+        Tetromino tetro = board.getCurrentTetromino();
+        return find(board.getField(), tetro.getType(), tetro.getRotation(), tetro.getXposition(), tetro.getYposition());
+    }
+
+    /**
+     * Enumerates placements of a tetromino starting at given position.
+     * Field must not change while placements and paths of this search are used.
+     *
+     * @param field field to search, must match size of this finder.
+     * @param type tetromino type (0-6).
+     * @param rotation starting rotation.
+     * @param x starting X position.
+     * @param y starting Y position.
+     * @return number of distinct placements found, 0 if the starting position is blocked.
+     */
+    public int find(FieldView field, int type, int rotation, int x, int y) {
+        if((field.getWidth() != width) || (field.getHeight() != height)) {
+            throw new IllegalArgumentException("Field size does not match finder: "
+                    + field.getWidth() + "x" + field.getHeight());
+        }
+        this.field = field;
+        this.type = type;
+        count = 0;
+        pathsValid = false;
+        floodDone = false;
+        Arrays.fill(landed, 0);
+        int surface = updateColumnHeights(field);
+        for(int r = 0; r < Tetromino.ROTATIONS; r++) {
+            minX[r] = -Tetromino.getMinX(type, r);
+            maxX[r] = width - 1 - Tetromino.getMaxX(type, r);
+            minY[r] = -Tetromino.getMinY(type, r);
+            maxY[r] = height - 1 - Tetromino.getMaxY(type, r);
+            openY[r] = surface - Tetromino.getMaxY(type, r);
+        }
+        if(!fits(rotation, x, y)) {
+            return 0;
+        }
+        start = encode(rotation, x, y);
+        if(bitParallel) {
+            flood(rotation, x, y);
+        } else {
+            searchPaths();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of placements found by the last search.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return tetromino type of the last search.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @param index placement index.
+     * @return tetromino X position of the placement.
+     */
+    public int getX(int index) {
+        return getXOf(placements[index]);
+    }
+
+    /**
+     * @param index placement index.
+     * @return tetromino Y position of the placement.
+     */
+    public int getY(int index) {
+        return getYOf(placements[index]);
+    }
+
+    /**
+     * @param index placement index.
+     * @return tetromino rotation of the placement.
+     */
+    public int getRotation(int index) {
+        return getRotationOf(placements[index]);
+    }
+
+    /**
+     * Reconstructs shortest input sequence leading to the placement,
+     * terminated by a hard drop that locks the tetromino.
+     *
+     * @param index placement index.
+     * @return inputs to apply to the board.
+     */
+    public Input[] getPath(int index) {
+        if(!pathsValid) {
+            searchPaths();
+        }
+        int length = 1;
+        for(int state = placements[index]; parent[state] >= 0; state = parent[state]) {
+            length++;
+        }
+        Input[] path = new Input[length];
+        path[--length] = Input.HARD_DROP;
+        for(int state = placements[index]; parent[state] >= 0; state = parent[state]) {
+            path[--length] = INPUTS[move[state]];
+        }
+        return path;
+    }
+
+    /**
+     * @param x column.
+     * @return height of the highest occupied cell of the column in the last searched field, 0 if empty.
+     */
+    public int getColumnHeight(int x) {
+        return columnHeights[x];
+    }
+
+    /**
+     * Computes column heights, tetromino placed fully above the highest column
+     * can only collide with field walls.
+     *
+     * @return topmost occupied row.
+     */
+    private int updateColumnHeights(FieldView field) {
+        Arrays.fill(columnHeights, 0);
+        int surface = height;
+        for(int word = 0; word < field.getWordsPerRow(); word++) {
+            long seen = 0;
+            for(int row = 0; row < height; row++) {
+                long mask = field.getRowWord(row, word);
+                long fresh = mask & ~seen;
+                if(fresh == 0) {
+                    continue;
+                }
+                surface = Math.min(surface, row);
+                seen |= mask;
+                while(fresh != 0) {
+                    columnHeights[(word << 6) + Long.numberOfTrailingZeros(fresh)] = height - row;
+                    fresh &= fresh - 1;
+                }
+            }
+        }
+        return surface;
+    }
+
+    /**
+     * Floods reachable positions row by row. Bit X + PAD of a row mask stands for tetromino
+     * at that X position, moves never go up so each row is final once its shifts and
+     * rotations settle, landing positions are those whose drop is blocked.
+     */
+    private void flood(int rotation, int x, int y) {
+        int rows = height + PAD;
+        for(int r = 0; r < Tetromino.ROTATIONS; r++) {
+            for(int row = y + PAD; row < rows; row++) {
+                fitMasks[r * rows + row] = computeFitMask(r, row - PAD);
+            }
+        }
+        floodDone = true;
+        Arrays.fill(reachMasks, 0);
+        reachMasks[rotation * rows + y + PAD] = 1L << (x + PAD);
+
+        for(int row = y + PAD; row < rows; row++) {
+            boolean changed = true;
+            while(changed) {
+                changed = false;
+                for(int r = 0; r < Tetromino.ROTATIONS; r++) {
+                    int i = r * rows + row;
+                    long reach = fill(reachMasks[i], fitMasks[i]);
+                    int j = Tetromino.nextRotation(r) * rows + row;
+                    long rotated = reach & fitMasks[j];
+                    reachMasks[i] = reach;
+                    if((rotated & ~reachMasks[j]) != 0) {
+                        reachMasks[j] |= rotated;
+                        changed = true;
+                    }
+                }
+            }
+            for(int r = 0; r < Tetromino.ROTATIONS; r++) {
+                int i = r * rows + row;
+                long below = (row + 1 < rows) ? fitMasks[i + 1] : 0;
+                if(row + 1 < rows) {
+                    reachMasks[i + 1] |= reachMasks[i] & below;
+                }
+                long lands = reachMasks[i] & ~below;
+                while(lands != 0) {
+                    int p = Long.numberOfTrailingZeros(lands);
+                    addPlacement(encode(r, p - PAD, row - PAD), r, p - PAD, row - PAD);
+                    lands &= lands - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return mask of X positions where tetromino in given rotation fits at row Y.
+     */
+    private long computeFitMask(int rotation, int y) {
+        if((y < minY[rotation]) || (y > maxY[rotation]) || (minX[rotation] > maxX[rotation])) {
+            return 0;
+        }
+        long range = (-1L >>> (Long.SIZE - (maxX[rotation] - minX[rotation] + 1))) << (minX[rotation] + PAD);
+        if(y < openY[rotation]) {
+            return range;
+        }
+        long blocked = 0;
+        for(int row = Tetromino.getMinY(type, rotation); row <= Tetromino.getMaxY(type, rotation); row++) {
+            long cells = field.getRowMask(y + row) << PAD;
+            int mask = Tetromino.getRowMask(type, rotation, row);
+            while(mask != 0) {
+                blocked |= cells >>> Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+            }
+        }
+        return range & ~blocked;
+    }
+
+    /**
+     * Extends reached positions left and right through runs of free positions
+     * using logarithmic shift steps.
+     */
+    private static long fill(long reach, long free) {
+        long up = reach;
+        long pass = free;
+        up |= pass & (up << 1);
+        pass &= pass << 1;
+        up |= pass & (up << 2);
+        pass &= pass << 2;
+        up |= pass & (up << 4);
+        pass &= pass << 4;
+        up |= pass & (up << 8);
+        pass &= pass << 8;
+        up |= pass & (up << 16);
+        pass &= pass << 16;
+        up |= pass & (up << 32);
+
+        long down = reach;
+        pass = free;
+        down |= pass & (down >>> 1);
+        pass &= pass >>> 1;
+        down |= pass & (down >>> 2);
+        pass &= pass >>> 2;
+        down |= pass & (down >>> 4);
+        pass &= pass >>> 4;
+        down |= pass & (down >>> 8);
+        pass &= pass >>> 8;
+        down |= pass & (down >>> 16);
+        pass &= pass >>> 16;
+        down |= pass & (down >>> 32);
+        return up | down;
+    }
+
+    /**
+     * Breadth first search from the starting position recording parent of every state,
+     * collects placements as well when the bitmask flood is not usable for the field width.
+     */
+    private void searchPaths() {
+        boolean collect = !bitParallel;
+        Arrays.fill(visited, 0);
+        visit(start, -1, Input.NONE);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = pack(getRotationOf(start), getXOf(start), getYOf(start));
+        while(head < tail) {
+            // queue holds unpacked coordinates, dividing the state index back is much slower
+            int packed = queue[head++];
+            int r = packed >>> 24;
+            int sy = ((packed >>> 12) & 0xFFF) - PAD;
+            int sx = (packed & 0xFFF) - PAD;
+            int state = encode(r, sx, sy);
+
+            if(fits(r, sx - 1, sy) && tryVisit(state - 1, state, Input.LEFT)) {
+                queue[tail++] = packed - 1;
+            }
+            if(fits(r, sx + 1, sy) && tryVisit(state + 1, state, Input.RIGHT)) {
+                queue[tail++] = packed + 1;
+            }
+            int nr = Tetromino.nextRotation(r);
+            if(fits(nr, sx, sy) && tryVisit(encode(nr, sx, sy), state, Input.ROTATE)) {
+                queue[tail++] = pack(nr, sx, sy);
+            }
+            if(!fits(r, sx, sy + 1)) {
+                if(collect) {
+                    addPlacement(state, r, sx, sy);
+                }
+            } else if(tryVisit(state + columns, state, Input.SOFT_DROP)) {
+                queue[tail++] = packed + (1 << 12);
+            }
+        }
+        pathsValid = true;
+    }
+
+    private boolean fits(int rotation, int x, int y) {
+        if((x < minX[rotation]) || (x > maxX[rotation]) || (y < minY[rotation]) || (y > maxY[rotation])) {
+            return false;
+        }
+        if(floodDone) {
+            return (fitMasks[rotation * (height + PAD) + y + PAD] & (1L << (x + PAD))) != 0;
+        }
+        if(y < openY[rotation]) {
+            return true;
+        }
+        return !Board.isColliding(field, type, rotation, x, y);
+    }
+
+    private void addPlacement(int state, int rotation, int x, int y) {
+        int canonical = CANONICAL_ROTATION[type][rotation];
+        int key = encode(canonical,
+                x + Tetromino.getMinX(type, rotation) - Tetromino.getMinX(type, canonical),
+                y + Tetromino.getMinY(type, rotation) - Tetromino.getMinY(type, canonical));
+        if(!isSet(landed, key)) {
+            landed[key >>> 6] |= 1L << key;
+            placements[count++] = state;
+        }
+    }
+
+    private boolean tryVisit(int state, int from, Input input) {
+        if(isSet(visited, state)) {
+            return false;
+        }
+        visit(state, from, input);
+        return true;
+    }
+
+    private void visit(int state, int from, Input input) {
+        visited[state >>> 6] |= 1L << state;
+        parent[state] = from;
+        move[state] = (byte) input.ordinal();
+    }
+
+    private int encode(int rotation, int x, int y) {
+        return rotation * rowStride + (y + PAD) * columns + (x + PAD);
+    }
+
+    private int getXOf(int state) {
+        return state % columns - PAD;
+    }
+
+    private int getYOf(int state) {
+        return (state % rowStride) / columns - PAD;
+    }
+
+    private int getRotationOf(int state) {
+        return state / rowStride;
+    }
+
+    private static int pack(int rotation, int x, int y) {
+        return (rotation << 24) | ((y + PAD) << 12) | (x + PAD);
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return rotation shape packed as 4 bit rows aligned to its bounding box.
+     */
+    private static int getShape(int type, int rotation) {
+        int shape = 0;
+        int minX = Tetromino.getMinX(type, rotation);
+        for(int row = Tetromino.getMinY(type, rotation); row <= Tetromino.getMaxY(type, rotation); row++) {
+            shape = (shape << Tetromino.SIZE) | (Tetromino.getRowMask(type, rotation, row) >>> minX);
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,233 @@
+package com.yuriykoziy.tetris.ai;
+
+import com.yuriykoziy.tetris.logic.FieldView;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.SplittableRandom;
+
+/**
+ * Occupancy only copy of the field used as scratch space by the search.
+ * Placing a tetromino clears full rows the same way the Board does,
+ * features used by the heuristic are computed in a single pass over the rows.
+ * Zobrist hash of the occupancy is updated incrementally with every placed cell
+ * and recomputed only when rows were cleared.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class SearchField implements FieldView {
+    private final int width;
+    private final int height;
+    private final long fullRowMask;
+    private final long[] rows;
+    private final int[] heights;
+    private final long[] zobrist;
+    private long hash;
+
+    // features of the last analyzed field
+    private int holes;
+    private int aggregateHeight;
+    private int bumpiness;
+    private int wells;
+
+    /**
+     * @param zobrist random keys of all cells shared by fields of the same search,
+     *                see {@link #createZobristKeys(int, int)}.
+     */
+    SearchField(int width, int height, long[] zobrist) {
+        this.width = width;
+        this.height = height;
+        this.zobrist = zobrist;
+        fullRowMask = (width == Long.SIZE) ? -1L : (1L << width) - 1;
+        rows = new long[height];
+        heights = new int[width];
+    }
+
+    /**
+     * @return one random key per cell, row-major.
+     */
+    static long[] createZobristKeys(int width, int height) {
+        SplittableRandom random = new SplittableRandom(width * 31L + height);
+        long[] keys = new long[width * height];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        if((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
+            return true;
+        }
+        return (rows[y] & (1L << x)) != 0;
+    }
+
+    @Override
+    public int getType(int x, int y) {
+        return isBlocked(x, y) ? 1 : 0;
+    }
+
+    @Override
+    public long getRowMask(int y) {
+        return rows[y];
+    }
+
+    @Override
+    public long getRowWord(int y, int word) {
+        return rows[y];
+    }
+
+    @Override
+    public int getWordsPerRow() {
+        return 1;
+    }
+
+    /**
+     * @return Zobrist hash of the occupancy.
+     */
+    long getHash() {
+        return hash;
+    }
+
+    void copyFrom(FieldView field) {
+        for(int y = 0; y < height; y++) {
+            rows[y] = field.getRowMask(y);
+        }
+        rehash();
+    }
+
+    void copyFrom(SearchField field) {
+        System.arraycopy(field.rows, 0, rows, 0, height);
+        hash = field.hash;
+    }
+
+    void load(long[] src, int offset, long hash) {
+        System.arraycopy(src, offset, rows, 0, height);
+        this.hash = hash;
+    }
+
+    void store(long[] dst, int offset) {
+        System.arraycopy(rows, 0, dst, offset, height);
+    }
+
+    /**
+     * Locks tetromino into the field, caller guarantees the position is free.
+     *
+     * @return number of cleared rows.
+     */
+    int place(int type, int rotation, int x, int y) {
+        int top = y + Tetromino.getMinY(type, rotation);
+        int bottom = y + Tetromino.getMaxY(type, rotation);
+        for(int cell = 0; cell < Tetromino.CELLS; cell++) {
+            hash ^= zobrist[(y + Tetromino.getCellY(type, rotation, cell)) * width 
+                    + x + Tetromino.getCellX(type, rotation, cell)];
+        }
+        boolean full = false;
+        for(int row = top; row <= bottom; row++) {
+            long mask = Tetromino.getRowMask(type, rotation, row - y);
+            rows[row] |= (x >= 0) ? mask << x : mask >>> -x;
+            full |= rows[row] == fullRowMask;
+        }
+        if(!full) {
+            return 0;
+        }
+        int dst = bottom;
+        for(int src = bottom; src >= 0; src--) {
+            if(rows[src] != fullRowMask) {
+                rows[dst--] = rows[src];
+            }
+        }
+        int cleared = dst + 1;
+        for(int row = 0; row < cleared; row++) {
+            rows[row] = 0;
+        }
+        rehash();
+        return cleared;
+    }
+
+    private void rehash() {
+        long h = 0;
+        for(int y = 0; y < height; y++) {
+            long row = rows[y];
+            while(row != 0) {
+                h ^= zobrist[y * width + Long.numberOfTrailingZeros(row)];
+                row &= row - 1;
+            }
+        }
+        hash = h;
+    }
+
+    /**
+     * Computes column heights, holes (empty cells below column tops), aggregate height,
+     * bumpiness (height differences of neighbour columns) and wells (depth of columns
+     * lower than both neighbours, walls count as full height).
+     */
+    void analyze() {
+        long covered = 0;
+        int holeCount = 0;
+        for(int x = 0; x < width; x++) {
+            heights[x] = 0;
+        }
+        for(int y = 0; y < height; y++) {
+            long row = rows[y];
+            holeCount += Long.bitCount(covered & ~row);
+            long fresh = row & ~covered;
+            while(fresh != 0) {
+                heights[Long.numberOfTrailingZeros(fresh)] = height - y;
+                fresh &= fresh - 1;
+            }
+            covered |= row;
+        }
+        int aggregate = 0;
+        int bumps = 0;
+        int wellDepth = 0;
+        for(int x = 0; x < width; x++) {
+            int h = heights[x];
+            aggregate += h;
+            int left = (x == 0) ? height : heights[x - 1];
+            int right = (x == width - 1) ? height : heights[x + 1];
+            if(x < width - 1) {
+                bumps += Math.abs(h - right);
+            }
+            int depth = Math.min(left, right) - h;
+            if(depth > 0) {
+                wellDepth += depth;
+            }
+        }
+        holes = holeCount;
+        aggregateHeight = aggregate;
+        bumpiness = bumps;
+        wells = wellDepth;
+    }
+
+    int getHoles() {
+        return holes;
+    }
+
+    int getAggregateHeight() {
+        return aggregateHeight;
+    }
+
+    int getBumpiness() {
+        return bumpiness;
+    }
+
+    int getWells() {
+        return wells;
+    }
+}
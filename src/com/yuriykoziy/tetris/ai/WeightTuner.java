@@ -0,0 +1,357 @@
+package com.yuriykoziy.tetris.ai;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.sim.BatchRunner;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tunes {@link Heuristic} weights with a genetic algorithm. Fitness of a candidate is the mean
+ * Board score of seeded headless autoplayer games, so line clears are valued the way
+ * the game scores them, including the level multiplier. All candidates of a round play the same
+ * seeds and games are spread over all worker threads. Candidates are evaluated by successive
+ * halving: after every round only the better half plays on, clearly losing candidates
+ * stop early with the fitness of the games they played. Population is written to a checkpoint
+ * file after every generation and a run with the same file resumes from it.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class WeightTuner {
+    private static final int ELITES = 2;
+    private static final int TOURNAMENT = 3;
+    private static final int MAX_ROUNDS = 3;
+    private static final double MUTATION_RATE = 0.3;
+    private static final double MUTATION_SIGMA = 0.2;
+    // candidates that survived more rounds rank first, then by fitness
+    private static final Comparator<Candidate> RANKING = Comparator.comparingInt(Candidate::getGames)
+            .thenComparingDouble(Candidate::getFitness).reversed();
+
+    private final int threads;
+    private final int width;
+    private final int height;
+    private final int lookahead;
+    private final int gamesPerRound;
+    private final long maxTicks;
+
+    /**
+     * @param threads       number of worker threads.
+     * @param width         board width.
+     * @param height        board height.
+     * @param lookahead     preview pieces searched by the autoplayer.
+     * @param gamesPerRound games every surviving candidate plays in a round.
+     * @param maxTicks      tick limit of a game.
+     */
+    public WeightTuner(int threads, int width, int height, int lookahead, int gamesPerRound, long maxTicks) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+        this.width = width;
+        this.height = height;
+        this.lookahead = lookahead;
+        this.gamesPerRound = gamesPerRound;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Evaluates population and breeds the next one.
+     *
+     * @param population current population, fitness of its candidates is updated.
+     * @param generation generation number, seeds of games and breeding are derived from it.
+     * @param seed       master seed of the run.
+     * @return next population, elites first.
+     */
+    public List<Candidate> evolve(List<Candidate> population, int generation, long seed) {
+        SplittableRandom random = new SplittableRandom(seed ^ (generation * 0x9E3779B97F4A7C15L));
+        evaluate(population, random.nextLong());
+        population.sort(RANKING);
+
+        List<Candidate> next = new ArrayList<>();
+        for(int i = 0; i < Math.min(ELITES, population.size()); i++) {
+            next.add(new Candidate(population.get(i).getWeights()));
+        }
+        while(next.size() < population.size()) {
+            Candidate a = select(population, random);
+            Candidate b = select(population, random);
+            next.add(new Candidate(crossover(a, b, random)));
+        }
+        return next;
+    }
+
+    /**
+     * Plays rounds of games, after each round the worse half of the remaining candidates stops.
+     *
+     * @param population candidates to evaluate.
+     * @param seed       seed of the game seeds.
+     */
+    public void evaluate(List<Candidate> population, long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Candidate> alive = new ArrayList<>(population);
+        for(Candidate c : alive) {
+            c.reset();
+        }
+        for(int round = 0; round < MAX_ROUNDS && !alive.isEmpty(); round++) {
+            long[] games = new long[gamesPerRound];
+            for(int i = 0; i < games.length; i++) {
+                games[i] = seeds.nextLong();
+            }
+            playRound(alive, games);
+            alive.sort(Comparator.comparingDouble(Candidate::getFitness).reversed());
+            int keep = Math.max(ELITES, alive.size() / 2);
+            if(keep >= alive.size()) {
+                break;
+            }
+            alive.subList(keep, alive.size()).clear();
+        }
+    }
+
+    private void playRound(List<Candidate> candidates, long[] seeds) {
+        int tasks = candidates.size() * seeds.length;
+        int[] scores = new int[tasks];
+        AtomicInteger nextTask = new AtomicInteger();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            workers.add(() -> {
+                for(int t = nextTask.getAndIncrement(); t < tasks; t = nextTask.getAndIncrement()) {
+                    Candidate c = candidates.get(t / seeds.length);
+                    long seed = seeds[t % seeds.length];
+                    AutoPlayer player = new AutoPlayer(width, height, new Heuristic(c.getWeights()), lookahead, 0, null);
+                    scores[t] = BatchRunner.play(new Board(width, height, 0, seed), player, seed, maxTicks).getScore();
+                }
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for(Future<Void> f : pool.invokeAll(workers)) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tuning interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Game failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        for(int t = 0; t < tasks; t++) {
+            candidates.get(t / seeds.length).addGame(scores[t]);
+        }
+    }
+
+    private static Candidate select(List<Candidate> population, SplittableRandom random) {
+        Candidate best = population.get(random.nextInt(population.size()));
+        for(int i = 1; i < TOURNAMENT; i++) {
+            Candidate c = population.get(random.nextInt(population.size()));
+            if(RANKING.compare(c, best) < 0) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fitness weighted blend of parents with gaussian mutation, normalized to unit length
+     * as only the direction of weights affects which placement wins.
+     */
+    private static double[] crossover(Candidate a, Candidate b, SplittableRandom random) {
+        double fa = Math.max(a.getFitness(), 0) + 1;
+        double fb = Math.max(b.getFitness(), 0) + 1;
+        double[] wa = a.getWeights();
+        double[] wb = b.getWeights();
+        double[] child = new double[Heuristic.FEATURES];
+        for(int i = 0; i < child.length; i++) {
+            child[i] = (wa[i] * fa + wb[i] * fb) / (fa + fb);
+            if(random.nextDouble() < MUTATION_RATE) {
+                child[i] += gaussian(random) * MUTATION_SIGMA;
+            }
+        }
+        return normalize(child);
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller transform
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static double[] normalize(double[] weights) {
+        double length = 0;
+        for(double w : weights) {
+            length += w * w;
+        }
+        length = Math.sqrt(length);
+        if(length > 0) {
+            for(int i = 0; i < weights.length; i++) {
+                weights[i] /= length;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * @param size   population size.
+     * @param random random source.
+     * @return default weights followed by random unit weight vectors.
+     */
+    public static List<Candidate> createPopulation(int size, SplittableRandom random) {
+        List<Candidate> population = new ArrayList<>();
+        population.add(new Candidate(normalize(Heuristic.DEFAULT.toArray())));
+        while(population.size() < size) {
+            double[] weights = new double[Heuristic.FEATURES];
+            for(int i = 0; i < weights.length; i++) {
+                weights[i] = random.nextDouble(-1, 1);
+            }
+            population.add(new Candidate(normalize(weights)));
+        }
+        return population;
+    }
+
+    /**
+     * Writes generation number and population, through a temporary file so an interrupted
+     * write leaves the previous checkpoint intact.
+     *
+     * @param file       checkpoint file.
+     * @param generation number of the generation the population belongs to.
+     * @param population population.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void saveCheckpoint(Path file, int generation, List<Candidate> population) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try(BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write("generation " + generation);
+            out.newLine();
+            for(Candidate c : population) {
+                StringBuilder line = new StringBuilder();
+                for(double w : c.getWeights()) {
+                    line.append(String.format(Locale.ROOT, "%.9f ", w));
+                }
+                out.write(line.toString().trim());
+                out.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file       checkpoint file.
+     * @param population receives candidates of the checkpoint.
+     * @return generation number of the checkpoint.
+     * @throws IOException if the file cannot be read.
+     */
+    public static int loadCheckpoint(Path file, List<Candidate> population) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if(lines.isEmpty() || !lines.get(0).startsWith("generation ")) {
+            throw new IOException("Not a tuner checkpoint: " + file);
+        }
+        for(String line : lines.subList(1, lines.size())) {
+            if(line.isBlank()) {
+                continue;
+            }
+            double[] weights = Arrays.stream(line.trim().split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+            if(weights.length != Heuristic.FEATURES) {
+                throw new IOException("Invalid weights in checkpoint: " + line);
+            }
+            population.add(new Candidate(weights));
+        }
+        return Integer.parseInt(lines.get(0).substring("generation ".length()).trim());
+    }
+
+    /**
+     * Runs the tuner from the command line, resuming from the checkpoint if it exists.
+     * A resumed run keeps the population size of the checkpoint, a different size given is rejected.
+     * Arguments: [checkpoint] [generations] [population] [games per round] [threads] [seed].
+     *
+     * @param args command line arguments.
+     * @throws IOException if the checkpoint cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path checkpoint = Paths.get(args.length > 0 ? args[0] : "tuner.checkpoint");
+        int generations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        List<Candidate> population = new ArrayList<>();
+        int generation = 0;
+        if(Files.exists(checkpoint)) {
+            generation = loadCheckpoint(checkpoint, population);
+            // breeding keeps the population size, so a resumed run cannot change it
+            if((args.length > 2) && (size != population.size())) {
+                throw new IllegalArgumentException("Population size " + size + " does not match checkpoint "
+                        + checkpoint + " of " + population.size() + " candidates");
+            }
+            System.out.println("Resuming generation " + generation + " of " + population.size()
+                    + " candidates from " + checkpoint);
+        } else {
+            population = createPopulation(size, new SplittableRandom(seed));
+        }
+
+        WeightTuner tuner = new WeightTuner(threads, 10, 20, 0, games, 20_000);
+        for(; generation < generations; generation++) {
+            long start = System.nanoTime();
+            List<Candidate> next = tuner.evolve(population, generation, seed);
+            Candidate best = population.get(0);
+            System.out.printf(Locale.ROOT, "generation %d: best %.0f over %d games %s (%.1f s)%n", generation,
+                    best.getFitness(), best.getGames(), new Heuristic(best.getWeights()), (System.nanoTime() - start) / 1e9);
+            population = next;
+            saveCheckpoint(checkpoint, generation + 1, population);
+        }
+    }
+
+    /**
+     * Weight vector with mean score of the games it played.
+     */
+    public static class Candidate {
+        private final double[] weights;
+        private long totalScore;
+        private int games;
+
+        public Candidate(double[] weights) {
+            this.weights = weights.clone();
+        }
+
+        public double[] getWeights() {
+            return weights.clone();
+        }
+
+        /**
+         * @return mean score, 0 before any game was played.
+         */
+        public double getFitness() {
+            return (games == 0) ? 0 : (double) totalScore / games;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        void addGame(int score) {
+            totalScore += score;
+            games++;
+        }
+
+        void reset() {
+            totalScore = 0;
+            games = 0;
+        }
+    }
+}
@@ -1,42 +1,70 @@
 package com.yuriykoziy.tetris.logic;
 
 import com.yuriykoziy.tetris.piece.Tetromino;
-import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
-import javax.swing.event.SwingPropertyChangeSupport;
+import com.yuriykoziy.tetris.random.BagRandomizer;
+import com.yuriykoziy.tetris.random.Randomizer;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class implements Tetris game logic.
+ * It has no dependencies on AWT or Swing, game is advanced by calling {@link #step(Input)} 
+ * once per logic tick and state changes are reported to {@link BoardListener}s.
  * 
  * @author Yuriy Koziy
  * @version 1.01
  */
 
-public class Board {
-    public static final int TETROMINO_SIZE = 4; 
+public class Board implements SnapshotSource {
+    public static final int TETROMINO_SIZE = Tetromino.SIZE; 
+    public static final int TICK_MILLIS = 10;
+    public static final int PREVIEW_SIZE = 4;
+    public static final int GARBAGE_BLOCK = Tetromino.TYPES + 1;
     
-    public int field[][];
+    private static final int EVENT_LAND = 1;
+    private static final int EVENT_CLEAR = 2;
+    private static final int EVENT_NEXT = 4;
+    private static final int EVENT_GAME_OVER = 8;
+    private static final int EVENT_GARBAGE = 16;
     
-    private static final String SCORE = "score";
-    private static final String LEVEL = "level";
-    private static final String LINES = "lines";
-    private static final String TYPE = "type"; 
+    public static final int SPAWN_Y = -1;
+    
+    private static final BoardListener[] NO_LISTENERS = new BoardListener[0];
+    private static final int[] LEVEL_DELAYS = calculateLevelSpeeds();
+    // garbage lines sent to the opponent by clearing 0-4 rows at once
+    private static final int[] ATTACK_LINES = {0, 0, 1, 2, 4};
     private final int BOARD_WIDTH;
     private final int BOARD_HEIGHT;
+    private final int spawnX;
     private int score;
     private int linesCleared;
     private int level; 
+    private int piecesPlaced;
     private Tetromino currentTetromino;
-    private Tetromino nextTetromino;
     private boolean isGameRunning;
+    private long ticks;
+    private int gravityTicks;
+    
+    private final Field field;
+    
+    private final PieceQueue pieces;
     
-    private Queue<Tetromino> tetrominoesList;
+    private BoardListener[] listeners = NO_LISTENERS;
+    private InputRecorder recorder;
     
-    private final SwingPropertyChangeSupport pcs;
+    // events collected during a single call and fired once at its end
+    private int pendingEvents;
+    private int landedType, landedRotation, landedX, landedY;
+    private int clearedRows;
+    private int firedScore = -1, firedLines = -1, firedLevel = -1;
+    private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>();
+    
+    // versus garbage: queue of received batches, lines and hole column of each
+    private int[] garbageLines = new int[8];
+    private int[] garbageHoles = new int[8];
+    private int garbageHead, garbageBatches;
+    private int pendingGarbage;
+    private int outgoingGarbage;
+    private int raisedRows, raisedHole;
    
     /**
      * Constructs Tetris game board of given width and height, also initial level is specified.
@@ -46,15 +74,54 @@ public class Board {
      * @param level  game level (0-8).
      */
     public Board(int width, int height, int level) {
+        this(width, height, level, System.nanoTime());
+    }
+    
+    /**
+     * Constructs Tetris game board with reproducible tetromino sequence.
+     * 
+     * @param width  game board width.
+     * @param height game board width.
+     * @param level  game level (0-8).
+     * @param seed   seed of 7-bag tetromino randomizer.
+     */
+    public Board(int width, int height, int level, long seed) {
+        this(width, height, level, new BagRandomizer(seed));
+    }
+    
+    /**
+     * Constructs Tetris game board with given tetromino randomizer.
+     * 
+     * @param width      game board width.
+     * @param height     game board width.
+     * @param level      game level (0-8).
+     * @param randomizer seeded tetromino randomizer.
+     */
+    public Board(int width, int height, int level, Randomizer randomizer) {
         isGameRunning = true;
         BOARD_WIDTH = width;
         BOARD_HEIGHT = height;
-        field = new int[BOARD_WIDTH][BOARD_HEIGHT];
+        field = new Field(BOARD_WIDTH, BOARD_HEIGHT);
+        spawnX = getSpawnX(width);
         score = 0;
         linesCleared = 0;
-        pcs = new SwingPropertyChangeSupport(this);
         this.level = level;
-        tetrominoesList = generateAndShuffleTetrominoesList();
+        pieces = new PieceQueue(randomizer, PREVIEW_SIZE);
+    }
+    
+    /**
+     * @param width board width.
+     * @return X position new tetrominoes spawn at, centred on the board.
+     */
+    public static int getSpawnX(int width) {
+        return (width - TETROMINO_SIZE) / 2;
+    }
+    
+    /**
+     * @return X position new tetrominoes spawn at.
+     */
+    public int getSpawnX() {
+        return spawnX;
     }
     
     /**
@@ -63,7 +130,33 @@ public class Board {
     public void startGame()
     {
         addTetromino();
-        updateSidePanelLabels();
+        fireEvents();
+        publishSnapshot();
+    }
+    
+    /**
+     * Publishes immutable snapshot of the current state for readers on other threads.
+     * Field is copied only when it has changed since the last published snapshot,
+     * so publishing after a move of the falling tetromino is cheap.
+     * Must be called by the thread driving the board.
+     */
+    public void publishSnapshot() {
+        BoardSnapshot last = snapshot.get();
+        FieldFrame frame = (last != null && last.getField().getVersion() == field.getVersion()) 
+                ? last.getField() : field.freeze();
+        snapshot.set(new BoardSnapshot(frame, currentTetromino.getType(), currentTetromino.getRotation(), 
+                currentTetromino.getXposition(), currentTetromino.getYposition(), pieces.peek(0), 
+                score, linesCleared, level, ticks, isGameRunning));
+    }
+    
+    /**
+     * Can be called from any thread without locking.
+     * 
+     * @return last published snapshot, null before the game was started.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() {
+        return snapshot.get();
     }
     
     /**
@@ -82,6 +175,47 @@ public class Board {
         return level;
     }
     
+    /**
+     * 
+     * @return current score.
+     */
+    public int getScore() {
+        return score;
+    }
+    
+    /**
+     * 
+     * @return number of lines cleared so far.
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+    
+    /**
+     * 
+     * @return number of tetrominoes landed so far.
+     */
+    public int getPiecesPlaced() {
+        return piecesPlaced;
+    }
+    
+    /**
+     * 
+     * @return game field.
+     */
+    public Field getField() {
+        return field;
+    }
+    
+    /**
+     * 
+     * @param index position in the preview, 0 is the next piece.
+     * @return type of upcoming tetromino.
+     */
+    public int getPreviewType(int index) {
+        return pieces.peek(index);
+    }
+    
     /**
      * 
      * @return current Tetromino object.
@@ -90,149 +224,326 @@ public class Board {
         return currentTetromino;
     } 
 
+    /**
+     * 
+     * @return number of logic ticks since game start.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+    
+    /**
+     * Applies player input and advances game by one logic tick of {@link #TICK_MILLIS}.
+     * 
+     * @param input player input for this tick.
+     * @return true if game state visibly changed.
+     */
+    public boolean step(Input input) {
+        boolean changed = apply(input);
+        return tick() || changed;
+    }
+    
+    /**
+     * Applies player input immediately, without advancing game clock.
+     * 
+     * @param input player input.
+     * @return true if game state visibly changed.
+     */
+    public boolean apply(Input input) {
+        if(!isGameRunning) {
+            return false;
+        }
+        if((recorder != null) && (input != Input.NONE)) {
+            recorder.record(ticks, input);
+        }
+        boolean changed;
+        switch(input) {
+            case LEFT: changed = tryMove(-1, 0); break;
+            case RIGHT: changed = tryMove(1, 0); break;
+            case ROTATE: changed = tryRotate(Tetromino.nextRotation(currentTetromino.getRotation())); break;
+            case SOFT_DROP: fall(); changed = true; break;
+            case HARD_DROP: instantDrop(); changed = true; break;
+            default: changed = false; break;
+        }
+        fireEvents();
+        return changed;
+    }
+    
+    /**
+     * Advances game clock by one logic tick, tetromino falls when gravity delay 
+     * of the current level has elapsed.
+     * 
+     * @return true if tetromino moved or landed.
+     */
+    public boolean tick() {
+        if(!isGameRunning) {
+            return false;
+        }
+        ticks++;
+        gravityTicks++;
+        if(gravityTicks * TICK_MILLIS < getLevelDelay(level)) {
+            return false;
+        }
+        gravityTicks = 0;
+        fall();
+        fireEvents();
+        return true;
+    }
+
+    /**
+     * Lets a driver that advances many boards skip ticks in which nothing happens.
+     *
+     * @return number of {@link #tick()} calls until the tetromino falls by gravity, at least 1.
+     */
+    public int getTicksUntilGravity() {
+        int delayTicks = (getLevelDelay(level) + TICK_MILLIS - 1) / TICK_MILLIS;
+        return Math.max(1, delayTicks - gravityTicks);
+    }
+
     /**
      * Move tetromino while calculating "soft drop" score, 
-     * side panel gets updated when tetromino lands.
+     * listeners get notified when tetromino lands.
      */   
     public void fall() {
-        if(isTetrominoColliding(0,1,currentTetromino)) {
-            landTetromino(currentTetromino);
-            updateSidePanelLabels();
-        } else {
+        if(tryMove(0, 1)) {
             score++;
-            currentTetromino.setYposition(currentTetromino.getYposition() + 1);       
+        } else {
+            landTetromino(currentTetromino);
         }
+        fireEvents();
     }
     
     /**
      * Move tetromino shape to the right while checking for collisions.
      */        
     public void moveRight() {
-        if(!isTetrominoColliding(1,0,currentTetromino)) {
-            currentTetromino.setXposition(currentTetromino.getXposition() + 1);
-        }
+        tryMove(1, 0);
     }
     
     /**
      * Move tetromino shape to the left while checking for collisions.
      */        
     public void moveLeft() {
-        if(!isTetrominoColliding(-1,0,currentTetromino)) {
-            currentTetromino.setXposition(currentTetromino.getXposition() - 1);
-        }
+        tryMove(-1, 0);
     }    
     
     /**
      * Rotate tetromino shape while checking for collisions.
      */
     public void rotate() {
-        Tetromino tmp = new Tetromino(currentTetromino);
-        tmp.rotate();
-        if(!isTetrominoColliding(0,1,tmp)) {
-            currentTetromino.rotate();    
+        tryRotate(Tetromino.nextRotation(currentTetromino.getRotation()));
+    }
+    
+    /**
+     * Moves current tetromino by given offset if the new position is free.
+     * 
+     * @param dx horizontal offset.
+     * @param dy vertical offset.
+     * @return true if tetromino was moved.
+     */
+    public boolean tryMove(int dx, int dy) {
+        int x = currentTetromino.getXposition() + dx;
+        int y = currentTetromino.getYposition() + dy;
+        if(isTetrominoColliding(currentTetromino.getType(), currentTetromino.getRotation(), x, y)) {
+            return false;
+        }
+        currentTetromino.setXposition(x);
+        currentTetromino.setYposition(y);
+        return true;
+    }
+    
+    /**
+     * Sets rotation of current tetromino if rotated shape fits at current position.
+     * 
+     * @param rotation proposed rotation state (0-3).
+     * @return true if tetromino was rotated.
+     */
+    public boolean tryRotate(int rotation) {
+        if(isTetrominoColliding(currentTetromino.getType(), rotation, currentTetromino.getXposition(), currentTetromino.getYposition())) {
+            return false;
         }
+        currentTetromino.setRotation(rotation);
+        return true;
     }
     
     /**
      * Instantly drop tetromino while calculating "hard drop" score, 
-     * side panel gets updated when tetromino lands.
+     * listeners get notified when tetromino lands.
      */    
     public void instantDrop() {
-        while (true) {
-            if (!isTetrominoColliding(0,1,currentTetromino))
-            {
-                currentTetromino.setYposition(currentTetromino.getYposition() + 1);
-                score += 2;
-            } else {
-                landTetromino(currentTetromino);
-                updateSidePanelLabels();
-                break;
-            }           
-        }        
+        while(tryMove(0, 1)) {
+            score += 2;
+        }
+        landTetromino(currentTetromino);
+        fireEvents();
     }
 
     /**
-     * Adds property change listener to the game board.
-     * @param listener property change listener.
+     * Adds listener to the game board.
+     * @param listener board listener.
+     */
+    public void addBoardListener(BoardListener listener) {
+        BoardListener[] tmp = new BoardListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, tmp, 0, listeners.length);
+        tmp[listeners.length] = listener;
+        listeners = tmp;
+    }
+    
+    /**
+     * Removes listener from the game board.
+     * @param listener board listener.
+     */
+    public void removeBoardListener(BoardListener listener) {
+        for(int i = 0; i < listeners.length; i++) {
+            if(listeners[i] == listener) {
+                BoardListener[] tmp = new BoardListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, tmp, 0, i);
+                System.arraycopy(listeners, i + 1, tmp, i, listeners.length - i - 1);
+                listeners = tmp;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Queues garbage sent by the opponent. Batches are raised from the bottom of the field
+     * one per landing that clears no rows, lines sent by clearing rows cancel queued ones first.
+     * Garbage is not recorded by {@link InputRecorder}.
+     *
+     * @param lines number of garbage rows.
+     * @param hole  empty column of the rows.
+     */
+    public void receiveGarbage(int lines, int hole) {
+        if((hole < 0) || (hole >= BOARD_WIDTH)) {
+            throw new IllegalArgumentException("Invalid garbage hole: " + hole);
+        }
+        if(lines <= 0) {
+            return;
+        }
+        if(garbageBatches == garbageLines.length) {
+            garbageLines = unwrap(garbageLines, garbageLines.length * 2);
+            garbageHoles = unwrap(garbageHoles, garbageLines.length);
+            garbageHead = 0;
+        }
+        int tail = (garbageHead + garbageBatches) % garbageLines.length;
+        garbageLines[tail] = lines;
+        garbageHoles[tail] = hole;
+        garbageBatches++;
+        pendingGarbage += lines;
+    }
+    
+    /**
+     * @return number of received garbage rows not raised yet.
+     */
+    public int getPendingGarbage() {
+        return pendingGarbage;
+    }
+    
+    /**
+     * Hands over garbage for the opponent, collected since the previous call.
+     * 
+     * @return number of garbage lines to send.
+     */
+    public int takeOutgoingGarbage() {
+        int lines = outgoingGarbage;
+        outgoingGarbage = 0;
+        return lines;
+    }
+    
+    /**
+     * @param rows number of rows cleared at once (0-4).
+     * @return number of garbage lines it sends to the opponent.
+     */
+    public static int getAttackLines(int rows) {
+        return ATTACK_LINES[Math.min(rows, ATTACK_LINES.length - 1)];
+    }
+    
+    /**
+     * Sets recorder that receives every applied input.
+     * @param recorder input recorder, null to stop recording.
      */
-    public void addPropertyChangeListener(PropertyChangeListener listener) {
-       pcs.addPropertyChangeListener(listener);
+    public void setInputRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
     }
     
     /**
-     * Removes property change listener from the game board.
-     * @param listener property change listener.
+     * @param level game level.
+     * @return gravity delay in milliseconds for given level.
      */
-    public void removePropertyChangeListener(PropertyChangeListener listener) {
-       pcs.removePropertyChangeListener(listener);
+    public static int getLevelDelay(int level) {
+        return LEVEL_DELAYS[Math.min(level, LEVEL_DELAYS.length - 1)];
     }
     
     /**
      * Adds initial tetromino shape to the board and sets next piece.
      */
     private void addTetromino() {
-        currentTetromino = tetrominoesList.remove();
-        nextTetromino = tetrominoesList.remove();
-        pcs.firePropertyChange(TYPE, null, nextTetromino);
+        currentTetromino = new Tetromino(pieces.poll(), spawnX, SPAWN_Y);
+        pendingEvents |= EVENT_NEXT;
     }
     
     /**
-     * Adds next tetromino to the board and pick another one from tetromino list..
+     * Moves next tetromino from the queue to the board.
      */    
     private void addNextTetromino() {
-        currentTetromino = nextTetromino;
-        if(tetrominoesList.peek() == null) {
-            tetrominoesList = generateAndShuffleTetrominoesList();
-            nextTetromino = tetrominoesList.remove();
-        } else {
-            nextTetromino = tetrominoesList.remove();
-        }
-
-        pcs.firePropertyChange(TYPE, null, nextTetromino);
+        currentTetromino.reset(pieces.poll(), spawnX, SPAWN_Y);
+        pendingEvents |= EVENT_NEXT;
         
         // chek if we can move into initial position
-        if(isTetrominoColliding(0,0,currentTetromino)) {
-             currentTetromino.clearTetromino();
+        if(isTetrominoColliding(currentTetromino.getType(), currentTetromino.getRotation(), currentTetromino.getXposition(), currentTetromino.getYposition())) {
             isGameRunning = false;
+            pendingEvents |= EVENT_GAME_OVER;
         }
     }
 
-    private LinkedList<Tetromino> generateAndShuffleTetrominoesList()
-    {
-        LinkedList<Tetromino> list = new LinkedList<>();
-        for (int i = 0; i < 7; i++) {
-            list.add(new Tetromino(i, 3, -1));
-        }
-        Collections.shuffle(list, new Random(System.nanoTime()));
-        return list;
+    /**
+     * Checks if tetromino shape placed at given position collides with field boundaries or blocks.
+     * 
+     * @param type tetromino type.
+     * @param rotation tetromino rotation state.
+     * @param x tetromino X position.
+     * @param y tetromino Y position.
+     * @return boolean value.
+     */
+    private boolean isTetrominoColliding(int type, int rotation, int x, int y) {
+        return isColliding(field, type, rotation, x, y);
     }
     
     /**
-     * Checks if tetromino shape is colliding, before it actually collides.
+     * Checks if tetromino shape placed at given position collides with field boundaries or blocks.
+     * Bounding box is tested first, then each shape row mask against field row words.
      * 
-     * @param dx distance from vertical boundary.
-     * @param dy distance from horizontal boundary.
-     * @param p Tetromino object.
+     * @param field field to test against.
+     * @param type tetromino type.
+     * @param rotation tetromino rotation state.
+     * @param x tetromino X position.
+     * @param y tetromino Y position.
      * @return boolean value.
      */
-    private boolean isTetrominoColliding(int dx, int dy, Tetromino p) {
-        int[][] tmp = p.getTetromino();
-        int y = currentTetromino.getYposition();
-        int x = currentTetromino.getXposition();        
-        boolean collision = false;
-        
-        for(int i = 0; i < TETROMINO_SIZE; i++) {
-            for(int j = 0; j < TETROMINO_SIZE; j++) {
-                if(tmp[i][j] != 0) {
-                    int newX = x + j + dx;
-                    int newY = y + i + dy;
-                    if((newY >= field[i].length) || (newX >= field.length) || (newX < 0) || (newY < 0) || (field[newX][newY] != 0)) {
-                        collision = true;
-                    }
-                }
+    public static boolean isColliding(FieldView field, int type, int rotation, int x, int y) {
+        int top = y + Tetromino.getMinY(type, rotation);
+        int bottom = y + Tetromino.getMaxY(type, rotation);
+        if((x + Tetromino.getMinX(type, rotation) < 0) || (x + Tetromino.getMaxX(type, rotation) >= field.getWidth())
+                || (top < 0) || (bottom >= field.getHeight())) {
+            return true;
+        }
+        int word = (x >= 0) ? x >>> 6 : 0;
+        int shift = (x >= 0) ? x & 63 : 0;
+        for(int row = top; row <= bottom; row++) {
+            long mask = Tetromino.getRowMask(type, rotation, row - y);
+            if(x < 0) {
+                mask >>>= -x;
+            }
+            if((field.getRowWord(row, word) & (mask << shift)) != 0) {
+                return true;
+            }
+            // shape crossing into the next word of a wide field
+            if((shift > Long.SIZE - Tetromino.SIZE) && ((mask >>> (Long.SIZE - shift)) != 0)
+                    && ((field.getRowWord(row, word + 1) & (mask >>> (Long.SIZE - shift))) != 0)) {
+                return true;
             }
         }
-        return collision;
+        return false;
     }
     
     /**
@@ -241,67 +552,99 @@ public class Board {
      * @param tetro Tetromino object.
      */
     private void landTetromino(Tetromino tetro) {
-        int[][] tmp = tetro.getTetromino();
         int y = tetro.getYposition();
         int x = tetro.getXposition(); 
+        int type = tetro.getBlockType();
 
-        for(int i = 0; i < TETROMINO_SIZE; i++) {
-            for(int j = 0; j < TETROMINO_SIZE; j++) {
-                if(tmp[i][j] != 0) {
-                    field[x + j][y + i] = tmp[i][j];
-                }
-            }
+        for(int i = 0; i < Tetromino.CELLS; i++) {
+            field.setBlock(x + tetro.getCellX(i), y + tetro.getCellY(i), type);
         }
+        piecesPlaced++;
+        landedType = tetro.getType();
+        landedRotation = tetro.getRotation();
+        landedX = x;
+        landedY = y;
+        pendingEvents |= EVENT_LAND;
         addNextTetromino();
-        checkRows();
+        if(!checkRows() && (garbageBatches > 0) && isGameRunning) {
+            raiseGarbage();
+        }
     }
     
     /**
-     * Check for completed rows and collapse them.
+     * Check rows of the landed tetromino for completion and collapse them.
+     * 
+     * @return true if rows were collapsed.
      */
-    private void checkRows() {
-        ArrayList<Integer> fullRows = new ArrayList<>();
-        for(int i = 0; i < field[0].length; i++) {
-            boolean isClear = true;
-            for (int[] field1 : field) {
-                if (field1[i] == 0) 
-                {
-                    isClear = false;
-                }                
-            }
-            
-            if(isClear) {
-                fullRows.add(i);
-            }
+    private boolean checkRows() {
+        int top = landedY + Tetromino.getMinY(landedType, landedRotation);
+        int bottom = landedY + Tetromino.getMaxY(landedType, landedRotation);
+        if(field.findFullRow(top, bottom + 1) >= 0) {
+            collapseRows();
+            return true;
         }
-        
-        if(!fullRows.isEmpty()) {
-            for(int i : fullRows) {
-                for (int[] field1 : field) {
-                    field1[i] = 0;
-                }
-            }
-            collapseRows(fullRows);
+        return false;
+    }
+    
+    /**
+     * Raises the oldest garbage batch, game is over when blocks are pushed out 
+     * of the field or the falling tetromino ends up inside the raised rows.
+     */
+    private void raiseGarbage() {
+        raisedRows = garbageLines[garbageHead];
+        raisedHole = garbageHoles[garbageHead];
+        garbageHead = (garbageHead + 1) % garbageLines.length;
+        garbageBatches--;
+        pendingGarbage -= raisedRows;
+        boolean fits = field.raiseRows(raisedRows, raisedHole, GARBAGE_BLOCK);
+        pendingEvents |= EVENT_GARBAGE;
+        if(!fits || isTetrominoColliding(currentTetromino.getType(), currentTetromino.getRotation(), 
+                currentTetromino.getXposition(), currentTetromino.getYposition())) {
+            isGameRunning = false;
+            pendingEvents |= EVENT_GAME_OVER;
         }
     }
     
     /**
-     * Collapses all full rows calculates score and updates side panel.
-     * 
-     * @param fullRows ArrayList of all the full rows.
-     */
-    private void collapseRows(ArrayList<Integer> fullRows) {
-        for(int i : fullRows) {
-            for(int j = i; j > 0; j--) {
-                for (int[] field1 : field) {
-                    field1[j] = field1[j-1];
-                }
+     * Lines sent by a clear cancel queued garbage first, the rest goes to the opponent.
+     */
+    private void sendGarbage(int rows) {
+        int attack = getAttackLines(rows);
+        while((attack > 0) && (garbageBatches > 0)) {
+            int cancelled = Math.min(attack, garbageLines[garbageHead]);
+            attack -= cancelled;
+            pendingGarbage -= cancelled;
+            garbageLines[garbageHead] -= cancelled;
+            if(garbageLines[garbageHead] == 0) {
+                garbageHead = (garbageHead + 1) % garbageLines.length;
+                garbageBatches--;
             }
-            linesCleared++;
         }
-        calculateScore(fullRows.size());
+        outgoingGarbage += attack;
+    }
+    
+    /**
+     * @return copy of the garbage ring starting at its head.
+     */
+    private int[] unwrap(int[] ring, int capacity) {
+        int[] copy = new int[capacity];
+        for(int i = 0; i < garbageBatches; i++) {
+            copy[i] = ring[(garbageHead + i) % ring.length];
+        }
+        return copy;
+    }
+    
+    /**
+     * Collapses all full rows calculates score and updates side panel.
+     */
+    private void collapseRows() {
+        int fullRows = field.clearFullRows();
+        linesCleared += fullRows;
+        calculateScore(fullRows);
+        sendGarbage(fullRows);
         level = increaseLevel(level);
-        updateSidePanelLabels();   
+        clearedRows = fullRows;
+        pendingEvents |= EVENT_CLEAR;
     }
 
     /*
@@ -338,9 +681,60 @@ public class Board {
         return currentLevel;
     }
 
-    private void updateSidePanelLabels() {
-        pcs.firePropertyChange(LINES, null, linesCleared);
-        pcs.firePropertyChange(SCORE, null, score);
-        pcs.firePropertyChange(LEVEL, null, level);
-    }        
-}
\ No newline at end of file
+    /**
+     * Calculates gravity delays for levels 0-9.
+     */
+    private static int[] calculateLevelSpeeds() {
+        int[] speedLevels = new int[10];
+        int curSpeed = 1000;
+        for(int i = 0; i < 10; i++) {
+            speedLevels[i] = curSpeed;
+            int speedChange = curSpeed/9;
+            curSpeed = curSpeed - speedChange;
+        } 
+        return speedLevels;
+    }
+
+    /**
+     * Fires events collected since the last call, score, lines and level only when they have changed.
+     */
+    private void fireEvents() {
+        int events = pendingEvents;
+        boolean scoreChanged = (score != firedScore);
+        boolean linesChanged = (linesCleared != firedLines);
+        boolean levelChanged = (level != firedLevel);
+        if((events == 0) && !scoreChanged && !linesChanged && !levelChanged) {
+            return;
+        }
+        pendingEvents = 0;
+        firedScore = score;
+        firedLines = linesCleared;
+        firedLevel = level;
+        for(BoardListener listener : listeners) {
+            if((events & EVENT_LAND) != 0) {
+                listener.onLand(landedType, landedRotation, landedX, landedY);
+            }
+            if((events & EVENT_CLEAR) != 0) {
+                listener.onClear(clearedRows);
+            }
+            if((events & EVENT_GARBAGE) != 0) {
+                listener.onGarbage(raisedRows, raisedHole);
+            }
+            if(linesChanged) {
+                listener.onLines(linesCleared);
+            }
+            if(scoreChanged) {
+                listener.onScore(score);
+            }
+            if(levelChanged) {
+                listener.onLevel(level);
+            }
+            if((events & EVENT_NEXT) != 0) {
+                listener.onNextPiece(pieces.peek(0));
+            }
+            if((events & EVENT_GAME_OVER) != 0) {
+                listener.onGameOver();
+            }
+        }
+    }
+}
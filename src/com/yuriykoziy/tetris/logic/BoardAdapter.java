@@ -0,0 +1,43 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * An abstract adapter class for receiving board events. 
+ * The methods in this class are empty, override only the ones of interest.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public abstract class BoardAdapter implements BoardListener {
+
+    @Override
+    public void onLand(int type, int rotation, int x, int y) {
+    }
+
+    @Override
+    public void onClear(int rows) {
+    }
+
+    @Override
+    public void onGarbage(int rows, int hole) {
+    }
+
+    @Override
+    public void onScore(int score) {
+    }
+
+    @Override
+    public void onLines(int lines) {
+    }
+
+    @Override
+    public void onLevel(int level) {
+    }
+
+    @Override
+    public void onNextPiece(int type) {
+    }
+
+    @Override
+    public void onGameOver() {
+    }
+}
@@ -0,0 +1,59 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Listener interface for receiving game state changes from the Board.
+ * Callbacks are invoked synchronously on the thread that drives the board, 
+ * once at the end of each board call (tick, input, drop) and only for values that changed.
+ * Arguments are primitives, so firing events does not allocate.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface BoardListener {
+    
+    /**
+     * @param type     type of the landed tetromino (0-6).
+     * @param rotation rotation state of the landed tetromino.
+     * @param x        X position of the landed tetromino.
+     * @param y        Y position of the landed tetromino.
+     */
+    void onLand(int type, int rotation, int x, int y);
+    
+    /**
+     * @param rows number of rows cleared by the last landing (1-4).
+     */
+    void onClear(int rows);
+    
+    /**
+     * Invoked when garbage sent by the opponent was raised from the bottom of the field.
+     * 
+     * @param rows number of raised rows.
+     * @param hole empty column of the raised rows.
+     */
+    void onGarbage(int rows, int hole);
+    
+    /**
+     * @param score current score.
+     */
+    void onScore(int score);
+    
+    /**
+     * @param lines number of lines cleared so far.
+     */
+    void onLines(int lines);
+    
+    /**
+     * @param level current game level.
+     */
+    void onLevel(int level);
+    
+    /**
+     * @param type type of the next tetromino (0-6).
+     */
+    void onNextPiece(int type);
+    
+    /**
+     * Invoked once when new tetromino can not be placed on the board.
+     */
+    void onGameOver();
+}
@@ -0,0 +1,84 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Immutable, consistent picture of the board published for renderers, spectators and recorders.
+ * Snapshots taken while only the falling tetromino moves share the same field frame.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class BoardSnapshot {
+    private final FieldFrame field;
+    private final int pieceType;
+    private final int pieceRotation;
+    private final int pieceX;
+    private final int pieceY;
+    private final int nextType;
+    private final int score;
+    private final int lines;
+    private final int level;
+    private final long ticks;
+    private final boolean gameRunning;
+
+    /**
+     * Snapshots are published by {@link Board#publishSnapshot()} or by a reconstruction of a remote board.
+     */
+    public BoardSnapshot(FieldFrame field, int pieceType, int pieceRotation, int pieceX, int pieceY, int nextType,
+            int score, int lines, int level, long ticks, boolean gameRunning) {
+        this.field = field;
+        this.pieceType = pieceType;
+        this.pieceRotation = pieceRotation;
+        this.pieceX = pieceX;
+        this.pieceY = pieceY;
+        this.nextType = nextType;
+        this.score = score;
+        this.lines = lines;
+        this.level = level;
+        this.ticks = ticks;
+        this.gameRunning = gameRunning;
+    }
+
+    public FieldFrame getField() {
+        return field;
+    }
+
+    public int getPieceType() {
+        return pieceType;
+    }
+
+    public int getPieceRotation() {
+        return pieceRotation;
+    }
+
+    public int getPieceX() {
+        return pieceX;
+    }
+
+    public int getPieceY() {
+        return pieceY;
+    }
+
+    public int getNextType() {
+        return nextType;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public boolean isGameRunning() {
+        return gameRunning;
+    }
+}
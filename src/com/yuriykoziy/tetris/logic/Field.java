@@ -0,0 +1,268 @@
+package com.yuriykoziy.tetris.logic;
+
+import java.util.Arrays;
+
+/**
+ * This class implements Tetris playing field as a bitboard.
+ * Each row is stored as occupancy words (bit x % 64 of word x / 64 set means column x is occupied),
+ * block types are kept in a separate compact layer used only for rendering.
+ * Only the bottom rows up to the highest stack reached so far are stored, rows above them 
+ * are empty, so tall fields take memory proportional to occupied rows.
+ * Row scans go through {@link RowKernels} and start at the topmost occupied row.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class Field implements FieldView {
+    public static final int MAX_WIDTH = 1024;
+    private static final int INITIAL_ROWS = 64;
+
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long lastWordMask;
+    private long[] rows;
+    private byte[] types;
+    // first stored row, rows and types start with this row
+    private int base;
+    private final RowKernels kernels = RowKernels.get();
+    private int[] fullRows;
+    private int top;
+    private int version;
+
+    /**
+     * Constructs empty field of given width and height.
+     *
+     * @param width  field width (1-1024).
+     * @param height field height.
+     */
+    public Field(int width, int height) {
+        if(width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Invalid field width: " + width);
+        }
+        if(height < 1) {
+            throw new IllegalArgumentException("Invalid field height: " + height);
+        }
+        this.width = width;
+        this.height = height;
+        words = (width + Long.SIZE - 1) / Long.SIZE;
+        lastWordMask = ScalarRowKernels.wordMask(width, words - 1);
+        base = Math.max(0, height - INITIAL_ROWS);
+        rows = new long[words * (height - base)];
+        types = new byte[width * (height - base)];
+        top = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        if((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
+            return true;
+        }
+        return (y >= base) && (rows[(y - base) * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    @Override
+    public int getType(int x, int y) {
+        return (y >= base) ? types[(y - base) * width + x] : 0;
+    }
+
+    /**
+     * Places block of given type into the cell.
+     *
+     * @param x    column.
+     * @param y    row.
+     * @param type block type (1-7).
+     */
+    public void setBlock(int x, int y, int type) {
+        if(y < base) {
+            grow(y);
+        }
+        rows[(y - base) * words + (x >>> 6)] |= 1L << x;
+        types[(y - base) * width + x] = (byte) type;
+        top = Math.min(top, y);
+        version++;
+    }
+
+    @Override
+    public long getRowMask(int y) {
+        return (y >= base) ? rows[(y - base) * words] : 0;
+    }
+
+    @Override
+    public long getRowWord(int y, int word) {
+        return (y >= base) ? rows[(y - base) * words + word] : 0;
+    }
+
+    @Override
+    public int getWordsPerRow() {
+        return words;
+    }
+
+    /**
+     * @return topmost row that may be occupied, all rows above it are empty.
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     *
+     * @param y row.
+     * @return true if every cell of the row is occupied.
+     */
+    public boolean isRowFull(int y) {
+        return (y >= base) && ScalarRowKernels.isFull(rows, (y - base) * words, words, lastWordMask);
+    }
+
+    /**
+     * @param from first row to test.
+     * @param to   row after the last row to test.
+     * @return index of the first full row in the range, -1 if there is none.
+     */
+    public int findFullRow(int from, int to) {
+        int row = kernels.findFullRow(rows, words, lastWordMask, Math.max(from, top) - base, to - base);
+        return (row >= 0) ? row + base : -1;
+    }
+
+    /**
+     * Computes column heights and counts holes (empty cells below column tops).
+     *
+     * @param heights receives height of every column, at least width long.
+     * @return number of holes.
+     */
+    public int analyzeColumns(int[] heights) {
+        return kernels.analyzeColumns(rows, words, width, top - base, height - base, heights);
+    }
+
+    /**
+     * @return number of rows currently stored.
+     */
+    public int getStoredRows() {
+        return height - base;
+    }
+
+    /**
+     * Empties all cells, the version still grows so cached renderings are redrawn.
+     */
+    public void clear() {
+        if(top < height) {
+            Arrays.fill(rows, (top - base) * words, rows.length, 0);
+            Arrays.fill(types, (top - base) * width, types.length, (byte) 0);
+        }
+        top = height;
+        version++;
+    }
+
+    /**
+     * Removes all full rows and shifts rows above them down, every run of rows
+     * between full rows is moved with a single copy.
+     *
+     * @return number of removed rows.
+     */
+    public int clearFullRows() {
+        if((fullRows == null) || (fullRows.length < height - base)) {
+            fullRows = new int[height - base];
+        }
+        int count = 0;
+        for(int y = findFullRow(top, height); y >= 0; y = findFullRow(y + 1, height)) {
+            fullRows[count++] = y;
+        }
+        if(count == 0) {
+            return 0;
+        }
+        // rows between full rows i - 1 and i move down by the number of full rows below them
+        for(int i = count - 1; i >= 0; i--) {
+            int start = ((i == 0) ? top : fullRows[i - 1] + 1) - base;
+            int length = fullRows[i] - base - start;
+            int shift = count - i;
+            System.arraycopy(rows, start * words, rows, (start + shift) * words, length * words);
+            System.arraycopy(types, start * width, types, (start + shift) * width, length * width);
+        }
+        Arrays.fill(rows, (top - base) * words, (top - base + count) * words, 0);
+        Arrays.fill(types, (top - base) * width, (top - base + count) * width, (byte) 0);
+        top += count;
+        version++;
+        return count;
+    }
+
+    /**
+     * Shifts all rows up and fills the bottom rows with blocks except one hole column,
+     * used for garbage sent by the opponent in versus games. Rows pushed above the top are lost.
+     *
+     * @param count number of rows to add.
+     * @param hole  empty column of the added rows.
+     * @param type  block type of the added rows.
+     * @return false if occupied rows were pushed out of the field.
+     */
+    public boolean raiseRows(int count, int hole, int type) {
+        count = Math.min(count, height);
+        if(count <= 0) {
+            return true;
+        }
+        // top only bounds occupied rows, rows pushed out are checked cell words
+        boolean fits = true;
+        for(int i = (Math.max(top, base) - base) * words; fits && (i < (count - base) * words); i++) {
+            fits = rows[i] == 0;
+        }
+        // rows from first to the bottom stay on the field, count rows higher
+        int first = Math.max(top, count);
+        if(first - count < base) {
+            grow(first - count);
+        }
+        int moved = height - first;
+        System.arraycopy(rows, (first - base) * words, rows, (first - count - base) * words, moved * words);
+        System.arraycopy(types, (first - base) * width, types, (first - count - base) * width, moved * width);
+        for(int y = height - count; y < height; y++) {
+            int row = (y - base) * words;
+            Arrays.fill(rows, row, row + words, -1L);
+            rows[row + words - 1] = lastWordMask;
+            rows[row + (hole >>> 6)] &= ~(1L << hole);
+            Arrays.fill(types, (y - base) * width, (y - base + 1) * width, (byte) type);
+            types[(y - base) * width + hole] = 0;
+        }
+        top = first - count;
+        version++;
+        return fits;
+    }
+
+    /**
+     * Stores rows from y down, at least doubling the number of stored rows.
+     */
+    private void grow(int y) {
+        int stored = height - base;
+        int newBase = Math.max(0, Math.min(y, height - 2 * stored));
+        int added = base - newBase;
+        long[] newRows = new long[words * (height - newBase)];
+        byte[] newTypes = new byte[width * (height - newBase)];
+        System.arraycopy(rows, 0, newRows, added * words, rows.length);
+        System.arraycopy(types, 0, newTypes, added * width, types.length);
+        rows = newRows;
+        types = newTypes;
+        base = newBase;
+    }
+
+    /**
+     * @return immutable copy of the current field, holding only rows from the topmost occupied one.
+     */
+    public FieldFrame freeze() {
+        int first = Math.min(top, height - 1);
+        return new FieldFrame(width, height, words, first, version,
+                Arrays.copyOfRange(rows, (first - base) * words, rows.length),
+                Arrays.copyOfRange(types, (first - base) * width, types.length));
+    }
+}
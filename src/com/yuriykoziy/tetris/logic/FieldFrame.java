@@ -0,0 +1,71 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Immutable copy of the field taken when it changes, safe to read from any thread.
+ * Rows above the first copied row are empty and not stored.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class FieldFrame implements FieldView {
+    private final int width;
+    private final int height;
+    private final int words;
+    private final int base;
+    private final int version;
+    private final long[] rows;
+    private final byte[] types;
+
+    FieldFrame(int width, int height, int words, int base, int version, long[] rows, byte[] types) {
+        this.width = width;
+        this.height = height;
+        this.words = words;
+        this.base = base;
+        this.version = version;
+        this.rows = rows;
+        this.types = types;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        if((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
+            return true;
+        }
+        return (y >= base) && (rows[(y - base) * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    @Override
+    public int getType(int x, int y) {
+        return (y >= base) ? types[(y - base) * width + x] : 0;
+    }
+
+    @Override
+    public long getRowMask(int y) {
+        return (y >= base) ? rows[(y - base) * words] : 0;
+    }
+
+    @Override
+    public long getRowWord(int y, int word) {
+        return (y >= base) ? rows[(y - base) * words + word] : 0;
+    }
+
+    @Override
+    public int getWordsPerRow() {
+        return words;
+    }
+}
@@ -0,0 +1,57 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Read only view of a playing field.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface FieldView {
+
+    /**
+     * @return field width.
+     */
+    int getWidth();
+
+    /**
+     * @return field height.
+     */
+    int getHeight();
+
+    /**
+     * @return counter incremented on every change of the field.
+     */
+    int getVersion();
+
+    /**
+     * @param x column.
+     * @param y row.
+     * @return true if cell is occupied or lies outside of the field.
+     */
+    boolean isBlocked(int x, int y);
+
+    /**
+     * @param x column.
+     * @param y row.
+     * @return block type at given cell, 0 if cell is empty.
+     */
+    int getType(int x, int y);
+
+    /**
+     * @param y row.
+     * @return occupancy mask of the first 64 columns of the row.
+     */
+    long getRowMask(int y);
+
+    /**
+     * @param y    row.
+     * @param word word index, column x is bit x % 64 of word x / 64.
+     * @return occupancy mask of 64 columns of the row.
+     */
+    long getRowWord(int y, int word);
+
+    /**
+     * @return number of occupancy words per row.
+     */
+    int getWordsPerRow();
+}
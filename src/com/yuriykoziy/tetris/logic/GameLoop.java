@@ -0,0 +1,222 @@
+package com.yuriykoziy.tetris.logic;
+
+import com.yuriykoziy.tetris.metrics.GameMetrics;
+import com.yuriykoziy.tetris.sim.Player;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the Board on a dedicated thread with a fixed logic timestep of {@link Board#TICK_MILLIS}.
+ * Ticks are scheduled against {@link System#nanoTime()}: the thread parks until shortly 
+ * before the deadline and spins the rest, so tick cadence does not depend on the EDT load.
+ * Key presses and releases from other threads go through a lock-free {@link KeyEventRing}
+ * and are turned into inputs at the start of the next tick by an {@link InputController},
+ * which also repeats held keys. The input of the attached player, if there is one, follows.
+ * After every tick that changed the board a new {@link BoardSnapshot} is published, 
+ * renderers on other threads read snapshots instead of the board itself.
+ * Tick jitter, step durations and input latencies feed the loop's {@link GameMetrics}.
+ * A thread exits as soon as it is no longer the loop's current thread, so a loop stopped
+ * and started again (a panel re-parented by Swing) never has two threads ticking the board.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class GameLoop implements Runnable {
+    public static final long TICK_NANOS = Board.TICK_MILLIS * 1_000_000L;
+    
+    private static final long SPIN_NANOS = 500_000L;
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final int KEY_EVENTS = 256;
+    
+    private final Board board;
+    private final Runnable renderSignal;
+    private final KeyEventRing keyEvents = new KeyEventRing(KEY_EVENTS);
+    private final InputController controller = new InputController(KEY_EVENTS);
+    private final GameMetrics metrics = new GameMetrics();
+    // press time of the oldest applied but not yet painted key
+    private final AtomicLong inputAppliedNanos = new AtomicLong();
+    private volatile Player player;
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile Thread thread;
+    
+    /**
+     * @param board        board to drive.
+     * @param renderSignal invoked on the loop thread after new snapshot was published 
+     *                     and once when the game is over.
+     */
+    public GameLoop(Board board, Runnable renderSignal) {
+        this.board = board;
+        this.renderSignal = renderSignal;
+    }
+    
+    /**
+     * Starts the loop thread, does nothing if already running.
+     */
+    public synchronized void start() {
+        if(running || !board.isGameRunning()) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops the loop thread without waiting for it, so it may be called from the loop thread itself.
+     */
+    public synchronized void stop() {
+        running = false;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+    
+    /**
+     * @param paused true to stop advancing the board.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        Thread t = thread;
+        if(t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+    
+    /**
+     * Records key press, must be called from a single thread (the EDT).
+     * Presses are ignored while paused.
+     * 
+     * @param input key pressed.
+     */
+    public void keyDown(Input input) {
+        if(!paused) {
+            keyEvents.offer(input, true, System.nanoTime());
+        }
+    }
+    
+    /**
+     * Records key release, must be called from the same thread as {@link #keyDown(Input)}.
+     * 
+     * @param input key released.
+     */
+    public void keyUp(Input input) {
+        keyEvents.offer(input, false, System.nanoTime());
+    }
+    
+    /**
+     * Takes press time of the oldest key applied since the last call. Called by the renderer 
+     * before reading the snapshot, the snapshot then shows the effect of that key.
+     * 
+     * @return press time in {@link System#nanoTime()} units, 0 if no key was applied.
+     */
+    public long takeAppliedInputNanos() {
+        return (inputAppliedNanos.get() == 0) ? 0 : inputAppliedNanos.getAndSet(0);
+    }
+    
+    /**
+     * @return timing histograms of this loop.
+     */
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Attaches player asked for one input every tick, e.g. the autoplayer in demo mode.
+     * 
+     * @param player player or null to detach.
+     */
+    public void setPlayer(Player player) {
+        this.player = player;
+    }
+    
+    /**
+     * @param percentile percentile (0-100).
+     * @return tick start lateness at given percentile in nanoseconds, see {@link GameMetrics#getJitter()}.
+     *         Counters are read without synchronization, so the value is approximate while running.
+     */
+    public long getJitterNanos(double percentile) {
+        return metrics.getJitter().getValueAtPercentile(percentile);
+    }
+    
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        long next = System.nanoTime() + TICK_NANOS;
+        while(running && (thread == self)) {
+            if(paused) {
+                LockSupport.park(this);
+                next = System.nanoTime() + TICK_NANOS;
+                continue;
+            }
+            waitUntil(next, self);
+            if(!running || paused) {
+                continue;
+            }
+            long now = System.nanoTime();
+            metrics.getJitter().record(now - next);
+            
+            boolean changed = false;
+            boolean over;
+            boolean landed;
+            long pressed;
+            synchronized(board) {
+                // a restart may have replaced this thread while it waited
+                if(thread != self) {
+                    return;
+                }
+                int pieces = board.getPiecesPlaced();
+                changed |= controller.update(board, keyEvents, now);
+                pressed = controller.getFirstPressNanos();
+                Player p = player;
+                if(p != null && board.isGameRunning()) {
+                    changed |= board.apply(p.nextInput(board));
+                }
+                changed |= board.tick();
+                over = !board.isGameRunning();
+                landed = board.getPiecesPlaced() != pieces;
+                if(changed || over) {
+                    board.publishSnapshot();
+                }
+            }
+            if(metrics.isEnabled()) {
+                long step = System.nanoTime() - now;
+                metrics.getStep().record(step);
+                if(landed) {
+                    metrics.getLand().record(step);
+                }
+            }
+            if(pressed != 0) {
+                metrics.getKeyToTick().record(now - pressed);
+                if(changed) {
+                    inputAppliedNanos.compareAndSet(0, pressed);
+                }
+            }
+            if(changed || over) {
+                renderSignal.run();
+            }
+            if(over) {
+                running = false;
+            }
+            
+            next += TICK_NANOS;
+            if(now - next > MAX_CATCH_UP_TICKS * TICK_NANOS) {
+                // fell too far behind (suspended process, long GC), do not burst ticks
+                next = now + TICK_NANOS;
+            }
+        }
+    }
+    
+    private void waitUntil(long deadline, Thread self) {
+        long remaining = deadline - System.nanoTime();
+        while(remaining > SPIN_NANOS && running && !paused && (thread == self)) {
+            LockSupport.parkNanos(this, remaining - SPIN_NANOS);
+            remaining = deadline - System.nanoTime();
+        }
+        while(running && !paused && (thread == self) && (System.nanoTime() < deadline)) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Player inputs accepted by the Board.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public enum Input {
+    NONE,
+    LEFT,
+    RIGHT,
+    ROTATE,
+    SOFT_DROP,
+    HARD_DROP
+}
@@ -0,0 +1,166 @@
+package com.yuriykoziy.tetris.logic;
+
+import com.yuriykoziy.tetris.piece.Tetromino;
+
+/**
+ * Turns key presses and releases into board inputs once per tick, independently of the 
+ * desktop key repeat. A held left or right key shifts once on press, again after the 
+ * delayed auto shift (DAS) and then every auto repeat rate (ARR) period, ARR of 0 shifts 
+ * to the wall at once. The most recently pressed direction wins. Held soft drop multiplies 
+ * gravity of the current level by the soft drop factor, rotate and hard drop act on press only.
+ * Delays are read from "tetris.das" and "tetris.arr" (milliseconds) and "tetris.softDropFactor"
+ * system properties.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class InputController {
+    static final int DEFAULT_DAS_MILLIS = 167;
+    static final int DEFAULT_ARR_MILLIS = 33;
+    static final int DEFAULT_SOFT_DROP_FACTOR = 20;
+
+    private final long dasNanos;
+    private final long arrNanos;
+    private final int softDropFactor;
+    private final Input[] keys;
+    private final boolean[] downs;
+    private final long[] times;
+
+    private boolean leftHeld;
+    private boolean rightHeld;
+    private boolean softDropHeld;
+    // direction being auto shifted, NONE if no direction is held
+    private Input shift = Input.NONE;
+    private long nextShift;
+    private double softDropCells;
+    private long firstPressNanos;
+
+    InputController(int capacity) {
+        this(capacity, Integer.getInteger("tetris.das", DEFAULT_DAS_MILLIS), 
+                Integer.getInteger("tetris.arr", DEFAULT_ARR_MILLIS), 
+                Integer.getInteger("tetris.softDropFactor", DEFAULT_SOFT_DROP_FACTOR));
+    }
+
+    /**
+     * @param capacity       capacity of the key event ring drained every tick.
+     * @param dasMillis      delay before a held direction starts repeating.
+     * @param arrMillis      repeat period of a held direction, 0 shifts to the wall.
+     * @param softDropFactor gravity multiplier while soft drop is held.
+     */
+    InputController(int capacity, int dasMillis, int arrMillis, int softDropFactor) {
+        dasNanos = dasMillis * 1_000_000L;
+        arrNanos = arrMillis * 1_000_000L;
+        this.softDropFactor = Math.max(1, softDropFactor);
+        keys = new Input[capacity];
+        downs = new boolean[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * Applies pending key events and held keys to the board.
+     *
+     * @param board board, caller holds its lock.
+     * @param ring  key events to drain.
+     * @param now   tick time.
+     * @return true if game state visibly changed.
+     */
+    boolean update(Board board, KeyEventRing ring, long now) {
+        boolean changed = false;
+        firstPressNanos = 0;
+        int count = ring.drain(keys, downs, times);
+        for(int i = 0; i < count; i++) {
+            if(downs[i] && (firstPressNanos == 0)) {
+                firstPressNanos = times[i];
+            }
+            changed |= handle(board, keys[i], downs[i], times[i]);
+        }
+        if(!board.isGameRunning()) {
+            return changed;
+        }
+        if(shift != Input.NONE) {
+            changed |= autoShift(board, now);
+        }
+        if(softDropHeld) {
+            changed |= softDrop(board);
+        }
+        return changed;
+    }
+
+    /**
+     * @return time of the first key press applied by the last update, 0 if there was none.
+     */
+    long getFirstPressNanos() {
+        return firstPressNanos;
+    }
+
+    private boolean handle(Board board, Input key, boolean down, long nanos) {
+        switch(key) {
+            case LEFT:
+            case RIGHT:
+                if(key == Input.LEFT) {
+                    leftHeld = down;
+                } else {
+                    rightHeld = down;
+                }
+                if(down) {
+                    shift = key;
+                    nextShift = nanos + dasNanos;
+                    return board.apply(key);
+                }
+                if(shift == key) {
+                    // fall back to the other direction if it is still held
+                    shift = leftHeld ? Input.LEFT : (rightHeld ? Input.RIGHT : Input.NONE);
+                    nextShift = nanos + dasNanos;
+                }
+                return false;
+            case SOFT_DROP:
+                softDropHeld = down;
+                softDropCells = 0;
+                return down && board.apply(key);
+            case ROTATE:
+            case HARD_DROP:
+                return down && board.apply(key);
+            default:
+                return false;
+        }
+    }
+
+    private boolean autoShift(Board board, long now) {
+        boolean changed = false;
+        int dx = (shift == Input.LEFT) ? -1 : 1;
+        int width = board.getField().getWidth();
+        for(int moves = 0; (nextShift <= now) && (moves < width); moves++) {
+            if(!canMove(board, dx)) {
+                // keep charged against the wall, the tetromino may get past the obstacle later
+                nextShift = now;
+                break;
+            }
+            changed |= board.apply(shift);
+            nextShift += arrNanos;
+        }
+        if(nextShift < now - dasNanos) {
+            // repeats missed while the loop was behind are not made up for
+            nextShift = now;
+        }
+        return changed;
+    }
+
+    private boolean softDrop(Board board) {
+        boolean changed = false;
+        // extra cells on top of the gravity the board applies itself
+        softDropCells += (softDropFactor - 1) * (double) Board.TICK_MILLIS / Board.getLevelDelay(board.getLevel());
+        int height = board.getField().getHeight();
+        for(int cells = 0; (softDropCells >= 1) && (cells < height) && board.isGameRunning(); cells++) {
+            changed |= board.apply(Input.SOFT_DROP);
+            softDropCells -= 1;
+        }
+        softDropCells = Math.min(softDropCells, 1);
+        return changed;
+    }
+
+    private static boolean canMove(Board board, int dx) {
+        Tetromino tetro = board.getCurrentTetromino();
+        return !Board.isColliding(board.getField(), tetro.getType(), tetro.getRotation(), 
+                tetro.getXposition() + dx, tetro.getYposition());
+    }
+}
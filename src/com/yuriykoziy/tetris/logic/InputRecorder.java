@@ -0,0 +1,16 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Receives every player input applied to the Board together with the tick it was applied at.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface InputRecorder {
+    
+    /**
+     * @param tick  board tick count when input was applied.
+     * @param input applied input, never {@link Input#NONE}.
+     */
+    void record(long tick, Input input);
+}
@@ -0,0 +1,80 @@
+package com.yuriykoziy.tetris.logic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single producer, single consumer queue of key presses and releases 
+ * with their {@link System#nanoTime()} timestamps. Events are stored in preallocated arrays,
+ * the producer publishes a slot by advancing the tail with a release store and the consumer 
+ * frees slots the same way through the head, so neither side allocates or blocks.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class KeyEventRing {
+    private static final Input[] KEYS = Input.values();
+
+    private final int mask;
+    private final int[] events;
+    private final long[] times;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of pending events, rounded up to a power of two.
+     */
+    public KeyEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        events = new int[size];
+        times = new long[size];
+    }
+
+    /**
+     * Called by the producer thread only.
+     *
+     * @param key   pressed or released key.
+     * @param down  true for a press, false for a release.
+     * @param nanos event time.
+     * @return false if the ring is full and the event was dropped.
+     */
+    public boolean offer(Input key, boolean down, long nanos) {
+        long t = tail.get();
+        if(t - head.get() > mask) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        events[slot] = (key.ordinal() << 1) | (down ? 1 : 0);
+        times[slot] = nanos;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Moves all pending events into given arrays. Called by the consumer thread only.
+     *
+     * @param keys   receives event keys, at least capacity long.
+     * @param downs  receives true for presses, false for releases.
+     * @param nanos  receives event times.
+     * @return number of events.
+     */
+    public int drain(Input[] keys, boolean[] downs, long[] nanos) {
+        long h = head.get();
+        int count = (int) (tail.get() - h);
+        for(int i = 0; i < count; i++) {
+            int slot = (int) (h + i) & mask;
+            keys[i] = KEYS[events[slot] >>> 1];
+            downs[i] = (events[slot] & 1) != 0;
+            nanos[i] = times[slot];
+        }
+        head.lazySet(h + count);
+        return count;
+    }
+
+    /**
+     * @return maximum number of pending events.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,63 @@
+package com.yuriykoziy.tetris.logic;
+
+import com.yuriykoziy.tetris.random.Randomizer;
+
+/**
+ * Fixed size ring buffer of upcoming tetromino types, kept full from a randomizer
+ * so the next few pieces can be previewed.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class PieceQueue {
+    private final Randomizer randomizer;
+    private final byte[] ring;
+    private final int mask;
+    private int head;
+    
+    /**
+     * @param randomizer source of tetromino types.
+     * @param lookahead  number of upcoming pieces that can be previewed.
+     */
+    public PieceQueue(Randomizer randomizer, int lookahead) {
+        if(lookahead < 1) {
+            throw new IllegalArgumentException("Invalid lookahead: " + lookahead);
+        }
+        this.randomizer = randomizer;
+        ring = new byte[Integer.highestOneBit((lookahead << 1) - 1)];
+        mask = ring.length - 1;
+        for(int i = 0; i < ring.length; i++) {
+            ring[i] = (byte) randomizer.next();
+        }
+    }
+    
+    /**
+     * Removes next type from the queue and refills the freed slot.
+     * 
+     * @return next tetromino type.
+     */
+    public int poll() {
+        int type = ring[head];
+        ring[head] = (byte) randomizer.next();
+        head = (head + 1) & mask;
+        return type;
+    }
+    
+    /**
+     * @param index position in the queue, 0 is the next piece.
+     * @return upcoming tetromino type.
+     */
+    public int peek(int index) {
+        if(index < 0 || index >= ring.length) {
+            throw new IndexOutOfBoundsException("Invalid preview index: " + index);
+        }
+        return ring[(head + index) & mask];
+    }
+    
+    /**
+     * @return number of upcoming pieces that can be previewed.
+     */
+    public int size() {
+        return ring.length;
+    }
+}
@@ -0,0 +1,92 @@
+package com.yuriykoziy.tetris.logic;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bulk operations over field rows stored as occupancy words: row y occupies
+ * words [y * words, (y + 1) * words), column x is bit x % 64 of word x / 64.
+ * Vector API implementation is selected at startup when the JVM runs with
+ * "--add-modules jdk.incubator.vector", otherwise scalar loops are used.
+ * Setting "tetris.vector" system property to false forces the scalar implementation.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public abstract class RowKernels {
+    private static final String VECTOR_PROPERTY = "tetris.vector";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_CLASS = "com.yuriykoziy.tetris.logic.VectorRowKernels";
+
+    private static final RowKernels SCALAR = new ScalarRowKernels();
+    private static final RowKernels VECTOR = loadVector();
+    private static final RowKernels DEFAULT =
+            ((VECTOR != null) && !"false".equals(System.getProperty(VECTOR_PROPERTY))) ? VECTOR : SCALAR;
+
+    /**
+     * @return implementation selected at startup.
+     */
+    public static RowKernels get() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return scalar implementation.
+     */
+    public static RowKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return Vector API implementation or null if the incubator module is not available.
+     */
+    public static RowKernels vector() {
+        return VECTOR;
+    }
+
+    private static RowKernels loadVector() {
+        if(ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            return (RowKernels) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            Logger.getLogger(RowKernels.class.getName()).log(Level.WARNING, "Vector kernels unavailable", ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return implementation name.
+     */
+    public abstract String getName();
+
+    /**
+     * @param rows         occupancy words.
+     * @param words        words per row.
+     * @param lastWordMask columns present in the last word of a row.
+     * @param from         first row to test.
+     * @param to           row after the last row to test.
+     * @return index of the first full row, -1 if there is none.
+     */
+    public abstract int findFullRow(long[] rows, int words, long lastWordMask, int from, int to);
+
+    /**
+     * Computes column heights and counts holes (empty cells below column tops).
+     * Rows above first are expected to be empty.
+     *
+     * @param rows    occupancy words.
+     * @param words   words per row.
+     * @param width   number of columns.
+     * @param first   topmost row that may be occupied.
+     * @param height  number of rows, heights are measured from the bottom.
+     * @param heights receives height of every column.
+     * @return number of holes.
+     */
+    public abstract int analyzeColumns(long[] rows, int words, int width, int first, int height, int[] heights);
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
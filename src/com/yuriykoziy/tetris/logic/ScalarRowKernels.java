@@ -0,0 +1,82 @@
+package com.yuriykoziy.tetris.logic;
+
+import java.util.Arrays;
+
+/**
+ * Row kernels written as plain loops over occupancy words.
+ * Holes are counted as the sum of column heights minus the number of occupied cells,
+ * so the column sweep stops as soon as every column has its top.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class ScalarRowKernels extends RowKernels {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public int findFullRow(long[] rows, int words, long lastWordMask, int from, int to) {
+        for(int y = from; y < to; y++) {
+            if(isFull(rows, y * words, words, lastWordMask)) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isFull(long[] rows, int offset, int words, long lastWordMask) {
+        int last = offset + words - 1;
+        for(int i = offset; i < last; i++) {
+            if(rows[i] != -1L) {
+                return false;
+            }
+        }
+        return rows[last] == lastWordMask;
+    }
+
+    @Override
+    public int analyzeColumns(long[] rows, int words, int width, int first, int height, int[] heights) {
+        Arrays.fill(heights, 0, width, 0);
+        int aggregate = 0;
+        for(int w = 0; w < words; w++) {
+            aggregate += sweepWord(rows, words, w, wordMask(width, w), first, height, heights);
+        }
+        return aggregate - countCells(rows, first * words, height * words);
+    }
+
+    /**
+     * Finds tops of 64 columns of a word going down until all of them are found.
+     *
+     * @return sum of heights of the columns.
+     */
+    static int sweepWord(long[] rows, int words, int w, long full, int first, int height, int[] heights) {
+        long covered = 0;
+        int aggregate = 0;
+        for(int y = first; (y < height) && (covered != full); y++) {
+            long fresh = rows[y * words + w] & ~covered;
+            covered |= fresh;
+            aggregate += Long.bitCount(fresh) * (height - y);
+            while(fresh != 0) {
+                heights[(w << 6) + Long.numberOfTrailingZeros(fresh)] = height - y;
+                fresh &= fresh - 1;
+            }
+        }
+        return aggregate;
+    }
+
+    static long wordMask(int width, int w) {
+        int bits = width - (w << 6);
+        return (bits >= Long.SIZE) ? -1L : (1L << bits) - 1;
+    }
+
+    static int countCells(long[] rows, int from, int to) {
+        int cells = 0;
+        for(int i = from; i < to; i++) {
+            cells += Long.bitCount(rows[i]);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,18 @@
+package com.yuriykoziy.tetris.logic;
+
+/**
+ * Publisher of {@link BoardSnapshot}s read by renderers: a local {@link Board}
+ * or a reconstruction of a remote one.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface SnapshotSource {
+    
+    /**
+     * Can be called from any thread without locking.
+     * 
+     * @return last published snapshot, null before the first one.
+     */
+    BoardSnapshot getSnapshot();
+}
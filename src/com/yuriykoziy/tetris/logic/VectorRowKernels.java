@@ -0,0 +1,177 @@
+package com.yuriykoziy.tetris.logic;
+
+import java.util.Arrays;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Row kernels using the incubating Vector API. Fields one word wide test a vector of rows
+ * at once, wider fields test a vector of words of one row (256 columns per compare).
+ * Occupied cells are counted with a lane-wise bit count accumulated in bytes, the Vector API
+ * of Java 17 has no population count operation. Loaded only through {@link RowKernels}.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class VectorRowKernels extends RowKernels {
+    private static final VectorSpecies<Long> ROWS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> WORDS = LongVector.SPECIES_256;
+    // byte counters hold at most 8 per word, flushed before they overflow
+    private static final int BYTE_COUNT_VECTORS = 31;
+    private static final long M1 = 0x5555555555555555L;
+    private static final long M2 = 0x3333333333333333L;
+    private static final long M4 = 0x0f0f0f0f0f0f0f0fL;
+    private static final long M8 = 0x00ff00ff00ff00ffL;
+
+    @Override
+    public String getName() {
+        return "vector-" + ROWS.vectorBitSize();
+    }
+
+    @Override
+    public int findFullRow(long[] rows, int words, long lastWordMask, int from, int to) {
+        if(words == 1) {
+            return findFullWord(rows, lastWordMask, from, to);
+        }
+        int fullWords = (lastWordMask == -1L) ? words : words - 1;
+        int bound = WORDS.loopBound(fullWords);
+        for(int y = from; y < to; y++) {
+            int offset = y * words;
+            boolean full = true;
+            int i = 0;
+            for(; full && (i < bound); i += WORDS.length()) {
+                full = LongVector.fromArray(WORDS, rows, offset + i).eq(-1L).allTrue();
+            }
+            for(; full && (i < fullWords); i++) {
+                full = rows[offset + i] == -1L;
+            }
+            if(full && ((fullWords == words) || (rows[offset + words - 1] == lastWordMask))) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    private int findFullWord(long[] rows, long full, int from, int to) {
+        int y = from;
+        int bound = from + ROWS.loopBound(to - from);
+        for(; y < bound; y += ROWS.length()) {
+            VectorMask<Long> mask = LongVector.fromArray(ROWS, rows, y).eq(full);
+            if(mask.anyTrue()) {
+                return y + mask.firstTrue();
+            }
+        }
+        for(; y < to; y++) {
+            if(rows[y] == full) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int analyzeColumns(long[] rows, int words, int width, int first, int height, int[] heights) {
+        Arrays.fill(heights, 0, width, 0);
+        int aggregate;
+        if(words == 1) {
+            aggregate = sweepRows(rows, ScalarRowKernels.wordMask(width, 0), first, height, heights);
+        } else {
+            int fullWords = width >>> 6;
+            int bound = WORDS.loopBound(fullWords);
+            aggregate = 0;
+            for(int w = 0; w < bound; w += WORDS.length()) {
+                aggregate += sweepWords(rows, words, w, first, height, heights);
+            }
+            for(int w = bound; w < words; w++) {
+                aggregate += ScalarRowKernels.sweepWord(rows, words, w, ScalarRowKernels.wordMask(width, w),
+                        first, height, heights);
+            }
+        }
+        return aggregate - countCells(rows, first * words, height * words);
+    }
+
+    /**
+     * Column tops of a one word field, a vector of rows adding no new column is skipped at once.
+     */
+    private int sweepRows(long[] rows, long full, int first, int height, int[] heights) {
+        long covered = 0;
+        int aggregate = 0;
+        int y = first;
+        int bound = first + ROWS.loopBound(height - first);
+        while((y < height) && (covered != full)) {
+            int end = y + 1;
+            if(y < bound) {
+                end = y + ROWS.length();
+                long any = LongVector.fromArray(ROWS, rows, y).reduceLanes(VectorOperators.OR);
+                if((any & ~covered) == 0) {
+                    y = end;
+                    continue;
+                }
+            }
+            for(; y < end; y++) {
+                long fresh = rows[y] & ~covered;
+                covered |= fresh;
+                aggregate += recordTops(fresh, 0, height - y, heights);
+            }
+        }
+        return aggregate;
+    }
+
+    /**
+     * Column tops of 256 full columns starting at word w.
+     */
+    private int sweepWords(long[] rows, int words, int w, int first, int height, int[] heights) {
+        LongVector covered = LongVector.zero(WORDS);
+        int aggregate = 0;
+        for(int y = first; y < height; y++) {
+            LongVector row = LongVector.fromArray(WORDS, rows, y * words + w);
+            LongVector fresh = row.lanewise(VectorOperators.AND_NOT, covered);
+            if(fresh.compare(VectorOperators.NE, 0L).anyTrue()) {
+                for(int lane = 0; lane < WORDS.length(); lane++) {
+                    aggregate += recordTops(fresh.lane(lane), (w + lane) << 6, height - y, heights);
+                }
+                covered = covered.or(row);
+                if(covered.eq(-1L).allTrue()) {
+                    break;
+                }
+            }
+        }
+        return aggregate;
+    }
+
+    private static int recordTops(long fresh, int column, int top, int[] heights) {
+        int count = Long.bitCount(fresh);
+        while(fresh != 0) {
+            heights[column + Long.numberOfTrailingZeros(fresh)] = top;
+            fresh &= fresh - 1;
+        }
+        return count * top;
+    }
+
+    private static int countCells(long[] rows, int from, int to) {
+        LongVector total = LongVector.zero(ROWS);
+        int i = from;
+        int bound = from + ROWS.loopBound(to - from);
+        while(i < bound) {
+            int end = Math.min(bound, i + BYTE_COUNT_VECTORS * ROWS.length());
+            LongVector bytes = LongVector.zero(ROWS);
+            for(; i < end; i += ROWS.length()) {
+                LongVector v = LongVector.fromArray(ROWS, rows, i);
+                v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(M1));
+                v = v.and(M2).add(v.lanewise(VectorOperators.LSHR, 2).and(M2));
+                bytes = bytes.add(v.add(v.lanewise(VectorOperators.LSHR, 4)).and(M4));
+            }
+            bytes = bytes.and(M8).add(bytes.lanewise(VectorOperators.LSHR, 8).and(M8));
+            bytes = bytes.add(bytes.lanewise(VectorOperators.LSHR, 16));
+            bytes = bytes.add(bytes.lanewise(VectorOperators.LSHR, 32));
+            total = total.add(bytes.and(0xffffL));
+        }
+        int cells = (int) total.reduceLanes(VectorOperators.ADD);
+        for(; i < to; i++) {
+            cells += Long.bitCount(rows[i]);
+        }
+        return cells;
+    }
+}
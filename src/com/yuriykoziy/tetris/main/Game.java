@@ -1,34 +1,92 @@
 package com.yuriykoziy.tetris.main;
 
+import com.yuriykoziy.tetris.ai.AutoPlayer;
 import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardAdapter;
 import com.yuriykoziy.tetris.panels.BoardPanel;
 import com.yuriykoziy.tetris.panels.SidePanel;
+import com.yuriykoziy.tetris.random.RandomizerType;
+import com.yuriykoziy.tetris.replay.ReplayRecorder;
+import com.yuriykoziy.tetris.sim.RandomPlayer;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
  * This class creates an instance of tetris game and additional JPanels.
+ * Every game is recorded, if "tetris.replayDir" system property is set 
+ * the replay is saved there when the game is over.
+ * Board size is taken from "tetris.width" and "tetris.height" system properties (10x20 by default).
+ * Game timing histograms are published over JMX, see {@link com.yuriykoziy.tetris.metrics.GameMetrics}.
+ * In demo mode the game is played by the autoplayer, boards wider than it can search 
+ * are played by random inputs.
  * 
  * @author Yuriy Koziy
  * @version 1.01
  */
 public class Game {
+    private static final String REPLAY_DIR = "tetris.replayDir";
+    private static final String WIDTH = "tetris.width";
+    private static final String HEIGHT = "tetris.height";
+    private static final int SIDE_PANEL_WIDTH = 150;
+    private static final int SIDE_PANEL_HEIGHT = 405;
+    
     private final JPanel gamePanel;
     private final Board board;
+    private final ReplayRecorder recorder;
+    private final long seed;
     
     public Game() {
+        this(false);
+    }
+    
+    /**
+     * @param demo true to let the autoplayer play the game.
+     */
+    public Game(boolean demo) {
+        this(demo, Integer.getInteger(WIDTH, 10), Integer.getInteger(HEIGHT, 20));
+    }
+    
+    /**
+     * @param demo   true to let the autoplayer play the game.
+     * @param width  board width.
+     * @param height board height.
+     */
+    public Game(boolean demo, int width, int height) {
         gamePanel = new JPanel();
         gamePanel.setLayout(new BorderLayout());
         gamePanel.setBackground(Color.LIGHT_GRAY);
-        gamePanel.setPreferredSize(new Dimension(355, 405));
         
-        board = new Board(10, 20, 0); 
+        seed = System.nanoTime();
+        recorder = new ReplayRecorder(width, height, 0, RandomizerType.BAG, seed);
+        board = recorder.createBoard(); 
+        board.addBoardListener(new BoardAdapter() {
+            @Override
+            public void onGameOver() {
+                // save after the step that ended the game has finished scoring
+                SwingUtilities.invokeLater(Game.this::saveReplay);
+            }
+        });
 
-        BoardPanel boardPanel = new BoardPanel(205, 405, board);  
+        BoardPanel boardPanel = new BoardPanel(board);  
+        boardPanel.getGameLoop().getMetrics().register();
+        if(demo) {
+            boardPanel.getGameLoop().setPlayer((width <= Long.SIZE) ? new AutoPlayer(width, height) 
+                    : new RandomPlayer(seed));
+        }
+        Dimension boardSize = boardPanel.getPreferredSize();
+        gamePanel.setPreferredSize(new Dimension(boardSize.width + SIDE_PANEL_WIDTH, 
+                Math.max(boardSize.height, SIDE_PANEL_HEIGHT)));
 
-        SidePanel sidePanel = new SidePanel(150, 405);
+        SidePanel sidePanel = new SidePanel(SIDE_PANEL_WIDTH, SIDE_PANEL_HEIGHT);
         sidePanel.setListener(board);
         
         board.startGame();
@@ -37,6 +95,24 @@ public class Game {
         gamePanel.add(sidePanel, BorderLayout.EAST);   
     }
     
+    private void saveReplay() {
+        String dir = System.getProperty(REPLAY_DIR);
+        byte[] replay;
+        synchronized(board) {
+            replay = recorder.finish(board);
+        }
+        if(dir == null) {
+            return;
+        }
+        Path file = Paths.get(dir, "tetris-" + seed + ".replay");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, replay);
+        } catch (IOException ex) {
+            Logger.getLogger(Game.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
     /**
      * 
      * @return game JPanel.
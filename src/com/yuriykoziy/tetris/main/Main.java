@@ -5,7 +5,7 @@ import static javax.swing.JFrame.EXIT_ON_CLOSE;
 import javax.swing.SwingUtilities;
 
 /**
- * Launches actual game window.
+ * Launches actual game window, with "--demo" argument the game is played by the autoplayer.
  * 
  * @author Yuriy Koziy
  * @version 1.01
@@ -15,7 +15,7 @@ public class Main {
     /**
      * Creates JFrame and displays it.
      */
-    private static void createAndShowGUI() {
+    private static void createAndShowGUI(boolean demo) {
         JFrame.setDefaultLookAndFeelDecorated(true);
         // create and set up window
         JFrame frame = new JFrame("Tetris Clone");
@@ -24,7 +24,7 @@ public class Main {
         frame.setResizable(false);
         
         //create and set up content pane
-        Game game = new Game();
+        Game game = new Game(demo);
         frame.setContentPane(game.getGamePanel());
         
         //display window
@@ -33,10 +33,11 @@ public class Main {
     }
     
     public static void main(String[] args) {
+        boolean demo = (args.length > 0) && args[0].equals("--demo");
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                createAndShowGUI();
+                createAndShowGUI(demo);
             }
         });    
     }    
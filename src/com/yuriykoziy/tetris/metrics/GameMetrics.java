@@ -0,0 +1,122 @@
+package com.yuriykoziy.tetris.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timing histograms of a running game: logic step, logic steps that landed a tetromino,
+ * paint, key press to tick and key press to paint latency and tick start jitter. 
+ * Jitter and key press to tick latency are recorded always,
+ * the rest only while enabled ("tetris.metrics" system property or {@link #setEnabled(boolean)}).
+ * Step and jitter are recorded by the game loop thread, paint and input latency by the EDT.
+ * Histograms can be published as MXBeans under "com.yuriykoziy.tetris" domain.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class GameMetrics implements GameMetricsMXBean {
+    public static final String ENABLED_PROPERTY = "tetris.metrics";
+    private static final String DOMAIN = "com.yuriykoziy.tetris";
+
+    private final LatencyHistogram step = new LatencyHistogram("step");
+    private final LatencyHistogram land = new LatencyHistogram("land");
+    private final LatencyHistogram paint = new LatencyHistogram("paint");
+    private final LatencyHistogram keyToTick = new LatencyHistogram("key");
+    private final LatencyHistogram inputToPaint = new LatencyHistogram("input");
+    private final LatencyHistogram jitter = new LatencyHistogram("jitter");
+    private final LatencyHistogram[] histograms = {step, land, paint, keyToTick, inputToPaint, jitter};
+    private volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return duration of logic steps: queued inputs, player input and gravity tick.
+     */
+    public LatencyHistogram getStep() {
+        return step;
+    }
+
+    /**
+     * @return duration of logic steps that landed a tetromino, including row clearing.
+     */
+    public LatencyHistogram getLand() {
+        return land;
+    }
+
+    /**
+     * @return duration of board panel paints.
+     */
+    public LatencyHistogram getPaint() {
+        return paint;
+    }
+
+    /**
+     * @return time from a key press to the start of the tick applying it.
+     */
+    public LatencyHistogram getKeyToTick() {
+        return keyToTick;
+    }
+
+    /**
+     * @return time from a key press to the end of the first paint showing its effect.
+     */
+    public LatencyHistogram getInputToPaint() {
+        return inputToPaint;
+    }
+
+    /**
+     * @return lateness of tick starts against their schedule.
+     */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return all histograms.
+     */
+    public LatencyHistogram[] getHistograms() {
+        return histograms.clone();
+    }
+
+    @Override
+    public void reset() {
+        for(LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Registers this object and all histograms with the platform MBean server, 
+     * replacing beans registered by a previous game.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(DOMAIN + ":type=GameMetrics"), this);
+            for(LatencyHistogram histogram : histograms) {
+                register(server, new ObjectName(DOMAIN + ":type=Histogram,name=" + histogram.getName()), histogram);
+            }
+        } catch (JMException ex) {
+            Logger.getLogger(GameMetrics.class.getName()).log(Level.WARNING, "Metrics not registered", ex);
+        }
+    }
+
+    private static void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        if(server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(bean, name);
+    }
+}
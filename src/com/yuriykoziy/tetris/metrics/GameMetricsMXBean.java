@@ -0,0 +1,22 @@
+package com.yuriykoziy.tetris.metrics;
+
+/**
+ * Management interface of {@link GameMetrics}.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface GameMetricsMXBean {
+
+    boolean isEnabled();
+
+    /**
+     * @param enabled true to record step, paint and input latency histograms.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Clears all histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,138 @@
+package com.yuriykoziy.tetris.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size log-linear histogram of durations in the style of HdrHistogram.
+ * Values below {@link #SUB_BUCKETS} nanoseconds are counted exactly, larger values fall into
+ * buckets 1/16 - 1/32 of their magnitude wide, so every reported value is within about 6% 
+ * of the recorded one. Recording is a few arithmetic operations and an array increment,
+ * it never allocates. Meant for a single recording thread, readers on other threads 
+ * see approximate values while recording goes on.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    public static final int SUB_BUCKETS = 32;
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    private static final int HALF = SUB_BUCKETS / 2;
+    // about 18 minutes, larger values are clamped
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final String name;
+    private final long[] counts = new long[index(MAX_VALUE) + 1];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * @param name name shown in reports.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name shown in reports.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param nanos duration, negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if(value > max) {
+            max = value;
+        }
+    }
+
+    private static int index(long value) {
+        int shift = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * @return highest value falling into the bucket.
+     */
+    private static long highestValue(int index) {
+        int shift = (index < SUB_BUCKETS) ? 0 : index / HALF - 1;
+        return ((long) (index - shift * HALF + 1) << shift) - 1;
+    }
+
+    /**
+     * @param percentile percentile (0-100).
+     * @return value at or below which given percentage of recorded values lies.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count;
+        if(total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public long getMeanNanos() {
+        long n = count;
+        return (n == 0) ? 0 : sum / n;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return max;
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-6s n=%d p50=%dus p99=%dus max=%dus", name, count, 
+                getP50Nanos() / 1000, getP99Nanos() / 1000, max / 1000);
+    }
+}
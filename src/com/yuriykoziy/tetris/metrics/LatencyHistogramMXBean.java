@@ -0,0 +1,29 @@
+package com.yuriykoziy.tetris.metrics;
+
+/**
+ * Management interface of a {@link LatencyHistogram}, all values are in nanoseconds.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    long getMeanNanos();
+
+    long getMaxNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    /**
+     * Clears all recorded values.
+     */
+    void reset();
+}
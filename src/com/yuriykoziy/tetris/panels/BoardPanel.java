@@ -1,6 +1,13 @@
 package com.yuriykoziy.tetris.panels;
 
 import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardSnapshot;
+import com.yuriykoziy.tetris.logic.FieldView;
+import com.yuriykoziy.tetris.logic.GameLoop;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.logic.SnapshotSource;
+import com.yuriykoziy.tetris.metrics.GameMetrics;
+import com.yuriykoziy.tetris.metrics.LatencyHistogram;
 import com.yuriykoziy.tetris.piece.Tetromino;
 import com.yuriykoziy.tetris.texture.BlockTexture;
 import java.awt.BorderLayout;
@@ -8,47 +15,111 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
 /**
  * This class implements graphical representation of Tetris game logic, 
- * and also controls animation and handles all the necessary keyboard input.
+ * board is driven by a GameLoop thread, this panel repaints when the loop signals a change 
+ * and passes key presses and releases to the loop, which repeats held keys.
+ * Painting reads only the lock-free snapshots published by the game loop.
+ * Grid and landed blocks are cached in an offscreen image that is redrawn only when the field 
+ * or the viewport changes, moves of the falling tetromino repaint just its old and new bounding rectangles.
+ * Boards larger than the panel are shown through a viewport that follows the falling tetromino,
+ * "+" and "-" zoom, Page Up and Page Down scroll.
+ * Paint duration and input to paint latency are recorded into the loop's metrics,
+ * F3 toggles an overlay with their percentiles.
+ * A spectator panel paints snapshots of any {@link SnapshotSource}, e.g. a board reconstructed
+ * from a network stream, it has no game loop and takes no game input.
  * 
  * @author Yuriy Koziy
  * @version 1.01
  */
-public class BoardPanel extends JPanel implements ActionListener {
+public class BoardPanel extends JPanel {
     private static final int SQUARE_DIMENSION = 20;
+    private static final int MIN_SQUARE = 2;
+    private static final int MAX_SQUARE = 40;
+    // grid lines are left out when squares get smaller
+    private static final int MIN_GRID_SQUARE = 6;
+    private static final int BORDER = 5;
+    private static final int MAX_VIEW_SIZE = 800 + BORDER;
+    private static final int OVERLAY_LINE = 12;
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 10);
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
     
-    private final Timer timer;
-    private final Board board;
-    private final BlockTexture block;
+    private final GameLoop loop;
+    private final SnapshotSource source;
+    private final GameMetrics metrics;
     private final int width;
     private final int height;
-    private final int currentDelay;
-    private int[] speedLevels;
+    private final int columns;
+    private final int rows;
+    private final int overlayHeight;
+    
+    // replaced on the EDT, read by the game loop thread to compute repaint areas
+    private volatile Viewport view;
     
     private boolean isPaused = false;
+    private boolean isGameOver = false;
+    private volatile boolean overlay = false;
+    
+    // offscreen layer with grid and landed blocks, touched only on the EDT
+    private BufferedImage groundLayer;
+    private int groundVersion;
+    private Viewport groundView;
+    
+    // last painted falling tetromino bounds, touched only on the game loop thread
+    private int lastFieldVersion = -1;
+    private int lastX, lastY, lastW, lastH;
     
     private JLabel gamePausedLabel;
     
+    /**
+     * Constructs JPanel sized to show the whole board with default squares, 
+     * boards that do not fit get smaller squares and a scrolling viewport.
+     * @param board  Tetris board object.
+     */
+    public BoardPanel(Board board) {
+        this(getViewSize(board.getField().getWidth()), getViewSize(board.getField().getHeight()), board);
+    }
+    
     /**
      * Constructs JPanel to display Tetris board graphically.
-     * @param width  board width
-     * @param height board height
+     * @param width  panel width
+     * @param height panel height
      * @param board  Tetris board object.
      */    
     public BoardPanel(int width, int height, Board board) {
+        this(width, height, board.getField().getWidth(), board.getField().getHeight(), board, board);
+    }
+    
+    /**
+     * Constructs spectator JPanel sized like {@link #BoardPanel(Board)}, 
+     * the owner of the source calls {@link #snapshotChanged()} after publishing a snapshot.
+     * @param source  source of snapshots.
+     * @param columns board width.
+     * @param rows    board height.
+     */
+    public BoardPanel(SnapshotSource source, int columns, int rows) {
+        this(getViewSize(columns), getViewSize(rows), columns, rows, source, null);
+    }
+    
+    private BoardPanel(int width, int height, int columns, int rows, SnapshotSource source, Board board) {
         this.width = width;
         this.height = height;
-        this.board = board;
+        this.source = source;
+        this.columns = columns;
+        this.rows = rows;
         
         //setListener(board);
         setBackground(Color.LIGHT_GRAY);
@@ -57,99 +128,303 @@ public class BoardPanel extends JPanel implements ActionListener {
         setFocusable(true);
         setOpaque(true); 
 
-        block = new BlockTexture();
-        calculateLevelSpeeds();
+        // squares fit the board width, taller boards scroll
+        int square = (width - BORDER) / columns;
+        view = createViewport(Math.max(MIN_SQUARE, Math.min(SQUARE_DIMENSION, square)), 0, 0);
 
-        currentDelay = speedLevels[board.getLevel()];
-        timer = new Timer(currentDelay, this);
-        timer.start(); 
+        loop = (board != null) ? new GameLoop(board, this::snapshotChanged) : null;
+        metrics = (loop != null) ? loop.getMetrics() : new GameMetrics();
+        overlayHeight = (metrics.getHistograms().length + 1) * OVERLAY_LINE + 4;
         
-        addKeyListener(new InputListener());
+        InputListener inputListener = new InputListener();
+        addKeyListener(inputListener);
+        addFocusListener(inputListener);
         createStatusLabels();        
     }
     
+    private static int getViewSize(int squares) {
+        int square = Math.max(MIN_SQUARE, Math.min(SQUARE_DIMENSION, (MAX_VIEW_SIZE - BORDER) / squares));
+        return Math.min(squares * square + BORDER, MAX_VIEW_SIZE);
+    }
+    
+    /**
+     * Starts game loop once the panel is displayed.
+     */
     @Override
-    public void actionPerformed(ActionEvent ae) {    
-        board.fall();         
-        if(!board.isGameRunning() || (board.getLevel() > 98)) {
-            timer.stop();
-            JOptionPane.showMessageDialog(this, "GAME OVER", "Game Starus",  JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            repaint();   
+    public void addNotify() {
+        super.addNotify();
+        if(loop != null) {
+            loop.setPaused(isPaused);
+            loop.start();
         }
     }
     
+    /**
+     * Stops game loop when the panel is no longer displayed.
+     */
+    @Override
+    public void removeNotify() {
+        if(loop != null) {
+            loop.stop();
+        }
+        super.removeNotify();
+    }
+    
+    /**
+     * 
+     * @return game loop driving the board, null for a spectator panel.
+     */
+    public GameLoop getGameLoop() {
+        return loop;
+    }
+    
     @Override
     protected void paintComponent(Graphics g) {
+        boolean measure = metrics.isEnabled();
+        long start = measure ? System.nanoTime() : 0;
+        // taken before the snapshot is read, so the snapshot already shows the input
+        long input = (loop != null) ? loop.takeAppliedInputNanos() : 0;
         super.paintComponent(g);
-        drawGrid(g);
-        drawFallingTetromino(g);
-        drawTetrominoesOnGround(g);
+        BoardSnapshot snapshot = source.getSnapshot();
+        if(snapshot != null) {
+            Viewport v = follow(view, snapshot);
+            view = v;
+            updateGroundLayer(snapshot.getField(), v);
+            g.drawImage(groundLayer, 0, 0, null);
+            drawFallingTetromino(g, snapshot, v);
+        }
+        if(overlay) {
+            drawOverlay(g, metrics);
+        }
         g.dispose();
+        if(measure) {
+            long end = System.nanoTime();
+            metrics.getPaint().record(end - start);
+            if(input != 0) {
+                metrics.getInputToPaint().record(end - input);
+            }
+        }
+    }
+    
+    /**
+     * Render signal, invoked on the thread publishing snapshots (the game loop thread) after each new one.
+     * Repaints whole panel when the field changed or the tetromino left the viewport, 
+     * otherwise only the area covered by falling tetromino.
+     */
+    public void snapshotChanged() {
+        BoardSnapshot snapshot = source.getSnapshot();
+        if(snapshot == null) {
+            return;
+        }
+        int type = snapshot.getPieceType();
+        int rotation = snapshot.getPieceRotation();
+        int left = snapshot.getPieceX() + Tetromino.getMinX(type, rotation);
+        int top = snapshot.getPieceY() + Tetromino.getMinY(type, rotation);
+        int right = snapshot.getPieceX() + Tetromino.getMaxX(type, rotation);
+        int bottom = snapshot.getPieceY() + Tetromino.getMaxY(type, rotation);
+        Viewport v = view;
+        int x = (left - v.firstColumn) * v.square;
+        int y = (top - v.firstRow) * v.square;
+        int w = (right - left + 1) * v.square + 1;
+        int h = (bottom - top + 1) * v.square + 1;
+        int fieldVersion = snapshot.getField().getVersion();
+        
+        if(fieldVersion != lastFieldVersion || !snapshot.isGameRunning() || !v.contains(left, top, right, bottom)) {
+            repaint();
+        } else {
+            repaint(lastX, lastY, lastW, lastH);
+            repaint(x, y, w, h);
+            if(overlay) {
+                repaint(0, 0, width, overlayHeight);
+            }
+        }
+        lastFieldVersion = fieldVersion;
+        lastX = x;
+        lastY = y;
+        lastW = w;
+        lastH = h;
+        
+        if(!snapshot.isGameRunning() || (snapshot.getLevel() > 98)) {
+            if(loop != null) {
+                loop.stop();
+            }
+            SwingUtilities.invokeLater(this::showGameOver);
+        }
+    }
+    
+    private void showGameOver() {
+        if(!isGameOver) {
+            isGameOver = true;
+            JOptionPane.showMessageDialog(this, "GAME OVER", "Game Starus",  JOptionPane.INFORMATION_MESSAGE);
+        }
     }
 
     /**
-     * Calculates timer delays for levels 0-9.
+     * Redraws offscreen grid and landed blocks if the field or the viewport has changed since the last paint.
      */
-    // best value = 5
-    private void calculateLevelSpeeds() {
-        speedLevels = new int[10];
-        int curSpeed = 1000;
-        for(int i = 0; i < 10; i++) {
-            speedLevels[i] = curSpeed;
-            int speedChange = curSpeed/9;
-            curSpeed = curSpeed - speedChange;
-         } 
-    }
-            
-    private void drawGrid(Graphics g) {
+    private void updateGroundLayer(FieldView field, Viewport v) {
+        int version = field.getVersion();
+        if(groundLayer != null && groundVersion == version && groundView == v) {
+            return;
+        }
+        if(groundLayer == null) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            groundLayer = (gc != null) ? gc.createCompatibleImage(width, height) 
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = groundLayer.createGraphics();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, width, height);
+            drawGrid(g, v);
+            drawTetrominoesOnGround(g, field, v);
+        } finally {
+            g.dispose();
+        }
+        groundVersion = version;
+        groundView = v;
+    }
+
+    private void drawGrid(Graphics g, Viewport v) {
+        if(v.square < MIN_GRID_SQUARE) {
+            return;
+        }
         g.setColor(Color.BLACK);
         // draw vertical lines
-        for(int i = 0; i <= 10; i++) {
-            g.drawLine(i*SQUARE_DIMENSION, 0, i*SQUARE_DIMENSION, height-5);
+        for(int i = 0; i <= v.columns; i++) {
+            g.drawLine(i*v.square, 0, i*v.square, v.rows*v.square);
         }
         // draw horizontal lines
-        for(int i = 0; i <= 20; i++) {
-            g.drawLine(0, i*SQUARE_DIMENSION, width-5, i*SQUARE_DIMENSION);
+        for(int i = 0; i <= v.rows; i++) {
+            g.drawLine(0, i*v.square, v.columns*v.square, i*v.square);
         }
     }
     
-    private void drawTetrominoesOnGround(Graphics g) {
-        for(int row = 0; row < board.field.length; row++) {
-            for(int col = 0; col < board.field[row].length; col++) {
-                int type = board.field[row][col]; 
+    private void drawTetrominoesOnGround(Graphics g, FieldView field, Viewport v) {
+        for(int row = v.firstRow; row < v.firstRow + v.rows; row++) {
+            if(isRowEmpty(field, row)) {
+                continue;
+            }
+            for(int col = v.firstColumn; col < v.firstColumn + v.columns; col++) {
+                int type = field.getType(col, row); 
                 if(type != 0) {
-                    g.drawImage(block.getBlockTexture(type), row*SQUARE_DIMENSION, col*SQUARE_DIMENSION, null);
+                    g.drawImage(v.block.getBlockTexture(type), (col - v.firstColumn)*v.square, 
+                            (row - v.firstRow)*v.square, null);
                 }
             }
         }   
     }
     
-    private void drawFallingTetromino(Graphics g) {
-        Tetromino tetro = board.getCurrentTetromino();
-        int x = tetro.getXposition();
-        int y = tetro.getYposition();
-        int[][] tmp = tetro.getTetromino();
-        
-        for(int row = 0; row < Board.TETROMINO_SIZE; row++) {
-            for(int col = 0; col < Board.TETROMINO_SIZE; col++) {
-                int type = tmp[row][col]; 
-                if(type != 0) {
-                    g.drawImage(block.getBlockTexture(type), (x+col)*SQUARE_DIMENSION, (y+row)*SQUARE_DIMENSION, null);
-                }
+    private static boolean isRowEmpty(FieldView field, int row) {
+        for(int word = 0; word < field.getWordsPerRow(); word++) {
+            if(field.getRowWord(row, word) != 0) {
+                return false;
             }
+        }
+        return true;
+    }
+    
+    private void drawFallingTetromino(Graphics g, BoardSnapshot snapshot, Viewport v) {
+        if(!snapshot.isGameRunning()) {
+            return;
+        }
+        int type = snapshot.getPieceType();
+        int rotation = snapshot.getPieceRotation();
+        int x = snapshot.getPieceX() - v.firstColumn;
+        int y = snapshot.getPieceY() - v.firstRow;
+        Image texture = v.block.getBlockTexture(type + 1);
+        
+        for(int i = 0; i < Tetromino.CELLS; i++) {
+            g.drawImage(texture, (x+Tetromino.getCellX(type, rotation, i))*v.square, 
+                    (y+Tetromino.getCellY(type, rotation, i))*v.square, null);
         }           
     }
+    
+    /**
+     * Moves the viewport when the falling tetromino is outside of it, 
+     * the tetromino ends up in the upper part so the view jumps rarely while it falls.
+     */
+    private Viewport follow(Viewport v, BoardSnapshot snapshot) {
+        if(!snapshot.isGameRunning()) {
+            return v;
+        }
+        int type = snapshot.getPieceType();
+        int rotation = snapshot.getPieceRotation();
+        int left = snapshot.getPieceX() + Tetromino.getMinX(type, rotation);
+        int right = snapshot.getPieceX() + Tetromino.getMaxX(type, rotation);
+        int top = Math.max(0, snapshot.getPieceY() + Tetromino.getMinY(type, rotation));
+        int bottom = snapshot.getPieceY() + Tetromino.getMaxY(type, rotation);
+        int firstColumn = v.firstColumn;
+        int firstRow = v.firstRow;
+        if((left < firstColumn) || (right >= firstColumn + v.columns)) {
+            firstColumn = (left + right - v.columns) / 2;
+        }
+        if((top < firstRow) || (bottom >= firstRow + v.rows)) {
+            firstRow = top - v.rows / 4;
+        }
+        if((firstColumn == v.firstColumn) && (firstRow == v.firstRow)) {
+            return v;
+        }
+        return createViewport(v.square, firstColumn, firstRow);
+    }
+    
+    private void zoom(int factor) {
+        Viewport v = view;
+        int square = (factor > 0) ? Math.min(MAX_SQUARE, v.square * 2) : Math.max(MIN_SQUARE, v.square / 2);
+        int centerColumn = v.firstColumn + v.columns / 2;
+        int centerRow = v.firstRow + v.rows / 2;
+        int viewColumns = (width - BORDER) / square;
+        int viewRows = (height - BORDER) / square;
+        view = createViewport(square, centerColumn - viewColumns / 2, centerRow - viewRows / 2);
+        repaint();
+    }
+    
+    private void scroll(int direction) {
+        Viewport v = view;
+        view = createViewport(v.square, v.firstColumn, v.firstRow + direction * Math.max(1, v.rows / 2));
+        repaint();
+    }
+    
+    /**
+     * @return viewport with given square size, first column and row are clamped to the board.
+     */
+    private Viewport createViewport(int square, int firstColumn, int firstRow) {
+        int viewColumns = Math.min(columns, (width - BORDER) / square);
+        int viewRows = Math.min(rows, (height - BORDER) / square);
+        return new Viewport(square, 
+                Math.max(0, Math.min(firstColumn, columns - viewColumns)), 
+                Math.max(0, Math.min(firstRow, rows - viewRows)), viewColumns, viewRows);
+    }
 
+    private void drawOverlay(Graphics g, GameMetrics metrics) {
+        LatencyHistogram[] histograms = metrics.getHistograms();
+        g.setColor(OVERLAY_BACKGROUND);
+        g.fillRect(0, 0, width, overlayHeight);
+        g.setColor(Color.WHITE);
+        g.setFont(OVERLAY_FONT);
+        g.drawString("us      p50    p99    max", 4, OVERLAY_LINE);
+        for(int i = 0; i < histograms.length; i++) {
+            LatencyHistogram h = histograms[i];
+            g.drawString(String.format("%-6s%6d %6d %6d", h.getName(), h.getP50Nanos() / 1000, 
+                    h.getP99Nanos() / 1000, h.getMaxNanos() / 1000), 4, (i + 2) * OVERLAY_LINE);
+        }
+    }
+    
+    private void toggleOverlay() {
+        overlay = !overlay;
+        if(overlay) {
+            metrics.setEnabled(true);
+        }
+        repaint();
+    }
+    
     private void pause() {
-        isPaused = !isPaused;
-        if (isPaused) {
-            gamePausedLabel.setOpaque(true);
-            timer.stop();
-        } else {
-            gamePausedLabel.setOpaque(false);
-            timer.start();
+        if(loop == null) {
+            return;
         }
+        isPaused = !isPaused;
+        gamePausedLabel.setOpaque(isPaused);
+        loop.setPaused(isPaused);
         repaint();
     }
     
@@ -168,30 +443,91 @@ public class BoardPanel extends JPanel implements ActionListener {
         add(gamePausedLabel);        
     }
     
-    private class InputListener extends KeyAdapter {
+    private class InputListener extends KeyAdapter implements FocusListener {
+        // keys pressed and not yet released, touched only on the EDT
+        private final boolean[] held = new boolean[Input.values().length];
+        
         @Override
         public void keyPressed(KeyEvent ke) {
-            if(ke.getKeyCode() == KeyEvent.VK_P) {
-                pause();
-                return;
+            switch(ke.getKeyCode()) 
+            {
+                case KeyEvent.VK_P: pause(); return;
+                case KeyEvent.VK_F3: toggleOverlay(); return;
+                case KeyEvent.VK_EQUALS: case KeyEvent.VK_ADD: case KeyEvent.VK_PLUS: zoom(1); return;
+                case KeyEvent.VK_MINUS: case KeyEvent.VK_SUBTRACT: zoom(-1); return;
+                case KeyEvent.VK_PAGE_UP: scroll(-1); return;
+                case KeyEvent.VK_PAGE_DOWN: scroll(1); return;
+                default: break;
             }
-            if(isPaused) {
+            Input input = toInput(ke.getKeyCode());
+            // desktop key repeat is ignored, the game loop repeats held keys itself
+            if(isPaused || (loop == null) || (input == Input.NONE) || held[input.ordinal()]) {
                 return;
             }
-            switch(ke.getKeyCode()) 
+            held[input.ordinal()] = true;
+            loop.keyDown(input);
+        }
+        
+        @Override
+        public void keyReleased(KeyEvent ke) {
+            Input input = toInput(ke.getKeyCode());
+            if(held[input.ordinal()]) {
+                held[input.ordinal()] = false;
+                loop.keyUp(input);
+            }
+        }
+        
+        @Override
+        public void focusGained(FocusEvent fe) {
+        }
+        
+        @Override
+        public void focusLost(FocusEvent fe) {
+            for(Input input : Input.values()) {
+                if(held[input.ordinal()]) {
+                    held[input.ordinal()] = false;
+                    loop.keyUp(input);
+                }
+            }
+        }
+        
+        private Input toInput(int keyCode) {
+            switch(keyCode) 
             {
-                case KeyEvent.VK_DOWN: board.fall(); repaint(); break;
-                case KeyEvent.VK_LEFT: board.moveLeft(); repaint(); break;
-                case KeyEvent.VK_RIGHT: board.moveRight(); repaint(); break;
-                case KeyEvent.VK_UP: board.rotate(); repaint(); break;
-                case KeyEvent.VK_SPACE:
-                    if(board.isGameRunning()) {
-                        board.instantDrop();                        
-                    }
-                    repaint(); 
-                break; 
-                default: break;
+                case KeyEvent.VK_DOWN: return Input.SOFT_DROP;
+                case KeyEvent.VK_LEFT: return Input.LEFT;
+                case KeyEvent.VK_RIGHT: return Input.RIGHT;
+                case KeyEvent.VK_UP: return Input.ROTATE;
+                case KeyEvent.VK_SPACE: return Input.HARD_DROP; 
+                default: return Input.NONE;
             }
         }
     }      
+    
+    /**
+     * Visible part of the board: square size in pixels, first visible column and row
+     * and number of visible columns and rows.
+     */
+    private static final class Viewport {
+        private final int square;
+        private final int firstColumn;
+        private final int firstRow;
+        private final int columns;
+        private final int rows;
+        private final BlockTexture block;
+        
+        Viewport(int square, int firstColumn, int firstRow, int columns, int rows) {
+            this.square = square;
+            this.firstColumn = firstColumn;
+            this.firstRow = firstRow;
+            this.columns = columns;
+            this.rows = rows;
+            block = BlockTexture.getInstance(square);
+        }
+        
+        boolean contains(int left, int top, int right, int bottom) {
+            return (left >= firstColumn) && (right < firstColumn + columns) 
+                    && (Math.max(0, top) >= firstRow) && (bottom < firstRow + rows);
+        }
+    }
 }
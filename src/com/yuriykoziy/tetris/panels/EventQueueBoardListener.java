@@ -0,0 +1,152 @@
+package com.yuriykoziy.tetris.panels;
+
+import com.yuriykoziy.tetris.logic.BoardListener;
+import javax.swing.SwingUtilities;
+
+/**
+ * Board listener that collects events arriving on the game loop thread and delivers 
+ * them to a delegate on the EDT, at most one EDT task is queued at any time.
+ * Score, lines, level and next piece are delivered as latest values, 
+ * only the last landing, the total of cleared rows and of raised garbage rows 
+ * (with the last hole) since the previous delivery are kept.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class EventQueueBoardListener implements BoardListener, Runnable {
+    private static final int LAND = 1;
+    private static final int CLEAR = 2;
+    private static final int SCORE = 4;
+    private static final int LINES = 8;
+    private static final int LEVEL = 16;
+    private static final int NEXT = 32;
+    private static final int GAME_OVER = 64;
+    private static final int GARBAGE = 128;
+    
+    private final BoardListener delegate;
+    
+    // guarded by this
+    private int pending;
+    private boolean scheduled;
+    private int landType, landRotation, landX, landY;
+    private int clearedRows;
+    private int garbageRows, garbageHole;
+    private int score, lines, level, nextType;
+    
+    /**
+     * @param delegate listener invoked on the EDT.
+     */
+    public EventQueueBoardListener(BoardListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void onLand(int type, int rotation, int x, int y) {
+        landType = type;
+        landRotation = rotation;
+        landX = x;
+        landY = y;
+        post(LAND);
+    }
+
+    @Override
+    public synchronized void onClear(int rows) {
+        clearedRows += rows;
+        post(CLEAR);
+    }
+
+    @Override
+    public synchronized void onGarbage(int rows, int hole) {
+        garbageRows += rows;
+        garbageHole = hole;
+        post(GARBAGE);
+    }
+
+    @Override
+    public synchronized void onScore(int score) {
+        this.score = score;
+        post(SCORE);
+    }
+
+    @Override
+    public synchronized void onLines(int lines) {
+        this.lines = lines;
+        post(LINES);
+    }
+
+    @Override
+    public synchronized void onLevel(int level) {
+        this.level = level;
+        post(LEVEL);
+    }
+
+    @Override
+    public synchronized void onNextPiece(int type) {
+        nextType = type;
+        post(NEXT);
+    }
+
+    @Override
+    public synchronized void onGameOver() {
+        post(GAME_OVER);
+    }
+    
+    /**
+     * Delivers collected events, runs on the EDT.
+     */
+    @Override
+    public void run() {
+        int events;
+        int lType, lRotation, lX, lY, cleared, gRows, gHole, s, ln, lv, next;
+        synchronized(this) {
+            events = pending;
+            pending = 0;
+            scheduled = false;
+            lType = landType;
+            lRotation = landRotation;
+            lX = landX;
+            lY = landY;
+            cleared = clearedRows;
+            clearedRows = 0;
+            gRows = garbageRows;
+            gHole = garbageHole;
+            garbageRows = 0;
+            s = score;
+            ln = lines;
+            lv = level;
+            next = nextType;
+        }
+        if((events & LAND) != 0) {
+            delegate.onLand(lType, lRotation, lX, lY);
+        }
+        if((events & CLEAR) != 0) {
+            delegate.onClear(cleared);
+        }
+        if((events & GARBAGE) != 0) {
+            delegate.onGarbage(gRows, gHole);
+        }
+        if((events & LINES) != 0) {
+            delegate.onLines(ln);
+        }
+        if((events & SCORE) != 0) {
+            delegate.onScore(s);
+        }
+        if((events & LEVEL) != 0) {
+            delegate.onLevel(lv);
+        }
+        if((events & NEXT) != 0) {
+            delegate.onNextPiece(next);
+        }
+        if((events & GAME_OVER) != 0) {
+            delegate.onGameOver();
+        }
+    }
+    
+    private void post(int event) {
+        pending |= event;
+        if(!scheduled) {
+            scheduled = true;
+            SwingUtilities.invokeLater(this);
+        }
+    }
+}
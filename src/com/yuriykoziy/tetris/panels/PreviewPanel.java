@@ -4,6 +4,7 @@ import com.yuriykoziy.tetris.piece.Tetromino;
 import com.yuriykoziy.tetris.texture.BlockTexture;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Image;
 import javax.swing.JPanel;
 
 /**
@@ -15,7 +16,7 @@ import javax.swing.JPanel;
 public class PreviewPanel extends JPanel {   
     private static final int SQUARE_DIMENSION = 15;
     private final BlockTexture block;
-    private static int[][] currentTetrominoArray = {{0,0,0,0}, {0,0,0,0}, {0,0,0,0}, {0,0,0,0}};
+    private int currentType = -1;
     
     /**
      * Constructs new tetromino preview JPanel.
@@ -27,15 +28,15 @@ public class PreviewPanel extends JPanel {
         setLayout(null);
         setSize(new Dimension(width, height));
         setOpaque(false);
-        block = new BlockTexture();
+        block = BlockTexture.getInstance(SQUARE_DIMENSION);
     }
       
     /**
      * 
-     * @param tetro tetromino object.
+     * @param type tetromino type (0-6).
      */
-    public void setTetrominoType(Tetromino tetro) {
-        currentTetrominoArray = tetro.getTetromino();
+    public void setTetrominoType(int type) {
+        currentType = type;
     }
     
     @Override
@@ -44,13 +45,14 @@ public class PreviewPanel extends JPanel {
         drawTetromino(g);
     } 
     private void drawTetromino(Graphics g) {
-        for(int row = 0; row < 4; row++) {
-            for(int col = 0; col < 4; col++) {
-                int type = currentTetrominoArray[row][col]; 
-                if(type != 0) {
-                    g.drawImage(block.getBlockTexture(type), (col)*SQUARE_DIMENSION, (row)*SQUARE_DIMENSION, SQUARE_DIMENSION, SQUARE_DIMENSION, null);
-                }
-            }
+        if(currentType < 0) {
+            return;
+        }
+        Image texture = block.getBlockTexture(currentType + 1);
+        for(int i = 0; i < Tetromino.CELLS; i++) {
+            int col = Tetromino.getCellX(currentType, 0, i);
+            int row = Tetromino.getCellY(currentType, 0, i);
+            g.drawImage(texture, (col)*SQUARE_DIMENSION, (row)*SQUARE_DIMENSION, null);
         }  
     }
 }
@@ -1,14 +1,12 @@
 package com.yuriykoziy.tetris.panels;
 
 import com.yuriykoziy.tetris.logic.Board;
-import com.yuriykoziy.tetris.piece.Tetromino;
+import com.yuriykoziy.tetris.logic.BoardAdapter;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -60,11 +58,11 @@ public class SidePanel extends JPanel {
     }
     
     /**
-     * Sets property change listener. 
+     * Sets board listener. 
      * @param board tetris board object.
      */
     public void setListener(Board board) {
-       board.addPropertyChangeListener(new BoardPropertyListener());
+       board.addBoardListener(new EventQueueBoardListener(new SidePanelBoardListener()));
     } 
     
     @Override
@@ -106,24 +104,29 @@ public class SidePanel extends JPanel {
         lines.setHorizontalAlignment(0);           
     }
 
-    private class BoardPropertyListener implements PropertyChangeListener {
+    /**
+     * Updates labels, invoked on the EDT through EventQueueBoardListener.
+     */
+    private class SidePanelBoardListener extends BoardAdapter {
         @Override
-        public void propertyChange(PropertyChangeEvent pce) {
-            if("score".equals(pce.getPropertyName())) {
-                score.setText(pce.getNewValue().toString());
-            }
-            if("level".equals(pce.getPropertyName())) {
-                int boardLevel = (int)pce.getNewValue()+1;
-                level.setText(Integer.toString(boardLevel));
-            }
-            if("lines".equals(pce.getPropertyName())) {
-                lines.setText(pce.getNewValue().toString());
-            }
-            if("type".equals(pce.getPropertyName())) {
-                next.setTetrominoType((Tetromino)pce.getNewValue());
-                next.repaint();
-            }              
-        }      
+        public void onScore(int boardScore) {
+            score.setText(Integer.toString(boardScore));
+        }
+
+        @Override
+        public void onLines(int boardLines) {
+            lines.setText(Integer.toString(boardLines));
+        }
+
+        @Override
+        public void onLevel(int boardLevel) {
+            level.setText(Integer.toString(boardLevel + 1));
+        }
+
+        @Override
+        public void onNextPiece(int type) {
+            next.setTetrominoType(type);
+            next.repaint();
+        }
     }
 }
-
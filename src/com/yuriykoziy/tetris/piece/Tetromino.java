@@ -4,17 +4,19 @@ import java.util.Random;
 
 /**
  * This class represents each individual tetromino piece and allows to control each piece individually.
+ * A piece is just its type, rotation and position, shape data lives in immutable class-level tables
+ * of precomputed cell offsets, row masks and bounding boxes shared by all pieces.
  * 
  * @author Yuriy Koziy
  * @version 1.01
  */
 public class Tetromino {
-    private int shape[][] = new int[4][4];
-    private int type;
-    private int rotation;
-    private int xPosition, yPosition;
+    public static final int TYPES = 7;
+    public static final int ROTATIONS = 4;
+    public static final int CELLS = 4;
+    public static final int SIZE = 4;
     
-    private final int[][][][] tetrominoes = {
+    private static final int[][][][] SHAPES = {
         //I shape
         {
             {
@@ -206,6 +208,44 @@ public class Tetromino {
         }        
     };
     
+    private static final int[][][] CELL_X = new int[TYPES][ROTATIONS][CELLS];
+    private static final int[][][] CELL_Y = new int[TYPES][ROTATIONS][CELLS];
+    private static final int[][][] ROW_MASKS = new int[TYPES][ROTATIONS][SIZE];
+    private static final int[][] MIN_X = new int[TYPES][ROTATIONS];
+    private static final int[][] MAX_X = new int[TYPES][ROTATIONS];
+    private static final int[][] MIN_Y = new int[TYPES][ROTATIONS];
+    private static final int[][] MAX_Y = new int[TYPES][ROTATIONS];
+    
+    static {
+        for(int t = 0; t < TYPES; t++) {
+            for(int r = 0; r < ROTATIONS; r++) {
+                int cell = 0;
+                MIN_X[t][r] = SIZE;
+                MIN_Y[t][r] = SIZE;
+                MAX_X[t][r] = -1;
+                MAX_Y[t][r] = -1;
+                for(int i = 0; i < SIZE; i++) {
+                    for(int j = 0; j < SIZE; j++) {
+                        if(SHAPES[t][r][i][j] != 0) {
+                            CELL_X[t][r][cell] = j;
+                            CELL_Y[t][r][cell] = i;
+                            ROW_MASKS[t][r][i] |= 1 << j;
+                            MIN_X[t][r] = Math.min(MIN_X[t][r], j);
+                            MAX_X[t][r] = Math.max(MAX_X[t][r], j);
+                            MIN_Y[t][r] = Math.min(MIN_Y[t][r], i);
+                            MAX_Y[t][r] = Math.max(MAX_Y[t][r], i);
+                            cell++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    private int type;
+    private int rotation;
+    private int xPosition, yPosition;
+    
     /**
      * Constructs a new tetromino of a random shape at specified X and Y positions.
      * 
@@ -213,12 +253,7 @@ public class Tetromino {
      * @param yPosition tetromino Y position.
      */
     public Tetromino(int xPosition, int yPosition) {
-        Random r = new Random();
-        int random = r.nextInt(7);
-        shape = pickShape(random, 0);
-        rotation = 0;
-        this.xPosition = xPosition;
-        this.yPosition = yPosition;
+        this(new Random().nextInt(TYPES), xPosition, yPosition);
     }
     
     /**
@@ -229,7 +264,10 @@ public class Tetromino {
      * @param yPosition tetromino Y position.
      */    
     public Tetromino(int type, int xPosition, int yPosition) {
-        shape = pickShape(type, 0);
+        if(type < 0 || type >= TYPES) {
+            throw new IllegalArgumentException("Invalid tetromino type: " + type);
+        }
+        this.type = type;
         rotation = 0;
         this.xPosition = xPosition;
         this.yPosition = yPosition;
@@ -241,18 +279,28 @@ public class Tetromino {
      * @param tetro existing Tetromino object.
      */
     public Tetromino(Tetromino tetro) {
-        this.shape = tetro.getTetromino();
         this.type = tetro.getType();
         this.rotation = tetro.getRotation();
+        this.xPosition = tetro.getXposition();
+        this.yPosition = tetro.getYposition();
     }    
     
     /**
+     * Reuses this object for a new tetromino in initial rotation.
      * 
-     * @return tetromino shape array 4x4.
+     * @param type tetromino shape
+     * @param xPosition tetromino X position.
+     * @param yPosition tetromino Y position.
      */
-    public int[][] getTetromino() {
-        return shape;
-    }    
+    public void reset(int type, int xPosition, int yPosition) {
+        if(type < 0 || type >= TYPES) {
+            throw new IllegalArgumentException("Invalid tetromino type: " + type);
+        }
+        this.type = type;
+        rotation = 0;
+        this.xPosition = xPosition;
+        this.yPosition = yPosition;
+    }
     
     /**
      * 
@@ -291,42 +339,134 @@ public class Tetromino {
      * Rotates tetromino shape.
      */
     public void rotate() {
-        rotation++;
-        if(rotation >= 4)
-        {
-            rotation = 0;
-        }
-        shape = tetrominoes[type][rotation];
+        rotation = nextRotation(rotation);
     }
     
     /**
-     * Clears tetromino 4x4 array.
+     * 
+     * @param rotation rotation state (0-3).
      */
-    public void clearTetromino() {    
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                shape[i][j] = 0;
-            }
-        }
+    public void setRotation(int rotation) {
+        this.rotation = rotation & (ROTATIONS - 1);
     }
     
     /**
-     * Picks shape from tetrominoes arrray based on type and rotation.
      * 
-     * @param type tetromino type.
-     * @param rotation tetromino rotation state.
-     * @return 
+     * @return tetromino rotation state.
      */
-    private int[][] pickShape(int type, int rotation) {
-        this.type = type;
-        return tetrominoes[type][rotation];
-    }
-
-    private int getRotation() {
+    public int getRotation() {
         return rotation;
     }
     
+    /**
+     * 
+     * @return tetromino type (0-6).
+     */
     public int getType() {
         return type;
-    }   
+    }
+    
+    /**
+     * 
+     * @return block type used by the field and textures (1-7).
+     */
+    public int getBlockType() {
+        return type + 1;
+    }
+    
+    /**
+     * @param cell cell index (0-3).
+     * @return X offset of the cell inside 4x4 box for current rotation.
+     */
+    public int getCellX(int cell) {
+        return CELL_X[type][rotation][cell];
+    }
+    
+    /**
+     * @param cell cell index (0-3).
+     * @return Y offset of the cell inside 4x4 box for current rotation.
+     */
+    public int getCellY(int cell) {
+        return CELL_Y[type][rotation][cell];
+    }
+    
+    /*
+     * ======================================
+     * ==== Shared shape tables follow ====== 
+     * ======================================
+     */
+    
+    /**
+     * @param rotation current rotation state.
+     * @return rotation state after clockwise rotation.
+     */
+    public static int nextRotation(int rotation) {
+        return (rotation + 1) & (ROTATIONS - 1);
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @param cell cell index (0-3).
+     * @return X offset of the cell inside 4x4 box.
+     */
+    public static int getCellX(int type, int rotation, int cell) {
+        return CELL_X[type][rotation][cell];
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @param cell cell index (0-3).
+     * @return Y offset of the cell inside 4x4 box.
+     */
+    public static int getCellY(int type, int rotation, int cell) {
+        return CELL_Y[type][rotation][cell];
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @param row row inside 4x4 box (0-3).
+     * @return occupancy mask of the row, bit j set means column j is occupied.
+     */
+    public static int getRowMask(int type, int rotation, int row) {
+        return ROW_MASKS[type][rotation][row];
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @return leftmost occupied column inside 4x4 box.
+     */
+    public static int getMinX(int type, int rotation) {
+        return MIN_X[type][rotation];
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @return rightmost occupied column inside 4x4 box.
+     */
+    public static int getMaxX(int type, int rotation) {
+        return MAX_X[type][rotation];
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @return topmost occupied row inside 4x4 box.
+     */
+    public static int getMinY(int type, int rotation) {
+        return MIN_Y[type][rotation];
+    }
+    
+    /**
+     * @param type tetromino type.
+     * @param rotation rotation state.
+     * @return bottommost occupied row inside 4x4 box.
+     */
+    public static int getMaxY(int type, int rotation) {
+        return MAX_Y[type][rotation];
+    }
 }
@@ -0,0 +1,45 @@
+package com.yuriykoziy.tetris.random;
+
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.SplittableRandom;
+
+/**
+ * Modern 7-bag randomizer, deals all seven tetrominoes in random order before repeating. 
+ * The bag is reshuffled in place, so refills do not allocate.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class BagRandomizer implements Randomizer {
+    private final SplittableRandom random;
+    private final int[] bag = new int[Tetromino.TYPES];
+    private int index = Tetromino.TYPES;
+    
+    /**
+     * @param seed randomizer seed.
+     */
+    public BagRandomizer(long seed) {
+        random = new SplittableRandom(seed);
+        for(int i = 0; i < bag.length; i++) {
+            bag[i] = i;
+        }
+    }
+    
+    @Override
+    public int next() {
+        if(index == bag.length) {
+            shuffle();
+            index = 0;
+        }
+        return bag[index++];
+    }
+    
+    private void shuffle() {
+        for(int i = bag.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = bag[i];
+            bag[i] = bag[j];
+            bag[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.yuriykoziy.tetris.random;
+
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.SplittableRandom;
+
+/**
+ * NES style randomizer, rolls 8 sided die and rerolls once if it hits 
+ * the extra side or repeats previous tetromino.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class ClassicRandomizer implements Randomizer {
+    private final SplittableRandom random;
+    private int previous = -1;
+    
+    /**
+     * @param seed randomizer seed.
+     */
+    public ClassicRandomizer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+    
+    @Override
+    public int next() {
+        int type = random.nextInt(Tetromino.TYPES + 1);
+        if((type == Tetromino.TYPES) || (type == previous)) {
+            type = random.nextInt(Tetromino.TYPES);
+        }
+        previous = type;
+        return type;
+    }
+}
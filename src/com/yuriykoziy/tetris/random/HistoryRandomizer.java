@@ -0,0 +1,50 @@
+package com.yuriykoziy.tetris.random;
+
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.SplittableRandom;
+
+/**
+ * History based randomizer, rerolls a limited number of times 
+ * while the roll is among the last four dealt tetrominoes.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class HistoryRandomizer implements Randomizer {
+    private static final int HISTORY_SIZE = 4;
+    private static final int ROLLS = 6;
+    
+    private final SplittableRandom random;
+    private final int[] history = new int[HISTORY_SIZE];
+    private int head;
+    
+    /**
+     * @param seed randomizer seed.
+     */
+    public HistoryRandomizer(long seed) {
+        random = new SplittableRandom(seed);
+        for(int i = 0; i < HISTORY_SIZE; i++) {
+            history[i] = -1;
+        }
+    }
+    
+    @Override
+    public int next() {
+        int type = random.nextInt(Tetromino.TYPES);
+        for(int roll = 1; (roll < ROLLS) && inHistory(type); roll++) {
+            type = random.nextInt(Tetromino.TYPES);
+        }
+        history[head] = type;
+        head = (head + 1) % HISTORY_SIZE;
+        return type;
+    }
+    
+    private boolean inHistory(int type) {
+        for(int i = 0; i < HISTORY_SIZE; i++) {
+            if(history[i] == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
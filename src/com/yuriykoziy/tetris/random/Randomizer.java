@@ -0,0 +1,16 @@
+package com.yuriykoziy.tetris.random;
+
+/**
+ * Source of tetromino types. Implementations are seeded once per game 
+ * and must produce the same sequence for the same seed.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface Randomizer {
+    
+    /**
+     * @return type of the next tetromino (0-6).
+     */
+    int next();
+}
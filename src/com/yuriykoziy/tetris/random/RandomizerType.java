@@ -0,0 +1,25 @@
+package com.yuriykoziy.tetris.random;
+
+/**
+ * Available randomizers.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public enum RandomizerType {
+    BAG,
+    CLASSIC,
+    HISTORY;
+    
+    /**
+     * @param seed randomizer seed.
+     * @return new randomizer of this type.
+     */
+    public Randomizer create(long seed) {
+        switch(this) {
+            case CLASSIC: return new ClassicRandomizer(seed);
+            case HISTORY: return new HistoryRandomizer(seed);
+            default: return new BagRandomizer(seed);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.yuriykoziy.tetris.replay;
+
+import com.yuriykoziy.tetris.sim.GameResult;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Read only view of a replay archive written by {@link ReplayArchiveWriter}. 
+ * The file is memory mapped, replays are served as zero-copy buffer slices 
+ * and can be looked up by index or by game id.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class ReplayArchive implements Closeable {
+    private static final long SEGMENT_SIZE = 1L << 30;
+    
+    private final FileChannel channel;
+    private final long[] gameIds;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] scores;
+    private final MappedByteBuffer[] segments;
+    private final long[] idTable;
+    private final int[] slotTable;
+    
+    /**
+     * Opens and maps an archive.
+     * 
+     * @param file archive file.
+     * @throws IOException if file can not be mapped or is not an archive.
+     */
+    public ReplayArchive(Path file) throws IOException {
+        channel = FileChannel.open(file);
+        try {
+            long size = channel.size();
+            if(size < ReplayArchiveWriter.HEADER_SIZE + ReplayArchiveWriter.FOOTER_SIZE) {
+                throw new IOException("Not a replay archive");
+            }
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - ReplayArchiveWriter.FOOTER_SIZE, ReplayArchiveWriter.FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            int count = footer.getInt();
+            if(footer.getInt() != ReplayArchiveWriter.MAGIC) {
+                throw new IOException("Not a replay archive");
+            }
+            
+            gameIds = new long[count];
+            offsets = new long[count];
+            lengths = new int[count];
+            scores = new int[count];
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) count * ReplayArchiveWriter.ENTRY_SIZE);
+            for(int i = 0; i < count; i++) {
+                gameIds[i] = index.getLong();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+                scores[i] = index.getInt();
+            }
+            
+            // every segment maps all replays starting in it, so no replay crosses a mapping
+            segments = new MappedByteBuffer[(int) (indexOffset / SEGMENT_SIZE) + 1];
+            long[] segmentEnds = new long[segments.length];
+            for(int i = 0; i < count; i++) {
+                int s = (int) (offsets[i] / SEGMENT_SIZE);
+                segmentEnds[s] = Math.max(segmentEnds[s], offsets[i] + lengths[i]);
+            }
+            for(int s = 0; s < segments.length; s++) {
+                long start = s * SEGMENT_SIZE;
+                if(segmentEnds[s] > start) {
+                    segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, segmentEnds[s] - start);
+                }
+            }
+            
+            idTable = new long[Integer.highestOneBit(Math.max(1, count) * 2) * 2];
+            slotTable = new int[idTable.length];
+            Arrays.fill(slotTable, -1);
+            for(int i = 0; i < count; i++) {
+                int slot = slot(gameIds[i]);
+                while(slotTable[slot] >= 0) {
+                    slot = (slot + 1) & (slotTable.length - 1);
+                }
+                idTable[slot] = gameIds[i];
+                slotTable[slot] = i;
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * @return number of replays in the archive.
+     */
+    public int size() {
+        return gameIds.length;
+    }
+    
+    /**
+     * @param i replay index.
+     * @return replay as a read only buffer sharing the mapped file.
+     */
+    public ByteBuffer get(int i) {
+        int s = (int) (offsets[i] / SEGMENT_SIZE);
+        ByteBuffer buf = segments[s].duplicate();
+        int start = (int) (offsets[i] - s * SEGMENT_SIZE);
+        buf.position(start).limit(start + lengths[i]);
+        return buf.slice();
+    }
+    
+    /**
+     * @param gameId game identifier.
+     * @return replay index, -1 if archive has no such game.
+     */
+    public int find(long gameId) {
+        int slot = slot(gameId);
+        while(slotTable[slot] >= 0) {
+            if(idTable[slot] == gameId) {
+                return slotTable[slot];
+            }
+            slot = (slot + 1) & (slotTable.length - 1);
+        }
+        return -1;
+    }
+    
+    public long getGameId(int i) {
+        return gameIds[i];
+    }
+    
+    public int getScore(int i) {
+        return scores[i];
+    }
+    
+    /**
+     * Replays every game of the archive in parallel and checks each against its replay trailer 
+     * and its indexed score.
+     * 
+     * @param threads number of worker threads.
+     * @return validation summary with the failed games.
+     */
+    public Validation validateAll(int threads) {
+        ConcurrentSkipListMap<Long, String> failures = new ConcurrentSkipListMap<>();
+        AtomicLong ticks = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.submit(() -> IntStream.range(0, size()).parallel().forEach(i -> {
+                try {
+                    GameResult result = ReplayPlayer.play(get(i));
+                    ticks.addAndGet(result.getTicks());
+                    if(result.getScore() != scores[i]) {
+                        failures.put(gameIds[i], "Indexed score " + scores[i] + ", replayed " + result.getScore());
+                    }
+                } catch (RuntimeException ex) {
+                    failures.put(gameIds[i], ex.toString());
+                }
+            })).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Validation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Validation failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new Validation(size(), failures, ticks.get(), System.nanoTime() - start);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private int slot(long gameId) {
+        long h = gameId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (slotTable.length - 1);
+    }
+    
+    /**
+     * Packs replay files into an archive or validates an archive.
+     * Arguments: pack [archive] [replay files...] or validate [archive] [threads].
+     * 
+     * @param args command line arguments.
+     * @throws IOException if a file can not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path archive = Paths.get(args[1]);
+        if("pack".equals(args[0])) {
+            try(ReplayArchiveWriter writer = new ReplayArchiveWriter(archive)) {
+                for(int i = 2; i < args.length; i++) {
+                    byte[] replay = Files.readAllBytes(Paths.get(args[i]));
+                    GameResult result = ReplayPlayer.play(ByteBuffer.wrap(replay));
+                    writer.append(result.getSeed(), replay, result.getScore());
+                }
+                System.out.println(writer.size() + " replays in " + archive);
+            }
+        } else {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            try(ReplayArchive reader = new ReplayArchive(archive)) {
+                Validation validation = reader.validateAll(threads);
+                System.out.println(validation);
+                for(Map.Entry<Long, String> failure : validation.getFailedGames().entrySet()) {
+                    System.out.println("game " + failure.getKey() + ": " + failure.getValue());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Result of archive validation.
+     */
+    public static class Validation {
+        private final int games;
+        private final SortedMap<Long, String> failures;
+        private final long ticks;
+        private final long nanos;
+        
+        Validation(int games, SortedMap<Long, String> failures, long ticks, long nanos) {
+            this.games = games;
+            this.failures = Collections.unmodifiableSortedMap(failures);
+            this.ticks = ticks;
+            this.nanos = nanos;
+        }
+        
+        public int getGames() {
+            return games;
+        }
+        
+        public long getFailures() {
+            return failures.size();
+        }
+        
+        /**
+         * @return mismatch message of every failed game by game id, in game id order.
+         */
+        public SortedMap<Long, String> getFailedGames() {
+            return failures;
+        }
+        
+        public long getTicks() {
+            return ticks;
+        }
+        
+        public long getNanos() {
+            return nanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("games=%d failures=%d time=%.3fs games/s=%.1f ticks/s=%.0f", 
+                    games, failures.size(), nanos / 1e9, games * 1e9 / Math.max(1, nanos), ticks * 1e9 / Math.max(1, nanos));
+        }
+    }
+}
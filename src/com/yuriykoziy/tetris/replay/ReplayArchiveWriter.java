@@ -0,0 +1,154 @@
+package com.yuriykoziy.tetris.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends replays back to back into a single archive file, the index footer 
+ * is written on close. Opening an existing archive appends after its footer and never 
+ * overwrites it, so until the new footer is written and forced the file still holds the old 
+ * index and footer untouched. Indexes of earlier sessions are left in the file as dead space.
+ * 
+ * <pre>
+ * header: magic "TRPA", version int
+ * data:   replays back to back, possibly interleaved with indexes and footers of earlier sessions
+ * index:  per replay game id (long), offset (long), length (int), score (int)
+ * footer: index offset (long), replay count (int), magic "TRPA"
+ * </pre>
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class ReplayArchiveWriter implements Closeable {
+    static final int MAGIC = 0x54525041;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 24;
+    static final int FOOTER_SIZE = 16;
+    
+    private final FileChannel channel;
+    private ByteBuffer index;
+    private long dataEnd;
+    private int count;
+    // replays in the footer already on disk, -1 for a new archive
+    private int savedCount = -1;
+    
+    /**
+     * Opens archive for appending, creates it if it does not exist.
+     * 
+     * @param file archive file.
+     * @throws IOException if file can not be opened or is not an archive.
+     */
+    public ReplayArchiveWriter(Path file) throws IOException {
+        boolean exists = Files.exists(file) && (Files.size(file) > 0);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = ByteBuffer.allocate(ENTRY_SIZE * 1024);
+        try {
+            if(exists) {
+                loadIndex();
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(header, 0);
+                dataEnd = HEADER_SIZE;
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Appends a replay.
+     * 
+     * @param gameId game identifier.
+     * @param replay encoded replay.
+     * @param score  final score stored in the index.
+     * @throws IOException if replay can not be written.
+     */
+    public void append(long gameId, byte[] replay, int score) throws IOException {
+        writeFully(ByteBuffer.wrap(replay), dataEnd);
+        if(index.remaining() < ENTRY_SIZE) {
+            ByteBuffer tmp = ByteBuffer.allocate(index.capacity() * 2);
+            index.flip();
+            tmp.put(index);
+            index = tmp;
+        }
+        index.putLong(gameId).putLong(dataEnd).putInt(replay.length).putInt(score);
+        dataEnd += replay.length;
+        count++;
+    }
+    
+    /**
+     * @return number of replays in the archive.
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Writes index footer after the appended replays and closes the file. Replays and index 
+     * are forced before the footer, so a footer found at the end of the file is always complete.
+     * A reopened archive nothing was appended to is closed as it is.
+     * 
+     * @throws IOException if footer can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if(count == savedCount) {
+                return;
+            }
+            index.flip();
+            writeFully(index, dataEnd);
+            channel.force(true);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putLong(dataEnd).putInt(count).putInt(MAGIC).flip();
+            writeFully(footer, dataEnd + (long) count * ENTRY_SIZE);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+    
+    private void loadIndex() throws IOException {
+        long size = channel.size();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        readFully(footer, size - FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        count = footer.getInt();
+        if(footer.getInt() != MAGIC) {
+            throw new IOException("Not a replay archive");
+        }
+        savedCount = count;
+        index = ByteBuffer.allocate(Math.max(index.capacity(), count * ENTRY_SIZE * 2));
+        index.limit(count * ENTRY_SIZE);
+        readFully(index, indexOffset);
+        index.position(index.limit());
+        index.limit(index.capacity());
+        // old entries keep their offsets, new replays go after the old footer
+        dataEnd = size;
+    }
+    
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        while(buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+    
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while(buf.hasRemaining()) {
+            int read = channel.read(buf, position);
+            if(read < 0) {
+                throw new IOException("Truncated replay archive");
+            }
+            position += read;
+        }
+        buf.flip();
+    }
+}
@@ -0,0 +1,72 @@
+package com.yuriykoziy.tetris.replay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and varint helpers of the binary replay format.
+ * 
+ * <pre>
+ * header:  magic "TRPL", version byte, width, height, level (varints), 
+ *          randomizer type byte, seed (8 bytes big endian)
+ * events:  varint of (tick delta &lt;&lt; 3 | input ordinal), one per applied input
+ * end:     varint of (tick delta &lt;&lt; 3 | END), delta up to the last tick of the game
+ * trailer: score, lines, level, pieces (varints)
+ * </pre>
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class ReplayFormat {
+    public static final int MAGIC = 0x5452504C;
+    public static final int VERSION = 1;
+    public static final int INPUT_BITS = 3;
+    public static final int INPUT_MASK = (1 << INPUT_BITS) - 1;
+    public static final int END = INPUT_MASK;
+    
+    private ReplayFormat() {
+    }
+    
+    /**
+     * Writes unsigned LEB128 varint.
+     * 
+     * @param buf   destination buffer, must have at least 10 bytes remaining.
+     * @param value non negative value.
+     */
+    public static void writeVarLong(ByteBuffer buf, long value) {
+        while((value & ~0x7FL) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+    
+    /**
+     * Reads unsigned LEB128 varint.
+     * 
+     * @param buf source buffer.
+     * @return decoded value.
+     */
+    public static long readVarLong(ByteBuffer buf) {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+    
+    /**
+     * @param buf source buffer.
+     * @return decoded value, checked to fit into int.
+     */
+    public static int readVarInt(ByteBuffer buf) {
+        long value = readVarLong(buf);
+        if(value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,15 @@
+package com.yuriykoziy.tetris.replay;
+
+/**
+ * Thrown when replayed game does not end in the state recorded in the replay trailer.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class ReplayMismatchException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public ReplayMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,93 @@
+package com.yuriykoziy.tetris.replay;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.random.RandomizerType;
+import com.yuriykoziy.tetris.sim.GameResult;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Plays recorded games back through the Board at maximum speed without rendering, 
+ * and verifies the final state against the replay trailer.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class ReplayPlayer {
+    private static final Input[] INPUTS = Input.values();
+    
+    private ReplayPlayer() {
+    }
+    
+    /**
+     * Replays a game and verifies final score, lines and level.
+     * 
+     * @param replay encoded replay, read from its position.
+     * @return final state of the replayed game.
+     * @throws ReplayMismatchException if replayed game ends differently than recorded.
+     */
+    public static GameResult play(ByteBuffer replay) {
+        if(replay.getInt() != ReplayFormat.MAGIC) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        int version = replay.get();
+        if(version != ReplayFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported replay version: " + version);
+        }
+        int width = ReplayFormat.readVarInt(replay);
+        int height = ReplayFormat.readVarInt(replay);
+        int level = ReplayFormat.readVarInt(replay);
+        RandomizerType randomizer = RandomizerType.values()[replay.get()];
+        long seed = replay.getLong();
+        
+        Board board = new Board(width, height, level, randomizer.create(seed));
+        board.startGame();
+        long tick = 0;
+        while(true) {
+            long event = ReplayFormat.readVarLong(replay);
+            int code = (int) (event & ReplayFormat.INPUT_MASK);
+            tick += event >>> ReplayFormat.INPUT_BITS;
+            while((board.getTicks() < tick) && board.isGameRunning()) {
+                board.tick();
+            }
+            if(code == ReplayFormat.END) {
+                break;
+            }
+            board.apply(INPUTS[code]);
+        }
+        
+        int score = ReplayFormat.readVarInt(replay);
+        int lines = ReplayFormat.readVarInt(replay);
+        int finalLevel = ReplayFormat.readVarInt(replay);
+        int pieces = ReplayFormat.readVarInt(replay);
+        if((board.getScore() != score) || (board.getLinesCleared() != lines) || (board.getLevel() != finalLevel) 
+                || (board.getPiecesPlaced() != pieces) || (board.getTicks() != tick)) {
+            throw new ReplayMismatchException(String.format(
+                    "Expected score=%d lines=%d level=%d pieces=%d ticks=%d, got score=%d lines=%d level=%d pieces=%d ticks=%d", 
+                    score, lines, finalLevel, pieces, tick, board.getScore(), board.getLinesCleared(), 
+                    board.getLevel(), board.getPiecesPlaced(), board.getTicks()));
+        }
+        return new GameResult(seed, score, lines, finalLevel, pieces, tick);
+    }
+    
+    /**
+     * Verifies replay files given on the command line and reports throughput.
+     * 
+     * @param args replay files.
+     * @throws IOException if a file can not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        long ticks = 0;
+        for(String file : args) {
+            GameResult result = play(ByteBuffer.wrap(Files.readAllBytes(Paths.get(file))));
+            ticks += result.getTicks();
+            System.out.println(file + ": score=" + result.getScore() + " lines=" + result.getLines() + " level=" + result.getLevel());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d replays verified in %.3fs, %.0f ticks/s%n", args.length, seconds, ticks / seconds);
+    }
+}
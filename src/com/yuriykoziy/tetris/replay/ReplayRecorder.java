@@ -0,0 +1,103 @@
+package com.yuriykoziy.tetris.replay;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.logic.InputRecorder;
+import com.yuriykoziy.tetris.random.RandomizerType;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records a game as randomizer seed plus stream of (tick, input) events encoded as varint deltas.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class ReplayRecorder implements InputRecorder {
+    private static final int MAX_VARINT = 10;
+    
+    private final int width;
+    private final int height;
+    private final int level;
+    private final RandomizerType randomizer;
+    private final long seed;
+    private ByteBuffer buf = ByteBuffer.allocate(256);
+    private long lastTick;
+    private boolean finished;
+    
+    /**
+     * @param width      board width.
+     * @param height     board height.
+     * @param level      initial level.
+     * @param randomizer randomizer type.
+     * @param seed       randomizer seed.
+     */
+    public ReplayRecorder(int width, int height, int level, RandomizerType randomizer, long seed) {
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        this.randomizer = randomizer;
+        this.seed = seed;
+        buf.putInt(ReplayFormat.MAGIC);
+        buf.put((byte) ReplayFormat.VERSION);
+        ReplayFormat.writeVarLong(buf, width);
+        ReplayFormat.writeVarLong(buf, height);
+        ReplayFormat.writeVarLong(buf, level);
+        buf.put((byte) randomizer.ordinal());
+        buf.putLong(seed);
+    }
+    
+    /**
+     * Creates board matching the recorded header with this recorder attached.
+     * 
+     * @return new board, not yet started.
+     */
+    public Board createBoard() {
+        Board board = new Board(width, height, level, randomizer.create(seed));
+        board.setInputRecorder(this);
+        return board;
+    }
+    
+    @Override
+    public void record(long tick, Input input) {
+        if(finished) {
+            throw new IllegalStateException("Replay already finished");
+        }
+        writeEvent(tick, input.ordinal());
+    }
+    
+    /**
+     * Writes end marker and final state of the board.
+     * 
+     * @param board recorded board.
+     * @return encoded replay.
+     */
+    public byte[] finish(Board board) {
+        if(!finished) {
+            writeEvent(board.getTicks(), ReplayFormat.END);
+            ensureCapacity(4 * MAX_VARINT);
+            ReplayFormat.writeVarLong(buf, board.getScore());
+            ReplayFormat.writeVarLong(buf, board.getLinesCleared());
+            ReplayFormat.writeVarLong(buf, board.getLevel());
+            ReplayFormat.writeVarLong(buf, board.getPiecesPlaced());
+            finished = true;
+            board.setInputRecorder(null);
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+    
+    private void writeEvent(long tick, int code) {
+        ensureCapacity(MAX_VARINT);
+        ReplayFormat.writeVarLong(buf, ((tick - lastTick) << ReplayFormat.INPUT_BITS) | code);
+        lastTick = tick;
+    }
+    
+    private void ensureCapacity(int bytes) {
+        if(buf.remaining() < bytes) {
+            ByteBuffer tmp = ByteBuffer.allocate(buf.capacity() * 2);
+            buf.flip();
+            tmp.put(buf);
+            buf = tmp;
+        }
+    }
+}
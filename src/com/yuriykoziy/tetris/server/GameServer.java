@@ -0,0 +1,285 @@
+package com.yuriykoziy.tetris.server;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.GameLoop;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts one game per TCP connection on a single thread. Sockets are multiplexed by a
+ * {@link Selector} and all boards share one {@link HashedWheelTimer} with ticks of
+ * {@link Board#TICK_MILLIS}, a session only wakes up when gravity is due or input arrives.
+ * A connection gets a WELCOME frame, a state frame after each visible change and GAME_OVER
+ * before the server closes it, see {@link ServerProtocol}. Memory per session is a small
+ * board and two fixed buffers, the number of sessions is capped.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class GameServer implements Runnable {
+    private static final int WHEEL_SIZE = 512;
+    private static final Logger LOG = Logger.getLogger(GameServer.class.getName());
+
+    private final Selector selector;
+    private final ServerSocketChannel acceptor;
+    private final HashedWheelTimer timer;
+    private final int maxSessions;
+    private final int width;
+    private final int height;
+    private final int level;
+    private final SplittableRandom seeds;
+    // sessions changed since the last flush, each at most once
+    private final ArrayList<Session> flushQueue = new ArrayList<>();
+    private int nextId;
+    private volatile int sessionCount;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Opens the listening socket.
+     *
+     * @param address     address to listen on, port 0 picks a free one.
+     * @param maxSessions maximum number of concurrent sessions, connections above it are refused.
+     * @param width       board width.
+     * @param height      board height.
+     * @param level       initial level.
+     * @param seed        seed of the session seeds.
+     * @throws IOException if the socket can not be bound.
+     */
+    public GameServer(InetSocketAddress address, int maxSessions, int width, int height, int level, long seed)
+            throws IOException {
+        if(maxSessions < 1) {
+            throw new IllegalArgumentException("Invalid session limit: " + maxSessions);
+        }
+        this.maxSessions = maxSessions;
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        seeds = new SplittableRandom(seed);
+        timer = new HashedWheelTimer(WHEEL_SIZE, GameLoop.TICK_NANOS, System.nanoTime());
+        selector = Selector.open();
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(address, maxSessions);
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return port the server listens on.
+     */
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of open sessions.
+     */
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Starts the server thread, does nothing if already running.
+     */
+    public synchronized void start() {
+        if(running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the server thread, which closes all sessions and the listening socket.
+     */
+    public synchronized void stop() {
+        running = false;
+        selector.wakeup();
+        if(thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    void queueFlush(Session session) {
+        if(!session.isQueued()) {
+            session.setQueued(true);
+            flushQueue.add(session);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(running) {
+                long wait = timer.nanosUntilNextTick(System.nanoTime());
+                if(wait > 0) {
+                    selector.select(Math.max(1, wait / 1_000_000L));
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(key.isValid()) {
+                        handle(key);
+                    }
+                }
+                timer.advance(System.nanoTime());
+                flushAll();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Game server failed", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if(key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Session session = (Session) key.attachment();
+        try {
+            if(key.isReadable() && !session.read(timer.getTick())) {
+                close(session);
+                return;
+            }
+            if(key.isValid() && key.isWritable()) {
+                queueFlush(session);
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Session " + session.getId() + " closed", ex);
+            close(session);
+        }
+    }
+
+    /**
+     * Accepts pending connections. A connection that fails to set up is closed and skipped,
+     * only a failure of the listening socket is thrown.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while((channel = acceptor.accept()) != null) {
+            Session session;
+            try {
+                if(sessionCount >= maxSessions) {
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                long seed = seeds.nextLong();
+                session = new Session(this, nextId++, channel,
+                        new Board(width, height, level, seed), seed, timer.getTick());
+                session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Connection setup failed", ex);
+                closeQuietly(channel);
+                continue;
+            }
+            timer.schedule(session, session.getBoard().getTicksUntilGravity());
+            sessionCount++;
+            queueFlush(session);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Connection close failed", ex);
+        }
+    }
+
+    private void flushAll() {
+        for(int i = 0; i < flushQueue.size(); i++) {
+            Session session = flushQueue.get(i);
+            session.setQueued(false);
+            if(!session.getChannel().isOpen()) {
+                continue;
+            }
+            try {
+                session.flush();
+                if(session.isFinished()) {
+                    close(session);
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Session " + session.getId() + " closed", ex);
+                close(session);
+            }
+        }
+        flushQueue.clear();
+    }
+
+    private void close(Session session) {
+        timer.cancel(session);
+        if(session.getChannel().isOpen()) {
+            sessionCount--;
+            try {
+                session.getChannel().close();
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Session " + session.getId() + " close failed", ex);
+            }
+        }
+    }
+
+    private void closeAll() {
+        for(SelectionKey key : selector.keys()) {
+            if(key.attachment() instanceof Session) {
+                close((Session) key.attachment());
+            }
+        }
+        try {
+            acceptor.close();
+            selector.close();
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Game server close failed", ex);
+        }
+    }
+
+    /**
+     * Runs the server until the process is killed.
+     * Arguments: port, session limit, level, board width and height.
+     *
+     * @param args command line arguments.
+     * @throws IOException          if the socket can not be bound.
+     * @throws InterruptedException if interrupted while serving.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : ServerProtocol.DEFAULT_PORT;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int level = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                maxSessions, width, height, level, System.nanoTime());
+        System.out.println("Listening on port " + server.getPort());
+        server.start();
+        server.thread.join();
+    }
+}
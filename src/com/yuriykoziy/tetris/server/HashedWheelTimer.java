@@ -0,0 +1,171 @@
+package com.yuriykoziy.tetris.server;
+
+/**
+ * Hashed wheel of timeouts advanced by the thread that owns it, so there is no locking.
+ * Time is counted in ticks of fixed length, a timeout due at tick t waits in bucket t % wheel size
+ * in an intrusive doubly linked list, so scheduling, cancelling and rescheduling are O(1)
+ * and do not allocate. Delays longer than the wheel stay in their bucket for extra rounds.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class HashedWheelTimer {
+
+    /**
+     * Entry of the wheel, extended by objects that are scheduled over and over.
+     */
+    public abstract static class Timeout {
+        private Timeout prev;
+        private Timeout next;
+        private long deadline = -1;
+
+        /**
+         * @return true if waiting in a wheel.
+         */
+        public boolean isScheduled() {
+            return deadline >= 0;
+        }
+
+        /**
+         * @return tick the timeout is due at, -1 if not scheduled.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Invoked on the thread advancing the wheel, the timeout is already removed from it
+         * and may schedule itself again.
+         *
+         * @param tick current tick of the wheel.
+         */
+        protected abstract void expire(long tick);
+    }
+
+    private final Timeout[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+    private long tick;
+    private int size;
+
+    /**
+     * @param wheelSize  number of buckets, rounded up to a power of two.
+     * @param tickNanos  tick length in nanoseconds.
+     * @param startNanos {@link System#nanoTime()} of tick 0.
+     */
+    public HashedWheelTimer(int wheelSize, long tickNanos, long startNanos) {
+        if(wheelSize < 1 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+        }
+        if(tickNanos <= 0) {
+            throw new IllegalArgumentException("Invalid tick length: " + tickNanos);
+        }
+        wheel = new Timeout[Integer.highestOneBit((wheelSize << 1) - 1)];
+        mask = wheel.length - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return last tick processed by {@link #advance(long)}.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return number of scheduled timeouts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the timeout, a scheduled one is moved to the new deadline.
+     *
+     * @param timeout timeout to schedule.
+     * @param delay   ticks from the current tick, values below 1 mean the next tick.
+     */
+    public void schedule(Timeout timeout, long delay) {
+        if(timeout.isScheduled()) {
+            cancel(timeout);
+        }
+        long deadline = tick + Math.max(1, delay);
+        int slot = (int) (deadline & mask);
+        timeout.deadline = deadline;
+        timeout.prev = null;
+        timeout.next = wheel[slot];
+        if(timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        wheel[slot] = timeout;
+        size++;
+    }
+
+    /**
+     * Removes the timeout from the wheel, does nothing if it is not scheduled.
+     *
+     * @param timeout timeout to cancel.
+     */
+    public void cancel(Timeout timeout) {
+        if(!timeout.isScheduled()) {
+            return;
+        }
+        if(timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[(int) (timeout.deadline & mask)] = timeout.next;
+        }
+        if(timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.deadline = -1;
+        size--;
+    }
+
+    /**
+     * @param now current {@link System#nanoTime()}.
+     * @return nanoseconds until the next tick is due, 0 or less if it is due already.
+     */
+    public long nanosUntilNextTick(long now) {
+        return startNanos + (tick + 1) * tickNanos - now;
+    }
+
+    /**
+     * Processes all ticks elapsed until now, expiring due timeouts tick by tick.
+     *
+     * @param now current {@link System#nanoTime()}.
+     * @return number of expired timeouts.
+     */
+    public int advance(long now) {
+        long target = (now - startNanos) / tickNanos;
+        int expired = 0;
+        while(tick < target) {
+            tick++;
+            expired += expireBucket((int) (tick & mask));
+        }
+        return expired;
+    }
+
+    private int expireBucket(int slot) {
+        int expired = 0;
+        Timeout t = wheel[slot];
+        while(t != null) {
+            Timeout next = t.next;
+            if(t.deadline <= tick) {
+                cancel(t);
+                t.expire(tick);
+                expired++;
+                // expire may have cancelled or moved the next entry, start over from the head
+                if((next != null) && (!next.isScheduled() || ((int) (next.deadline & mask) != slot))) {
+                    next = wheel[slot];
+                }
+            }
+            t = next;
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,250 @@
+package com.yuriykoziy.tetris.server;
+
+import com.yuriykoziy.tetris.logic.GameLoop;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.metrics.LatencyHistogram;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+/**
+ * Load generator of the game server: keeps the given number of sessions open on one thread,
+ * sends random inputs at the given rate per session and opens a new session for every finished game.
+ * Prints sessions, frames, inputs, finished games and soft drop to state frame latency every second.
+ * Without a port a server is started in this JVM, its thread CPU time and heap are reported too
+ * (heap per session then includes the client side of the connection).
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class LoadClient {
+    private static final Input[] INPUTS = {
+        Input.LEFT, Input.RIGHT, Input.ROTATE, Input.SOFT_DROP, Input.LEFT, Input.RIGHT, Input.ROTATE, Input.HARD_DROP
+    };
+
+    private final InetSocketAddress address;
+    private final double inputsPerSecond;
+    private final Selector selector;
+    private final HashedWheelTimer timer;
+    private final SplittableRandom random = new SplittableRandom(1);
+    private final ByteBuffer send = ByteBuffer.allocate(ServerProtocol.INPUT_FRAME_SIZE);
+    private final LatencyHistogram latency = new LatencyHistogram("softDropToState");
+    private int open;
+    private long frames, inputs, games;
+
+    /**
+     * Client side of one session, waits in the wheel until its next input is due.
+     */
+    private final class Connection extends HashedWheelTimer.Timeout {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(4 * ServerProtocol.FRAME_SIZE);
+        private long sentNanos;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        protected void expire(long tick) {
+            Input input = INPUTS[random.nextInt(INPUTS.length)];
+            send.clear();
+            ServerProtocol.writeInput(send, input);
+            send.flip();
+            try {
+                if(channel.write(send) > 0) {
+                    inputs++;
+                    // soft drop always changes the board, so a state frame answers it
+                    if((input == Input.SOFT_DROP) && (sentNanos == 0)) {
+                        sentNanos = System.nanoTime();
+                    }
+                }
+                scheduleInput(this);
+            } catch (IOException ex) {
+                close(this);
+            }
+        }
+
+        /**
+         * @return false if the game has ended.
+         */
+        boolean read() throws IOException {
+            if(channel.read(in) < 0) {
+                return false;
+            }
+            in.flip();
+            boolean running = true;
+            while(in.remaining() >= ServerProtocol.FRAME_SIZE) {
+                byte type = in.get(in.position());
+                in.position(in.position() + ServerProtocol.FRAME_SIZE);
+                frames++;
+                if((type != ServerProtocol.WELCOME) && (sentNanos != 0)) {
+                    latency.record(System.nanoTime() - sentNanos);
+                    sentNanos = 0;
+                }
+                if(type == ServerProtocol.GAME_OVER) {
+                    running = false;
+                }
+            }
+            in.compact();
+            return running;
+        }
+    }
+
+    /**
+     * @param address         server address.
+     * @param inputsPerSecond average input rate of one session.
+     * @throws IOException if the selector can not be opened.
+     */
+    public LoadClient(InetSocketAddress address, double inputsPerSecond) throws IOException {
+        this.address = address;
+        this.inputsPerSecond = inputsPerSecond;
+        selector = Selector.open();
+        timer = new HashedWheelTimer(1024, GameLoop.TICK_NANOS, System.nanoTime());
+    }
+
+    /**
+     * Opens sessions until the given number is open.
+     *
+     * @param sessions target number of sessions.
+     * @throws IOException if a connection fails.
+     */
+    public void connect(int sessions) throws IOException {
+        while(open < sessions) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            channel.register(selector, SelectionKey.OP_READ, connection);
+            scheduleInput(connection);
+            open++;
+        }
+    }
+
+    /**
+     * Runs the client for the given time, keeping the number of sessions.
+     *
+     * @param sessions number of sessions.
+     * @param nanos    run time.
+     * @param report   invoked about once per second.
+     * @throws IOException if a connection fails.
+     */
+    public void run(int sessions, long nanos, Runnable report) throws IOException {
+        long end = System.nanoTime() + nanos;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        while(System.nanoTime() < end) {
+            selector.select(1);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if(key.isValid() && key.isReadable() && !connection.read()) {
+                        games++;
+                        close(connection);
+                    }
+                } catch (IOException ex) {
+                    close(connection);
+                }
+            }
+            timer.advance(System.nanoTime());
+            connect(sessions);
+            if(System.nanoTime() >= nextReport) {
+                report.run();
+                nextReport += 1_000_000_000L;
+            }
+        }
+    }
+
+    private void scheduleInput(Connection connection) {
+        double millis = -Math.log(1 - random.nextDouble()) * 1000 / inputsPerSecond;
+        timer.schedule(connection, (long) (millis / 10));
+    }
+
+    private void close(Connection connection) {
+        timer.cancel(connection);
+        try {
+            connection.channel.close();
+        } catch (IOException ex) {
+            // already closed
+        }
+        open--;
+    }
+
+    /**
+     * Arguments: sessions, seconds, inputs per second of a session, server port
+     * (a server is started in this JVM when it is missing).
+     *
+     * @param args command line arguments.
+     * @throws IOException if the server can not be reached.
+     */
+    public static void main(String[] args) throws IOException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+        GameServer server = null;
+        int port;
+        if(args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                    sessions, 10, 20, 0, 0);
+            server.start();
+            port = server.getPort();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        LoadClient client = new LoadClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), rate);
+        long start = System.nanoTime();
+        client.connect(sessions);
+        System.out.printf("%d sessions connected in %d ms%n", sessions, (System.nanoTime() - start) / 1_000_000);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long serverThread = -1;
+        for(Thread t : Thread.getAllStackTraces().keySet()) {
+            if(t.getName().equals("game-server")) {
+                serverThread = t.getId();
+            }
+        }
+        long[] last = {System.nanoTime(), 0, 0, 0, (serverThread < 0) ? 0 : threads.getThreadCpuTime(serverThread)};
+        GameServer embedded = server;
+        long cpuThread = serverThread;
+        client.run(sessions, seconds * 1_000_000_000L, () -> {
+            long now = System.nanoTime();
+            double elapsed = (now - last[0]) / 1e9;
+            StringBuilder line = new StringBuilder(String.format("sessions %d, frames/s %.0f, inputs/s %.0f, games %d, "
+                    + "latency p50 %.2f ms p99 %.2f ms", client.open, (client.frames - last[1]) / elapsed,
+                    (client.inputs - last[2]) / elapsed, client.games,
+                    client.latency.getP50Nanos() / 1e6, client.latency.getP99Nanos() / 1e6));
+            if(embedded != null) {
+                long cpu = threads.getThreadCpuTime(cpuThread);
+                line.append(String.format(", server sessions %d, server cpu %.1f%%",
+                        embedded.getSessionCount(), 100.0 * (cpu - last[4]) / (now - last[0])));
+                last[4] = cpu;
+            }
+            System.out.println(line);
+            last[0] = now;
+            last[1] = client.frames;
+            last[2] = client.inputs;
+            client.latency.reset();
+        });
+        if(server != null) {
+            System.gc();
+            long heap = runtime.totalMemory() - runtime.freeMemory() - baseHeap;
+            System.out.printf("heap %d KB, %d bytes per session (server and client side)%n",
+                    heap / 1024, heap / sessions);
+            server.stop();
+        }
+    }
+}
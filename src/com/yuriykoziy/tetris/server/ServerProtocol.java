@@ -0,0 +1,103 @@
+package com.yuriykoziy.tetris.server;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encoders of the game server protocol. Frames have fixed size,
+ * multi-byte values are big endian.
+ *
+ * <pre>
+ * client to server, 2 bytes:
+ *   INPUT      opcode, input ordinal
+ * server to client, 24 bytes:
+ *   WELCOME    type, session id (int), width, height (shorts), level byte, seed (long), padding
+ *   STATE      type, piece type, rotation, next type, x, y (shorts), level byte,
+ *              score, lines, ticks (ints), padding
+ *   GAME_OVER  same as STATE, sent once as the last frame of the session
+ * </pre>
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class ServerProtocol {
+    public static final int DEFAULT_PORT = 7531;
+    public static final int INPUT_FRAME_SIZE = 2;
+    public static final int FRAME_SIZE = 24;
+
+    public static final byte OP_INPUT = 1;
+
+    public static final byte WELCOME = 1;
+    public static final byte STATE = 2;
+    public static final byte GAME_OVER = 3;
+
+    private static final Input[] INPUTS = Input.values();
+
+    private ServerProtocol() {
+    }
+
+    /**
+     * @param buf   destination buffer.
+     * @param input player input.
+     */
+    public static void writeInput(ByteBuffer buf, Input input) {
+        buf.put(OP_INPUT);
+        buf.put((byte) input.ordinal());
+    }
+
+    /**
+     * @param opcode frame opcode.
+     * @param arg    frame argument.
+     * @return decoded input or null if the frame is not a valid input.
+     */
+    public static Input toInput(byte opcode, byte arg) {
+        return ((opcode == OP_INPUT) && (arg >= 0) && (arg < INPUTS.length)) ? INPUTS[arg] : null;
+    }
+
+    /**
+     * @param buf   destination buffer, needs {@link #FRAME_SIZE} bytes remaining.
+     * @param id    session id.
+     * @param board board of the session.
+     * @param seed  seed of the tetromino sequence.
+     */
+    public static void writeWelcome(ByteBuffer buf, int id, Board board, long seed) {
+        int start = buf.position();
+        buf.put(WELCOME);
+        buf.putInt(id);
+        buf.putShort((short) board.getField().getWidth());
+        buf.putShort((short) board.getField().getHeight());
+        buf.put((byte) board.getLevel());
+        buf.putLong(seed);
+        pad(buf, start);
+    }
+
+    /**
+     * Writes STATE frame or GAME_OVER frame when the game has ended.
+     *
+     * @param buf   destination buffer, needs {@link #FRAME_SIZE} bytes remaining.
+     * @param board board of the session.
+     */
+    public static void writeState(ByteBuffer buf, Board board) {
+        int start = buf.position();
+        Tetromino t = board.getCurrentTetromino();
+        buf.put(board.isGameRunning() ? STATE : GAME_OVER);
+        buf.put((byte) t.getType());
+        buf.put((byte) t.getRotation());
+        buf.put((byte) board.getPreviewType(0));
+        buf.putShort((short) t.getXposition());
+        buf.putShort((short) t.getYposition());
+        buf.put((byte) board.getLevel());
+        buf.putInt(board.getScore());
+        buf.putInt(board.getLinesCleared());
+        buf.putInt((int) board.getTicks());
+        pad(buf, start);
+    }
+
+    private static void pad(ByteBuffer buf, int start) {
+        while(buf.position() < start + FRAME_SIZE) {
+            buf.put((byte) 0);
+        }
+    }
+}
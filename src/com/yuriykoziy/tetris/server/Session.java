@@ -0,0 +1,180 @@
+package com.yuriykoziy.tetris.server;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One game played over one connection. Lives on the server thread only.
+ * The board is not ticked every {@link Board#TICK_MILLIS}: the session waits in the server wheel
+ * until the next gravity step and catches the board clock up to the wheel tick before
+ * each expiry and each input, so the board goes through the same ticks as on a {@code GameLoop}.
+ * Buffers have fixed size: at most a few inputs are read per wakeup and the state frame
+ * is coalesced, a slow client gets the latest state instead of a growing queue.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class Session extends HashedWheelTimer.Timeout {
+    private static final int INPUTS_PER_READ = 16;
+
+    private final GameServer server;
+    private final int id;
+    private final SocketChannel channel;
+    private final Board board;
+    private final long startTick;
+    private final ByteBuffer in = ByteBuffer.allocate(INPUTS_PER_READ * ServerProtocol.INPUT_FRAME_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocate(2 * ServerProtocol.FRAME_SIZE);
+    private SelectionKey key;
+    private boolean changed;
+    private boolean queued;
+
+    Session(GameServer server, int id, SocketChannel channel, Board board, long seed, long startTick) {
+        this.server = server;
+        this.id = id;
+        this.channel = channel;
+        this.board = board;
+        this.startTick = startTick;
+        board.startGame();
+        ServerProtocol.writeWelcome(out, id, board, seed);
+        changed = true;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Board getBoard() {
+        return board;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * @return true if the session is in the server queue of sessions to flush.
+     */
+    boolean isQueued() {
+        return queued;
+    }
+
+    void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    /**
+     * @return true if the game has ended and the last frame was sent.
+     */
+    boolean isFinished() {
+        return !board.isGameRunning() && !changed && (out.position() == 0);
+    }
+
+    @Override
+    protected void expire(long tick) {
+        catchUp(tick);
+        scheduleGravity();
+    }
+
+    /**
+     * Reads and applies available inputs.
+     *
+     * @param tick current wheel tick.
+     * @return false if the peer has closed the connection.
+     * @throws IOException on socket error or malformed frame.
+     */
+    boolean read(long tick) throws IOException {
+        int n = channel.read(in);
+        if(n < 0) {
+            return false;
+        }
+        in.flip();
+        if(in.remaining() >= ServerProtocol.INPUT_FRAME_SIZE) {
+            catchUp(tick);
+        }
+        while(in.remaining() >= ServerProtocol.INPUT_FRAME_SIZE) {
+            byte opcode = in.get();
+            byte arg = in.get();
+            Input input = ServerProtocol.toInput(opcode, arg);
+            if(input == null) {
+                throw new ProtocolException("Invalid frame " + opcode + "/" + arg + " in session " + id);
+            }
+            markChanged(board.apply(input));
+        }
+        in.compact();
+        scheduleGravity();
+        return true;
+    }
+
+    /**
+     * Writes pending frames, interest in OP_WRITE is set while the socket buffer is full.
+     *
+     * @throws IOException on socket error.
+     */
+    void flush() throws IOException {
+        while(true) {
+            if(changed && (out.remaining() >= ServerProtocol.FRAME_SIZE)) {
+                ServerProtocol.writeState(out, board);
+                changed = false;
+            }
+            if(out.position() == 0) {
+                setWriteInterest(false);
+                return;
+            }
+            out.flip();
+            channel.write(out);
+            out.compact();
+            if(out.position() > 0) {
+                setWriteInterest(true);
+                return;
+            }
+        }
+    }
+
+    private void setWriteInterest(boolean write) {
+        if((key != null) && key.isValid()) {
+            int ops = write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if(key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+    }
+
+    /**
+     * Advances the board to the wheel tick.
+     */
+    private void catchUp(long tick) {
+        long target = tick - startTick;
+        boolean moved = false;
+        while(board.isGameRunning() && (board.getTicks() < target)) {
+            moved |= board.tick();
+        }
+        markChanged(moved);
+    }
+
+    private void scheduleGravity() {
+        if(board.isGameRunning()) {
+            server.getTimer().schedule(this, board.getTicksUntilGravity());
+        } else {
+            server.getTimer().cancel(this);
+        }
+    }
+
+    /**
+     * Game over always comes with a landing, so the GAME_OVER frame is queued here as well.
+     */
+    private void markChanged(boolean moved) {
+        if(moved) {
+            changed = true;
+            server.queueFlush(this);
+        }
+    }
+}
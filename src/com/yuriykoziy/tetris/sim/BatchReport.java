@@ -0,0 +1,114 @@
+package com.yuriykoziy.tetris.sim;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated score, lines and level distributions of a batch together with throughput figures.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class BatchReport {
+    private final GameResult[] results;
+    private final List<BatchRunner.WorkerStats> workers;
+    private final long wallNanos;
+    private final int[] scores;
+    private final int[] lines;
+    private final int[] levelHistogram;
+    private final long placements;
+    
+    BatchReport(GameResult[] results, List<BatchRunner.WorkerStats> workers, long wallNanos) {
+        this.results = results;
+        this.workers = Collections.unmodifiableList(workers);
+        this.wallNanos = wallNanos;
+        scores = new int[results.length];
+        lines = new int[results.length];
+        int maxLevel = 0;
+        long pieces = 0;
+        for(int i = 0; i < results.length; i++) {
+            scores[i] = results[i].getScore();
+            lines[i] = results[i].getLines();
+            maxLevel = Math.max(maxLevel, results[i].getLevel());
+            pieces += results[i].getPieces();
+        }
+        Arrays.sort(scores);
+        Arrays.sort(lines);
+        levelHistogram = new int[maxLevel + 1];
+        for(GameResult result : results) {
+            levelHistogram[result.getLevel()]++;
+        }
+        placements = pieces;
+    }
+    
+    /**
+     * @return results ordered by game index.
+     */
+    public GameResult[] getResults() {
+        return results.clone();
+    }
+    
+    public List<BatchRunner.WorkerStats> getWorkers() {
+        return workers;
+    }
+    
+    /**
+     * @param p percentile (0-100).
+     * @return score at given percentile.
+     */
+    public int getScorePercentile(double p) {
+        return percentile(scores, p);
+    }
+    
+    /**
+     * @param p percentile (0-100).
+     * @return lines cleared at given percentile.
+     */
+    public int getLinesPercentile(double p) {
+        return percentile(lines, p);
+    }
+    
+    /**
+     * @return number of games that ended on each level.
+     */
+    public int[] getLevelHistogram() {
+        return levelHistogram.clone();
+    }
+    
+    public double getGamesPerSecond() {
+        return results.length * 1e9 / Math.max(1, wallNanos);
+    }
+    
+    public double getPlacementsPerSecond() {
+        return placements * 1e9 / Math.max(1, wallNanos);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("games=%d threads=%d wall=%.3fs games/s=%.1f placements/s=%.1f%n", 
+                results.length, workers.size(), wallNanos / 1e9, getGamesPerSecond(), getPlacementsPerSecond()));
+        for(BatchRunner.WorkerStats w : workers) {
+            sb.append(String.format("  %s games=%d games/s=%.1f placements/s=%.1f%n", 
+                    w.getName(), w.getGames(), w.getGamesPerSecond(), w.getPlacementsPerSecond()));
+        }
+        sb.append(String.format("score p50=%d p90=%d p99=%d max=%d%n", 
+                getScorePercentile(50), getScorePercentile(90), getScorePercentile(99), getScorePercentile(100)));
+        sb.append(String.format("lines p50=%d p90=%d p99=%d max=%d%n", 
+                getLinesPercentile(50), getLinesPercentile(90), getLinesPercentile(99), getLinesPercentile(100)));
+        sb.append("levels");
+        for(int i = 0; i < levelHistogram.length; i++) {
+            sb.append(' ').append(i).append('=').append(levelHistogram[i]);
+        }
+        return sb.append(String.format("%n")).toString();
+    }
+    
+    private static int percentile(int[] sorted, double p) {
+        if(sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,178 @@
+package com.yuriykoziy.tetris.sim;
+
+import com.yuriykoziy.tetris.ai.AutoPlayer;
+import com.yuriykoziy.tetris.logic.Board;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Plays many independent seeded headless games in parallel, every game owns its own Board.
+ * Each worker pulls the next game index from a shared counter, so uneven game lengths
+ * do not leave cores idle.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class BatchRunner {
+    public static final long DEFAULT_MAX_TICKS = 10_000_000L;
+    
+    private final int threads;
+    private final int width;
+    private final int height;
+    private final int level;
+    private final long maxTicks;
+    
+    /**
+     * @param threads  number of worker threads.
+     * @param width    board width.
+     * @param height   board height.
+     * @param level    initial level.
+     * @param maxTicks tick limit after which a game is stopped.
+     */
+    public BatchRunner(int threads, int width, int height, int level, long maxTicks) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        this.maxTicks = maxTicks;
+    }
+    
+    /**
+     * Plays given number of games.
+     * 
+     * @param games   number of games, at least one.
+     * @param seed    master seed, game seeds are derived from it.
+     * @param players creates player for a game seed.
+     * @return aggregated results.
+     */
+    public BatchReport run(int games, long seed, LongFunction<Player> players) {
+        if(games < 1) {
+            throw new IllegalArgumentException("Invalid number of games: " + games);
+        }
+        long[] seeds = new long[games];
+        SplittableRandom master = new SplittableRandom(seed);
+        for(int i = 0; i < games; i++) {
+            seeds[i] = master.nextLong();
+        }
+        GameResult[] results = new GameResult[games];
+        AtomicInteger nextGame = new AtomicInteger();
+        
+        List<Callable<WorkerStats>> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            workers.add(() -> {
+                long start = System.nanoTime();
+                int played = 0;
+                long placements = 0;
+                for(int g = nextGame.getAndIncrement(); g < games; g = nextGame.getAndIncrement()) {
+                    Board board = new Board(width, height, level, seeds[g]);
+                    results[g] = play(board, players.apply(seeds[g]), seeds[g], maxTicks);
+                    played++;
+                    placements += results[g].getPieces();
+                }
+                return new WorkerStats(Thread.currentThread().getName(), played, placements, System.nanoTime() - start);
+            });
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<WorkerStats> stats = new ArrayList<>();
+            for(Future<WorkerStats> f : pool.invokeAll(workers)) {
+                stats.add(f.get());
+            }
+            return new BatchReport(results, stats, System.nanoTime() - start);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Game failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Plays single game until it is over or tick limit is reached.
+     * 
+     * @param board    fresh board.
+     * @param player   player.
+     * @param seed     game seed, recorded in the result.
+     * @param maxTicks tick limit.
+     * @return game result.
+     */
+    public static GameResult play(Board board, Player player, long seed, long maxTicks) {
+        board.startGame();
+        while(board.isGameRunning() && (board.getTicks() < maxTicks)) {
+            board.step(player.nextInput(board));
+        }
+        return new GameResult(seed, board.getScore(), board.getLinesCleared(), board.getLevel(), 
+                board.getPiecesPlaced(), board.getTicks());
+    }
+    
+    /**
+     * Runs a batch of games from the command line.
+     * Arguments: [games] [threads] [seed] [random|ai].
+     * 
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        boolean ai = args.length > 3 && args[3].equals("ai");
+        
+        BatchRunner runner = new BatchRunner(threads, 10, 20, 0, DEFAULT_MAX_TICKS);
+        System.out.println(runner.run(games, seed, ai ? s -> new AutoPlayer(10, 20) : RandomPlayer::new));
+    }
+    
+    /**
+     * Throughput of a single worker thread.
+     */
+    public static class WorkerStats {
+        private final String name;
+        private final int games;
+        private final long placements;
+        private final long nanos;
+        
+        WorkerStats(String name, int games, long placements, long nanos) {
+            this.name = name;
+            this.games = games;
+            this.placements = placements;
+            this.nanos = nanos;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getGames() {
+            return games;
+        }
+        
+        public long getPlacements() {
+            return placements;
+        }
+        
+        public long getNanos() {
+            return nanos;
+        }
+        
+        public double getGamesPerSecond() {
+            return games * 1e9 / Math.max(1, nanos);
+        }
+        
+        public double getPlacementsPerSecond() {
+            return placements * 1e9 / Math.max(1, nanos);
+        }
+    }
+}
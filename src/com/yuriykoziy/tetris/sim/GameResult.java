@@ -0,0 +1,49 @@
+package com.yuriykoziy.tetris.sim;
+
+/**
+ * Final state of a single simulated game.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class GameResult {
+    private final long seed;
+    private final int score;
+    private final int lines;
+    private final int level;
+    private final int pieces;
+    private final long ticks;
+    
+    public GameResult(long seed, int score, int lines, int level, int pieces, long ticks) {
+        this.seed = seed;
+        this.score = score;
+        this.lines = lines;
+        this.level = level;
+        this.pieces = pieces;
+        this.ticks = ticks;
+    }
+    
+    public long getSeed() {
+        return seed;
+    }
+    
+    public int getScore() {
+        return score;
+    }
+    
+    public int getLines() {
+        return lines;
+    }
+    
+    public int getLevel() {
+        return level;
+    }
+    
+    public int getPieces() {
+        return pieces;
+    }
+    
+    public long getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,19 @@
+package com.yuriykoziy.tetris.sim;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+
+/**
+ * Headless player that chooses input for every logic tick of the board.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public interface Player {
+    
+    /**
+     * @param board board being played, should not be modified by the player.
+     * @return input for the next tick.
+     */
+    Input nextInput(Board board);
+}
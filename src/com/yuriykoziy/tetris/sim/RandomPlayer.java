@@ -0,0 +1,29 @@
+package com.yuriykoziy.tetris.sim;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import java.util.SplittableRandom;
+
+/**
+ * Player that presses random keys, useful as a cheap load generator.
+ * 
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class RandomPlayer implements Player {
+    private static final Input[] INPUTS = Input.values();
+    
+    private final SplittableRandom random;
+    
+    /**
+     * @param seed seed of the input sequence.
+     */
+    public RandomPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+    
+    @Override
+    public Input nextInput(Board board) {
+        return INPUTS[random.nextInt(INPUTS.length)];
+    }
+}
@@ -0,0 +1,286 @@
+package com.yuriykoziy.tetris.stream;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardSnapshot;
+import com.yuriykoziy.tetris.logic.Field;
+import com.yuriykoziy.tetris.logic.FieldFrame;
+import com.yuriykoziy.tetris.logic.SnapshotSource;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import com.yuriykoziy.tetris.replay.ReplayFormat;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rebuilds a remote board from a spectator stream written by {@link StateEncoder} and publishes
+ * a {@link BoardSnapshot} after every packet, so it can be painted by a spectator
+ * {@code BoardPanel}. Packets before the first keyframe are skipped, a packet that does not
+ * match the rebuilt field (a lost packet, a malformed one) is counted and packets are skipped
+ * again until the next keyframe.
+ * Must be fed by a single thread, snapshots can be read from any thread.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class StateDecoder implements SnapshotSource {
+    private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>();
+    private final Runnable listener;
+    private Field field;
+    private FieldFrame frame;
+    private long ticks;
+    private int score, lines, level, next;
+    private int type, rotation, x, y;
+    private int lockTop = -1;
+    private boolean running;
+    private boolean synced;
+    private long packets, desyncs;
+
+    /**
+     * @param listener invoked on the decoding thread after each published snapshot, may be null.
+     */
+    public StateDecoder(Runnable listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public BoardSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @return true once a keyframe was decoded and no mismatch was found since.
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return number of decoded packets.
+     */
+    public long getPacketCount() {
+        return packets;
+    }
+
+    /**
+     * @return number of packets that did not match the rebuilt field.
+     */
+    public long getDesyncCount() {
+        return desyncs;
+    }
+
+    /**
+     * Decodes all complete packets of the buffer, position is left at the first incomplete one.
+     *
+     * @param in buffer in read mode.
+     * @return number of decoded packets.
+     */
+    public int decode(ByteBuffer in) {
+        int decoded = 0;
+        while(true) {
+            int start = in.position();
+            long length = peekLength(in);
+            if((length < 0) || (in.remaining() < length)) {
+                in.position(start);
+                return decoded;
+            }
+            ByteBuffer body = in.slice(in.position(), (int) length);
+            in.position(in.position() + (int) length);
+            decodePacket(body);
+            decoded++;
+        }
+    }
+
+    /**
+     * Reads the packet length if the varint is complete.
+     *
+     * @return length or -1 if more bytes are needed.
+     */
+    private static long peekLength(ByteBuffer in) {
+        long value = 0;
+        for(int shift = 0; in.hasRemaining() && (shift < 64); shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private void decodePacket(ByteBuffer body) {
+        packets++;
+        try {
+            ticks += ReplayFormat.readVarLong(body);
+            boolean keyframe = body.hasRemaining() && (body.get(body.position())
+                    == StreamFormat.op(StreamFormat.OP_EXT, StreamFormat.EXT_KEYFRAME));
+            if(!synced && !keyframe) {
+                return;
+            }
+            while(body.hasRemaining()) {
+                if(!decodeOp(body)) {
+                    desync();
+                    return;
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            desync();
+            return;
+        }
+        publish();
+    }
+
+    /**
+     * @return false if the op does not match the rebuilt field.
+     */
+    private boolean decodeOp(ByteBuffer body) {
+        int b = body.get() & 0xFF;
+        int arg = b & StreamFormat.ARG_MASK;
+        switch(b >>> StreamFormat.ARG_BITS) {
+            case StreamFormat.OP_SHIFT: x += arg - StreamFormat.SHIFT_BIAS; return true;
+            case StreamFormat.OP_DROP: y += arg; return true;
+            case StreamFormat.OP_ROTATE: rotation = arg & 3; return true;
+            case StreamFormat.OP_PIECE: readPlacement(arg, body); return true;
+            case StreamFormat.OP_LOCK: return lock(arg, body);
+            case StreamFormat.OP_CLEAR: return clear(arg);
+            case StreamFormat.OP_STATS: readStats(arg, body); return true;
+            default: return decodeExt(arg, body);
+        }
+    }
+
+    private boolean decodeExt(int arg, ByteBuffer body) {
+        if(arg == StreamFormat.EXT_GAME_OVER) {
+            running = false;
+        } else if(arg == StreamFormat.EXT_KEYFRAME) {
+            readKeyframe(body);
+        } else if(arg == StreamFormat.EXT_GARBAGE) {
+            int rows = ReplayFormat.readVarInt(body);
+            int hole = ReplayFormat.readVarInt(body);
+            if(hole >= field.getWidth()) {
+                return false;
+            }
+            field.raiseRows(rows, hole, Board.GARBAGE_BLOCK);
+        } else if((arg >= StreamFormat.EXT_NEXT) && (arg < StreamFormat.EXT_NEXT + Tetromino.TYPES)) {
+            next = arg - StreamFormat.EXT_NEXT;
+        } else if((arg >= StreamFormat.EXT_SPAWN) && (arg < StreamFormat.EXT_SPAWN + Tetromino.TYPES)) {
+            type = arg - StreamFormat.EXT_SPAWN;
+            rotation = 0;
+            x = Board.getSpawnX(field.getWidth());
+            y = Board.SPAWN_Y;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void readPlacement(int arg, ByteBuffer body) {
+        type = checkType(arg >>> 2);
+        rotation = arg & 3;
+        x = StreamFormat.readZigZag(body);
+        y = StreamFormat.readZigZag(body);
+    }
+
+    private boolean lock(int arg, ByteBuffer body) {
+        readPlacement(arg, body);
+        for(int i = 0; i < Tetromino.CELLS; i++) {
+            int cx = x + Tetromino.getCellX(type, rotation, i);
+            int cy = y + Tetromino.getCellY(type, rotation, i);
+            if(field.isBlocked(cx, cy)) {
+                return false;
+            }
+            field.setBlock(cx, cy, type + 1);
+        }
+        lockTop = y + Tetromino.getMinY(type, rotation);
+        return true;
+    }
+
+    private boolean clear(int mask) {
+        if(lockTop < 0) {
+            return false;
+        }
+        int rows = Math.min(Tetromino.SIZE, field.getHeight() - lockTop);
+        if((mask >>> rows) != 0) {
+            return false;
+        }
+        for(int i = 0; i < rows; i++) {
+            if(field.isRowFull(lockTop + i) != ((mask & (1 << i)) != 0)) {
+                return false;
+            }
+        }
+        lockTop = -1;
+        return field.clearFullRows() == Integer.bitCount(mask);
+    }
+
+    private void readStats(int flags, ByteBuffer body) {
+        if((flags & StreamFormat.STATS_SCORE) != 0) {
+            score += ReplayFormat.readVarInt(body);
+        }
+        if((flags & StreamFormat.STATS_LINES) != 0) {
+            lines += ReplayFormat.readVarInt(body);
+        }
+        if((flags & StreamFormat.STATS_LEVEL) != 0) {
+            level = ReplayFormat.readVarInt(body);
+        }
+    }
+
+    private void readKeyframe(ByteBuffer body) {
+        int width = ReplayFormat.readVarInt(body);
+        int height = ReplayFormat.readVarInt(body);
+        ticks = ReplayFormat.readVarLong(body);
+        score = ReplayFormat.readVarInt(body);
+        lines = ReplayFormat.readVarInt(body);
+        level = ReplayFormat.readVarInt(body);
+        next = checkType(ReplayFormat.readVarInt(body));
+        type = checkType(ReplayFormat.readVarInt(body));
+        rotation = ReplayFormat.readVarInt(body) & 3;
+        x = StreamFormat.readZigZag(body);
+        y = StreamFormat.readZigZag(body);
+        running = body.get() != 0;
+        int first = ReplayFormat.readVarInt(body);
+        if((field == null) || (field.getWidth() != width) || (field.getHeight() != height)) {
+            field = new Field(width, height);
+            frame = null;
+        } else {
+            field.clear();
+        }
+        if(first > height) {
+            throw new IllegalArgumentException("Invalid first row: " + first);
+        }
+        int cells = (height - first) * width;
+        int packed = 0;
+        for(int i = 0; i < cells; i++) {
+            if((i & 1) == 0) {
+                packed = body.get();
+            }
+            int block = (packed >>> ((i & 1) << 2)) & 0xF;
+            if(block != 0) {
+                field.setBlock(i % width, first + i / width, block);
+            }
+        }
+        lockTop = -1;
+        synced = true;
+    }
+
+    private static int checkType(int type) {
+        if(type >= Tetromino.TYPES) {
+            throw new IllegalArgumentException("Invalid tetromino type: " + type);
+        }
+        return type;
+    }
+
+    private void desync() {
+        if(synced) {
+            desyncs++;
+        }
+        synced = false;
+    }
+
+    private void publish() {
+        if((frame == null) || (frame.getVersion() != field.getVersion())) {
+            frame = field.freeze();
+        }
+        snapshot.set(new BoardSnapshot(frame, type, rotation, x, y, next, score, lines, level, ticks, running));
+        if(listener != null) {
+            listener.run();
+        }
+    }
+}
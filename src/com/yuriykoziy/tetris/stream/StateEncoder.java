@@ -0,0 +1,307 @@
+package com.yuriykoziy.tetris.stream;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardAdapter;
+import com.yuriykoziy.tetris.logic.Field;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import com.yuriykoziy.tetris.replay.ReplayFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes changes of a board as a spectator stream, see {@link StreamFormat}.
+ * Landings, spawns, garbage, preview and game over are collected from board events as they happen,
+ * moves of the falling tetromino, score, lines and level are compared with what the stream
+ * has already described when {@link #encode(ByteBuffer)} is called after a step.
+ * A keyframe with the whole field is written first and then every given number of ticks,
+ * so a spectator can join at any time and a lost packet is repaired by the next keyframe.
+ * The encoder keeps the field as the decoder rebuilds it, which gives masks of cleared rows.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class StateEncoder extends BoardAdapter {
+    private static final int MAX_VARINT = 10;
+    private static final int INITIAL_OPS = 64;
+
+    private final Board board;
+    private final int keyframeTicks;
+    private final Field mirror;
+    // ops collected from board events since the last packet
+    private ByteBuffer ops = ByteBuffer.allocate(INITIAL_OPS);
+    private ByteBuffer body = ByteBuffer.allocate(64);
+    private boolean keyframeDue = true;
+    private long lastTick;
+    private long keyframeTick;
+    // state described by the stream so far
+    private int sentType, sentRotation, sentX, sentY;
+    private int sentScore, sentLines, sentLevel;
+    private long packets, bytes, keyframes;
+
+    /**
+     * Creates encoder listening to the board.
+     *
+     * @param board         board to describe.
+     * @param keyframeTicks ticks between keyframes.
+     */
+    public StateEncoder(Board board, int keyframeTicks) {
+        if(keyframeTicks < 1) {
+            throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeTicks);
+        }
+        this.board = board;
+        this.keyframeTicks = keyframeTicks;
+        mirror = new Field(board.getField().getWidth(), board.getField().getHeight());
+        board.addBoardListener(this);
+    }
+
+    /**
+     * Makes the next packet a keyframe, e.g. when a spectator joins.
+     */
+    public void requestKeyframe() {
+        keyframeDue = true;
+    }
+
+    /**
+     * @return number of packets written.
+     */
+    public long getPacketCount() {
+        return packets;
+    }
+
+    /**
+     * @return number of bytes written.
+     */
+    public long getByteCount() {
+        return bytes;
+    }
+
+    /**
+     * @return number of keyframes written.
+     */
+    public long getKeyframeCount() {
+        return keyframes;
+    }
+
+    /**
+     * @return upper bound of a packet size for this board.
+     */
+    public int getMaxPacketSize() {
+        Field field = board.getField();
+        return getMaxPacketSize(field.getWidth(), field.getHeight()) + ops.capacity() - INITIAL_OPS;
+    }
+
+    /**
+     * @param width  board width.
+     * @param height board height.
+     * @return upper bound of a packet size for boards of this size, unless unusually many events
+     *         happen between two packets.
+     */
+    public static int getMaxPacketSize(int width, int height) {
+        return (width * height + 1) / 2 + 16 * MAX_VARINT + INITIAL_OPS;
+    }
+
+    /**
+     * Writes a packet with changes since the previous one, called by the thread driving the board
+     * after each step of a started game.
+     *
+     * @param out destination buffer with at least {@link #getMaxPacketSize()} bytes remaining.
+     * @return number of bytes written, 0 if nothing visible has changed.
+     */
+    public int encode(ByteBuffer out) {
+        long ticks = board.getTicks();
+        body.clear();
+        body = ensure(body, MAX_VARINT);
+        ReplayFormat.writeVarLong(body, ticks - lastTick);
+        if(keyframeDue || (ticks - keyframeTick >= keyframeTicks)) {
+            writeKeyframe();
+        } else {
+            writePiece();
+            writeStats();
+            if(ops.position() == 0) {
+                return 0;
+            }
+            ops.flip();
+            body = ensure(body, ops.remaining());
+            body.put(ops);
+        }
+        ops.clear();
+        lastTick = ticks;
+        body.flip();
+        int start = out.position();
+        ReplayFormat.writeVarLong(out, body.remaining());
+        out.put(body);
+        int written = out.position() - start;
+        packets++;
+        bytes += written;
+        return written;
+    }
+
+    private void writePiece() {
+        Tetromino t = board.getCurrentTetromino();
+        int dx = t.getXposition() - sentX;
+        int dy = t.getYposition() - sentY;
+        if((t.getType() != sentType) || (dx < -StreamFormat.SHIFT_BIAS) || (dx >= StreamFormat.SHIFT_BIAS)
+                || (dy < 0) || (dy > StreamFormat.MAX_DROP)) {
+            writePlacement(StreamFormat.OP_PIECE, t.getType(), t.getRotation(), t.getXposition(), t.getYposition());
+        } else {
+            ops = ensure(ops, 3);
+            if(t.getRotation() != sentRotation) {
+                ops.put(StreamFormat.op(StreamFormat.OP_ROTATE, t.getRotation()));
+            }
+            if(dx != 0) {
+                ops.put(StreamFormat.op(StreamFormat.OP_SHIFT, dx + StreamFormat.SHIFT_BIAS));
+            }
+            if(dy != 0) {
+                ops.put(StreamFormat.op(StreamFormat.OP_DROP, dy));
+            }
+        }
+        setSentPiece(t.getType(), t.getRotation(), t.getXposition(), t.getYposition());
+    }
+
+    private void writePlacement(int op, int type, int rotation, int x, int y) {
+        ops = ensure(ops, 1 + 2 * MAX_VARINT);
+        ops.put(StreamFormat.op(op, (type << 2) | rotation));
+        StreamFormat.writeZigZag(ops, x);
+        StreamFormat.writeZigZag(ops, y);
+    }
+
+    private void writeStats() {
+        int flags = 0;
+        flags |= (board.getScore() != sentScore) ? StreamFormat.STATS_SCORE : 0;
+        flags |= (board.getLinesCleared() != sentLines) ? StreamFormat.STATS_LINES : 0;
+        flags |= (board.getLevel() != sentLevel) ? StreamFormat.STATS_LEVEL : 0;
+        if(flags == 0) {
+            return;
+        }
+        ops = ensure(ops, 1 + 3 * MAX_VARINT);
+        ops.put(StreamFormat.op(StreamFormat.OP_STATS, flags));
+        if((flags & StreamFormat.STATS_SCORE) != 0) {
+            ReplayFormat.writeVarLong(ops, board.getScore() - sentScore);
+        }
+        if((flags & StreamFormat.STATS_LINES) != 0) {
+            ReplayFormat.writeVarLong(ops, board.getLinesCleared() - sentLines);
+        }
+        if((flags & StreamFormat.STATS_LEVEL) != 0) {
+            ReplayFormat.writeVarLong(ops, board.getLevel());
+        }
+        sentScore = board.getScore();
+        sentLines = board.getLinesCleared();
+        sentLevel = board.getLevel();
+    }
+
+    /**
+     * Writes the whole state and copies the board field into the mirror.
+     */
+    private void writeKeyframe() {
+        Field field = board.getField();
+        Tetromino t = board.getCurrentTetromino();
+        int width = field.getWidth();
+        int height = field.getHeight();
+        int first = Math.min(field.getTop(), height);
+        int cells = (height - first) * width;
+        body = ensure(body, 1 + 12 * MAX_VARINT + (cells + 1) / 2);
+        body.put(StreamFormat.op(StreamFormat.OP_EXT, StreamFormat.EXT_KEYFRAME));
+        ReplayFormat.writeVarLong(body, width);
+        ReplayFormat.writeVarLong(body, height);
+        ReplayFormat.writeVarLong(body, board.getTicks());
+        ReplayFormat.writeVarLong(body, board.getScore());
+        ReplayFormat.writeVarLong(body, board.getLinesCleared());
+        ReplayFormat.writeVarLong(body, board.getLevel());
+        ReplayFormat.writeVarLong(body, board.getPreviewType(0));
+        ReplayFormat.writeVarLong(body, t.getType());
+        ReplayFormat.writeVarLong(body, t.getRotation());
+        StreamFormat.writeZigZag(body, t.getXposition());
+        StreamFormat.writeZigZag(body, t.getYposition());
+        body.put((byte) (board.isGameRunning() ? 1 : 0));
+        ReplayFormat.writeVarLong(body, first);
+
+        mirror.clear();
+        int packed = 0;
+        for(int i = 0; i < cells; i++) {
+            int x = i % width;
+            int y = first + i / width;
+            int type = field.getType(x, y);
+            if(type != 0) {
+                mirror.setBlock(x, y, type);
+            }
+            packed |= type << ((i & 1) << 2);
+            if((i & 1) == 1) {
+                body.put((byte) packed);
+                packed = 0;
+            }
+        }
+        if((cells & 1) == 1) {
+            body.put((byte) packed);
+        }
+
+        setSentPiece(t.getType(), t.getRotation(), t.getXposition(), t.getYposition());
+        sentScore = board.getScore();
+        sentLines = board.getLinesCleared();
+        sentLevel = board.getLevel();
+        keyframeDue = false;
+        keyframeTick = board.getTicks();
+        keyframes++;
+    }
+
+    private void setSentPiece(int type, int rotation, int x, int y) {
+        sentType = type;
+        sentRotation = rotation;
+        sentX = x;
+        sentY = y;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buf, int bytes) {
+        if(buf.remaining() >= bytes) {
+            return buf;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+        buf.flip();
+        grown.put(buf);
+        return grown;
+    }
+
+    @Override
+    public void onLand(int type, int rotation, int x, int y) {
+        for(int i = 0; i < Tetromino.CELLS; i++) {
+            mirror.setBlock(x + Tetromino.getCellX(type, rotation, i), y + Tetromino.getCellY(type, rotation, i),
+                    type + 1);
+        }
+        int top = y + Tetromino.getMinY(type, rotation);
+        int mask = 0;
+        for(int row = top; row <= y + Tetromino.getMaxY(type, rotation); row++) {
+            if(mirror.isRowFull(row)) {
+                mask |= 1 << (row - top);
+            }
+        }
+        writePlacement(StreamFormat.OP_LOCK, type, rotation, x, y);
+        ops = ensure(ops, 2);
+        if(mask != 0) {
+            mirror.clearFullRows();
+            ops.put(StreamFormat.op(StreamFormat.OP_CLEAR, mask));
+        }
+        // the next tetromino is already at the spawn position
+        int next = board.getCurrentTetromino().getType();
+        ops.put(StreamFormat.op(StreamFormat.OP_EXT, StreamFormat.EXT_SPAWN + next));
+        setSentPiece(next, 0, board.getSpawnX(), Board.SPAWN_Y);
+    }
+
+    @Override
+    public void onGarbage(int rows, int hole) {
+        mirror.raiseRows(rows, hole, Board.GARBAGE_BLOCK);
+        ops = ensure(ops, 1 + 2 * MAX_VARINT);
+        ops.put(StreamFormat.op(StreamFormat.OP_EXT, StreamFormat.EXT_GARBAGE));
+        ReplayFormat.writeVarLong(ops, rows);
+        ReplayFormat.writeVarLong(ops, hole);
+    }
+
+    @Override
+    public void onNextPiece(int type) {
+        ops = ensure(ops, 1);
+        ops.put(StreamFormat.op(StreamFormat.OP_EXT, StreamFormat.EXT_NEXT + type));
+    }
+
+    @Override
+    public void onGameOver() {
+        ops = ensure(ops, 1);
+        ops.put(StreamFormat.op(StreamFormat.OP_EXT, StreamFormat.EXT_GAME_OVER));
+    }
+}
@@ -0,0 +1,198 @@
+package com.yuriykoziy.tetris.stream;
+
+import com.yuriykoziy.tetris.ai.AutoPlayer;
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardSnapshot;
+import com.yuriykoziy.tetris.logic.FieldFrame;
+import com.yuriykoziy.tetris.logic.GameLoop;
+import com.yuriykoziy.tetris.panels.BoardPanel;
+import com.yuriykoziy.tetris.sim.Player;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+/**
+ * Streams autoplayer games over loopback TCP connections, one connection per game, and rebuilds
+ * them with {@link StateDecoder}s on receiver threads. Reports bytes per second of game time
+ * for every stream next to sending the whole field every tick, and checks that the rebuilt
+ * boards match the played ones. Games run as fast as possible unless "--view" is given,
+ * which plays them in real time and shows the first stream in a spectator window.
+ * Arguments: streams, game seconds, level, keyframe interval in seconds, "--view".
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class StreamDemo {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+    private static final int TICKS_PER_SECOND = 1000 / Board.TICK_MILLIS;
+
+    /**
+     * Receiving end of one stream.
+     */
+    private static final class Receiver implements Runnable {
+        private final SocketChannel channel;
+        private final StateDecoder decoder;
+        private long bytes;
+        private IOException error;
+
+        Receiver(SocketChannel channel, Runnable listener) {
+            this.channel = channel;
+            decoder = new StateDecoder(listener);
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer in = ByteBuffer.allocate(4096);
+            try {
+                int n;
+                while((n = channel.read(in)) >= 0) {
+                    bytes += n;
+                    in.flip();
+                    decoder.decode(in);
+                    in.compact();
+                }
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+    }
+
+    /**
+     * @param args command line arguments.
+     * @throws Exception if loopback connections fail.
+     */
+    public static void main(String[] args) throws Exception {
+        int streams = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int level = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+        int keyframeSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        boolean view = args.length > 4 && args[4].equals("--view");
+
+        Board[] boards = new Board[streams];
+        Player[] players = new Player[streams];
+        StateEncoder[] encoders = new StateEncoder[streams];
+        SocketChannel[] senders = new SocketChannel[streams];
+        Receiver[] receivers = new Receiver[streams];
+        Thread[] threads = new Thread[streams];
+        try(ServerSocketChannel acceptor = ServerSocketChannel.open()) {
+            acceptor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            for(int i = 0; i < streams; i++) {
+                boards[i] = new Board(WIDTH, HEIGHT, level, i);
+                players[i] = new AutoPlayer(WIDTH, HEIGHT);
+                encoders[i] = new StateEncoder(boards[i], keyframeSeconds * TICKS_PER_SECOND);
+                senders[i] = SocketChannel.open(acceptor.getLocalAddress());
+                SpectatorSignal signal = (view && (i == 0)) ? new SpectatorSignal() : null;
+                receivers[i] = new Receiver(acceptor.accept(), signal);
+                if(signal != null) {
+                    showSpectator(signal, receivers[i].decoder);
+                }
+                threads[i] = new Thread(receivers[i], "stream-receiver-" + i);
+                threads[i].start();
+                boards[i].startGame();
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(encoders[0].getMaxPacketSize());
+        long[] played = new long[streams];
+        long next = System.nanoTime();
+        for(int tick = 0; tick < seconds * TICKS_PER_SECOND; tick++) {
+            for(int i = 0; i < streams; i++) {
+                Board board = boards[i];
+                if(!board.isGameRunning()) {
+                    continue;
+                }
+                board.step(players[i].nextInput(board));
+                played[i]++;
+                out.clear();
+                if(encoders[i].encode(out) > 0) {
+                    out.flip();
+                    while(out.hasRemaining()) {
+                        senders[i].write(out);
+                    }
+                }
+            }
+            if(view) {
+                next += GameLoop.TICK_NANOS;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }
+        for(int i = 0; i < streams; i++) {
+            senders[i].close();
+            threads[i].join();
+        }
+
+        double fullField = WIDTH * HEIGHT * TICKS_PER_SECOND;
+        System.out.printf("level %d, %dx%d board, keyframe every %d s, whole field every tick would be %.0f B/s%n",
+                level, WIDTH, HEIGHT, keyframeSeconds, fullField);
+        for(int i = 0; i < streams; i++) {
+            Receiver r = receivers[i];
+            StateEncoder e = encoders[i];
+            double gameSeconds = (double) played[i] / TICKS_PER_SECOND;
+            System.out.printf("stream %d: %.1f s, %d pieces, %d lines, %d packets (%d keyframes), %d bytes, "
+                    + "%.0f B/s (%.1f%% of whole field), %s%n", i, gameSeconds, boards[i].getPiecesPlaced(),
+                    boards[i].getLinesCleared(), e.getPacketCount(), e.getKeyframeCount(), r.bytes,
+                    r.bytes / gameSeconds, 100 * r.bytes / gameSeconds / fullField,
+                    (r.error != null) ? "receive failed: " + r.error : verify(boards[i], r.decoder));
+        }
+    }
+
+    /**
+     * @return description of the first difference between the board and its rebuilt snapshot.
+     */
+    private static String verify(Board board, StateDecoder decoder) {
+        BoardSnapshot s = decoder.getSnapshot();
+        if((s == null) || !decoder.isSynced() || (decoder.getDesyncCount() > 0)) {
+            return "not in sync, " + decoder.getDesyncCount() + " mismatches";
+        }
+        FieldFrame field = s.getField();
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                if(field.getType(x, y) != board.getField().getType(x, y)) {
+                    return "field differs at " + x + "," + y;
+                }
+            }
+        }
+        boolean same = (s.getScore() == board.getScore()) && (s.getLines() == board.getLinesCleared())
+                && (s.getLevel() == board.getLevel()) && (s.getNextType() == board.getPreviewType(0))
+                && (s.isGameRunning() == board.isGameRunning())
+                && (!s.isGameRunning() || ((s.getPieceType() == board.getCurrentTetromino().getType())
+                        && (s.getPieceRotation() == board.getCurrentTetromino().getRotation())
+                        && (s.getPieceX() == board.getCurrentTetromino().getXposition())
+                        && (s.getPieceY() == board.getCurrentTetromino().getYposition())));
+        return same ? "rebuilt board matches" : "state differs";
+    }
+
+    /**
+     * Render signal of the spectator window, the panel is created on the EDT.
+     */
+    private static final class SpectatorSignal implements Runnable {
+        private volatile BoardPanel panel;
+
+        @Override
+        public void run() {
+            BoardPanel p = panel;
+            if(p != null) {
+                p.snapshotChanged();
+            }
+        }
+    }
+
+    private static void showSpectator(SpectatorSignal signal, StateDecoder decoder) {
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Spectator");
+            BoardPanel panel = new BoardPanel(decoder, WIDTH, HEIGHT);
+            frame.add(panel);
+            frame.pack();
+            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            frame.setVisible(true);
+            signal.panel = panel;
+        });
+    }
+}
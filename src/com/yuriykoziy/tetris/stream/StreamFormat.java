@@ -0,0 +1,84 @@
+package com.yuriykoziy.tetris.stream;
+
+import com.yuriykoziy.tetris.replay.ReplayFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and helpers of the spectator state stream. The stream is a sequence of packets,
+ * one per board step that changed something, varints are those of {@link ReplayFormat}.
+ *
+ * <pre>
+ * packet:   varint body length, body
+ * body:     varint tick delta since the previous packet, ops
+ * op:       byte of opcode (high 3 bits) and argument (low 5 bits), operands follow
+ *   SHIFT     arg dx + 16, falling tetromino moved sideways
+ *   DROP      arg dy (1-31), falling tetromino moved down
+ *   ROTATE    arg rotation
+ *   PIECE     arg type &lt;&lt; 2 | rotation, x, y (zigzag varints), tetromino placed elsewhere
+ *   LOCK      arg type &lt;&lt; 2 | rotation, x, y (zigzag varints), tetromino cells added to the field
+ *   CLEAR     arg mask of rows cleared by the last LOCK, bit i is row (top of the tetromino + i)
+ *   STATS     arg flags SCORE, LINES, LEVEL, then score delta, lines delta, level varints for set flags
+ *   EXT       arg GAME_OVER, KEYFRAME, NEXT + type, SPAWN + type (tetromino of that type at spawn),
+ *             GARBAGE then rows, hole (varints), rows raised from the bottom of the field
+ * keyframe: width, height, ticks, score, lines, level, next, piece type, rotation (varints),
+ *           x, y (zigzag varints), running byte, first stored row, then cells of rows from
+ *           the first stored one to the bottom, two 4 bit block types (0 empty) per byte
+ * </pre>
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class StreamFormat {
+    public static final int OP_SHIFT = 0;
+    public static final int OP_DROP = 1;
+    public static final int OP_ROTATE = 2;
+    public static final int OP_PIECE = 3;
+    public static final int OP_LOCK = 4;
+    public static final int OP_CLEAR = 5;
+    public static final int OP_STATS = 6;
+    public static final int OP_EXT = 7;
+
+    public static final int ARG_BITS = 5;
+    public static final int ARG_MASK = (1 << ARG_BITS) - 1;
+    public static final int SHIFT_BIAS = 16;
+    public static final int MAX_DROP = ARG_MASK;
+
+    public static final int STATS_SCORE = 1;
+    public static final int STATS_LINES = 2;
+    public static final int STATS_LEVEL = 4;
+
+    public static final int EXT_GAME_OVER = 0;
+    public static final int EXT_KEYFRAME = 1;
+    public static final int EXT_GARBAGE = 2;
+    public static final int EXT_NEXT = 8;
+    public static final int EXT_SPAWN = 16;
+
+    private StreamFormat() {
+    }
+
+    /**
+     * @param op  opcode.
+     * @param arg argument (0-31).
+     * @return op byte.
+     */
+    public static byte op(int op, int arg) {
+        return (byte) ((op << ARG_BITS) | arg);
+    }
+
+    /**
+     * @param buf   destination buffer.
+     * @param value signed value, small magnitudes take one byte.
+     */
+    public static void writeZigZag(ByteBuffer buf, int value) {
+        ReplayFormat.writeVarLong(buf, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param buf source buffer.
+     * @return signed value written by {@link #writeZigZag(ByteBuffer, int)}.
+     */
+    public static int readZigZag(ByteBuffer buf) {
+        int value = (int) ReplayFormat.readVarLong(buf);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
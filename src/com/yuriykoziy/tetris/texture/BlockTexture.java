@@ -1,45 +1,112 @@
 package com.yuriykoziy.tetris.texture;
 
-import com.yuriykoziy.tetris.panels.PreviewPanel;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 
 /**
- * Utility class for loading block textures.
- * 
+ * Process-wide cache of block textures.
+ * Block images are decoded once into a single atlas in screen compatible format,
+ * every requested square size gets its own pre-scaled atlas shared by all panels
+ * and blocks are served as sub-images of it. Garbage blocks of versus games are a gray
+ * version of the first block image.
+ *
  * @author Yuriy Koziy
  * @version 1.01
  */
 public class BlockTexture {
     private static final String RESOURCE_PATH = "/com/yuriykoziy/tetris/resources/";
-    private BufferedImage[] blockTextures;
-    
+    private static final int IMAGE_TYPES = 7;
+    private static final int BLOCK_TYPES = IMAGE_TYPES + 1;
+    private static final Map<Integer, BlockTexture> CACHE = new HashMap<>();
+    private static BufferedImage sourceAtlas;
+
+    private final BufferedImage[] blockTextures;
+
+    /**
+     * Constructs BlockTexture objects that stores images for each block type scaled to given size.
+     */
+    private BlockTexture(int squareSize) {
+        BufferedImage atlas = createImage(squareSize * BLOCK_TYPES, squareSize);
+        Graphics2D g = atlas.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(sourceAtlas, 0, 0, atlas.getWidth(), atlas.getHeight(), null);
+        } finally {
+            g.dispose();
+        }
+        blockTextures = new BufferedImage[BLOCK_TYPES];
+        for (int i = 0; i < BLOCK_TYPES; i++) {
+            blockTextures[i] = atlas.getSubimage(i * squareSize, 0, squareSize, squareSize);
+        }
+    }
+
     /**
-     * Constructs BlockTexture objects that stores images for each block type.
-     */    
-    public BlockTexture() {
-        loadBlockTextures();
+     * @param squareSize size of the square block is drawn into.
+     * @return shared textures pre-scaled to given size.
+     */
+    public static synchronized BlockTexture getInstance(int squareSize) {
+        if(sourceAtlas == null) {
+            sourceAtlas = loadBlockTextures();
+        }
+        return CACHE.computeIfAbsent(squareSize, BlockTexture::new);
     }
-    
-    private void loadBlockTextures() {
-        blockTextures = new BufferedImage[7];
-        for (int i = 0; i < 7; i++) {
+
+    private static BufferedImage loadBlockTextures() {
+        BufferedImage[] blocks = new BufferedImage[IMAGE_TYPES];
+        int size = 0;
+        for (int i = 0; i < IMAGE_TYPES; i++) {
             try {
-                blockTextures[i] = ImageIO.read(getClass().getResource(RESOURCE_PATH + i + "_block.png"));
+                blocks[i] = ImageIO.read(BlockTexture.class.getResource(RESOURCE_PATH + i + "_block.png"));
+                size = Math.max(size, blocks[i].getWidth());
             } catch (IOException ex) {
-                Logger.getLogger(PreviewPanel.class.getName()).log(Level.SEVERE, null, ex);
+                Logger.getLogger(BlockTexture.class.getName()).log(Level.SEVERE, null, ex);
             }
-        }        
+        }
+        BufferedImage atlas = createImage(size * BLOCK_TYPES, size);
+        Graphics2D g = atlas.createGraphics();
+        try {
+            for (int i = 0; i < IMAGE_TYPES; i++) {
+                if(blocks[i] != null) {
+                    g.drawImage(blocks[i], i * size, 0, size, size, null);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int argb = atlas.getRGB(x, y);
+                int gray = (((argb >> 16) & 0xFF) * 30 + ((argb >> 8) & 0xFF) * 59 + (argb & 0xFF) * 11) / 100;
+                atlas.setRGB(IMAGE_TYPES * size + x, y, (argb & 0xFF000000) | (gray * 0x010101));
+            }
+        }
+        return atlas;
     }
-    
+
+    private static BufferedImage createImage(int width, int height) {
+        if(!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
     /**
      * @param type block type.
      * @return block Image.
-     */    
+     */
     public Image getBlockTexture(int type) {
         return blockTextures[type - 1];
     }
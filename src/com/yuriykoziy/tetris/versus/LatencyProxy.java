@@ -0,0 +1,393 @@
+package com.yuriykoziy.tetris.versus;
+
+import com.yuriykoziy.tetris.server.HashedWheelTimer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TCP proxy for loopback tests that delays every chunk of bytes by a fixed latency plus uniform
+ * jitter, each direction separately. Bytes are never reordered, a chunk is released no sooner
+ * than the one before it, as on a real TCP connection. Runs on one thread with a {@link Selector}
+ * and a {@link HashedWheelTimer} of millisecond ticks, each direction of a connection waits
+ * in the wheel until its oldest chunk is due. Buffers are direct and have fixed size, a full
+ * buffer stops reading from the sender. Upstream connections are opened without blocking,
+ * a client is not read until its upstream connection is established.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class LatencyProxy implements Runnable {
+    private static final long TICK_NANOS = 1_000_000L;
+    private static final int WHEEL_SIZE = 1024;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_CHUNKS = 32;
+    private static final Logger LOG = Logger.getLogger(LatencyProxy.class.getName());
+
+    private final Selector selector;
+    private final ServerSocketChannel acceptor;
+    private final InetSocketAddress upstream;
+    private final long latencyTicks;
+    private final long jitterTicks;
+    private final SplittableRandom random;
+    private final HashedWheelTimer timer;
+    private volatile int connectionCount;
+    private volatile long byteCount;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * One direction of a proxied connection, bytes read from the source wait in the buffer
+     * until their chunk is due and are then written to the target.
+     */
+    private final class Pipe extends HashedWheelTimer.Timeout {
+        private final SocketChannel source;
+        private final SocketChannel target;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        // ring of chunks: total bytes received at the end of the chunk and the tick it is due at
+        private final long[] chunkEnds = new long[MAX_CHUNKS];
+        private final long[] chunkTicks = new long[MAX_CHUNKS];
+        private int head, chunks;
+        private long received, released, sent;
+        private boolean eof;
+        private Pipe reverse;
+        private SelectionKey key;
+
+        Pipe(SocketChannel source, SocketChannel target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        void read() throws IOException {
+            int n = source.read(buffer);
+            if(n < 0) {
+                eof = true;
+                addChunk();
+            } else if(n > 0) {
+                received += n;
+                addChunk();
+            }
+            updateInterest();
+        }
+
+        @Override
+        protected void expire(long tick) {
+            while((chunks > 0) && (chunkTicks[head] <= tick)) {
+                released = chunkEnds[head];
+                head = (head + 1) % MAX_CHUNKS;
+                chunks--;
+            }
+            try {
+                write();
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Proxied connection closed", ex);
+                close(this);
+                return;
+            }
+            if(chunks > 0) {
+                timer.schedule(this, chunkTicks[head] - tick);
+            }
+        }
+
+        /**
+         * Writes released bytes, closes the connection once the sender has closed and all was sent.
+         */
+        void write() throws IOException {
+            if(sent < released) {
+                int end = buffer.position();
+                buffer.flip();
+                buffer.limit((int) (released - sent));
+                int n = target.write(buffer);
+                buffer.limit(end);
+                buffer.compact();
+                sent += n;
+                byteCount += n;
+            }
+            if(eof && (sent == received) && (chunks == 0)) {
+                close(this);
+                return;
+            }
+            updateInterest();
+            reverse.updateInterest();
+        }
+
+        /**
+         * Chunks are due in order, one that would overtake the previous one waits for it.
+         */
+        private void addChunk() {
+            long tick = timer.getTick();
+            long due = tick + Math.max(0, latencyTicks + random.nextLong(-jitterTicks, jitterTicks + 1));
+            if(chunks > 0) {
+                int last = (head + chunks - 1) % MAX_CHUNKS;
+                if(chunkTicks[last] >= due) {
+                    chunkEnds[last] = received;
+                    return;
+                }
+            }
+            int tail = (head + chunks) % MAX_CHUNKS;
+            chunkEnds[tail] = received;
+            chunkTicks[tail] = due;
+            chunks++;
+            if(!isScheduled()) {
+                timer.schedule(this, chunkTicks[head] - tick);
+            }
+        }
+
+        /**
+         * Source is read while there is room, it is written to while the reverse pipe has released bytes.
+         * Nothing is selected but the connect until the upstream connection is established.
+         */
+        private void updateInterest() {
+            if((key == null) || !key.isValid() || source.isConnectionPending() || target.isConnectionPending()) {
+                return;
+            }
+            int ops = 0;
+            if(!eof && buffer.hasRemaining() && (chunks < MAX_CHUNKS)) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if(reverse.sent < reverse.released) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            if(key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+    }
+
+    /**
+     * Opens the listening socket.
+     *
+     * @param address   address to listen on, port 0 picks a free one.
+     * @param upstream  address every connection is forwarded to.
+     * @param latencyMs one way delay in milliseconds.
+     * @param jitterMs  maximum deviation from the delay in milliseconds.
+     * @param seed      seed of the jitter.
+     * @throws IOException if the socket can not be bound.
+     */
+    public LatencyProxy(InetSocketAddress address, InetSocketAddress upstream, int latencyMs, int jitterMs, long seed)
+            throws IOException {
+        if((latencyMs < 0) || (jitterMs < 0)) {
+            throw new IllegalArgumentException("Invalid delay: " + latencyMs + " +- " + jitterMs + " ms");
+        }
+        this.upstream = upstream;
+        latencyTicks = latencyMs;
+        jitterTicks = jitterMs;
+        random = new SplittableRandom(seed);
+        timer = new HashedWheelTimer(WHEEL_SIZE, TICK_NANOS, System.nanoTime());
+        selector = Selector.open();
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(address, 1024);
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return port the proxy listens on.
+     */
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of proxied connections.
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * @return number of bytes forwarded in both directions.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Starts the proxy thread, does nothing if already running.
+     */
+    public synchronized void start() {
+        if(running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "latency-proxy");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the proxy thread, which closes all connections and the listening socket.
+     */
+    public synchronized void stop() {
+        running = false;
+        selector.wakeup();
+        if(thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(running) {
+                long wait = timer.nanosUntilNextTick(System.nanoTime());
+                if(wait > 0) {
+                    selector.select(Math.max(1, wait / 1_000_000L));
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(key.isValid()) {
+                        handle(key);
+                    }
+                }
+                timer.advance(System.nanoTime());
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Latency proxy failed", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if(key.isAcceptable()) {
+            accept();
+            return;
+        }
+        // the key belongs to the source channel of the pipe and the target channel of its reverse
+        Pipe pipe = (Pipe) key.attachment();
+        try {
+            if(key.isConnectable()) {
+                if(pipe.source.finishConnect()) {
+                    pipe.updateInterest();
+                    pipe.reverse.updateInterest();
+                }
+                return;
+            }
+            if(key.isReadable()) {
+                pipe.read();
+            }
+            if(key.isValid() && key.isWritable()) {
+                pipe.reverse.write();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Proxied connection closed", ex);
+            close(pipe);
+        }
+    }
+
+    /**
+     * Accepts pending connections and starts connecting each to the upstream address,
+     * the pipes are selected for reading once {@link SocketChannel#finishConnect()} succeeds.
+     */
+    private void accept() throws IOException {
+        SocketChannel client;
+        while((client = acceptor.accept()) != null) {
+            SocketChannel server = null;
+            try {
+                server = SocketChannel.open();
+                for(SocketChannel channel : new SocketChannel[] {client, server}) {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                Pipe up = new Pipe(client, server);
+                Pipe down = new Pipe(server, client);
+                up.reverse = down;
+                down.reverse = up;
+                up.key = client.register(selector, 0, up);
+                down.key = server.register(selector, 0, down);
+                if(server.connect(upstream)) {
+                    down.updateInterest();
+                    up.updateInterest();
+                } else {
+                    down.key.interestOps(SelectionKey.OP_CONNECT);
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Upstream connection failed", ex);
+                closeQuietly(client);
+                if(server != null) {
+                    closeQuietly(server);
+                }
+                continue;
+            }
+            connectionCount++;
+        }
+    }
+
+    /**
+     * Closes both sides of the connection of the pipe.
+     */
+    private void close(Pipe pipe) {
+        timer.cancel(pipe);
+        timer.cancel(pipe.reverse);
+        // a failed connect has already closed the upstream channel
+        if(pipe.source.isOpen() || pipe.target.isOpen()) {
+            connectionCount--;
+        }
+        closeQuietly(pipe.source);
+        closeQuietly(pipe.target);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Proxied connection close failed", ex);
+        }
+    }
+
+    private void closeAll() {
+        for(SelectionKey key : selector.keys()) {
+            if(key.attachment() instanceof Pipe) {
+                close((Pipe) key.attachment());
+            }
+        }
+        try {
+            acceptor.close();
+            selector.close();
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Latency proxy close failed", ex);
+        }
+    }
+
+    /**
+     * Runs the proxy until the process is killed.
+     * Arguments: port, upstream port, latency and jitter in milliseconds.
+     *
+     * @param args command line arguments.
+     * @throws IOException          if the socket can not be bound.
+     * @throws InterruptedException if interrupted while proxying.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : VersusProtocol.DEFAULT_PORT + 1;
+        int upstreamPort = args.length > 1 ? Integer.parseInt(args[1]) : VersusProtocol.DEFAULT_PORT;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int jitter = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        LatencyProxy proxy = new LatencyProxy(new InetSocketAddress(loopback, port),
+                new InetSocketAddress(loopback, upstreamPort), latency, jitter, System.nanoTime());
+        System.out.println("Listening on port " + proxy.getPort() + ", forwarding to " + upstreamPort);
+        proxy.start();
+        proxy.thread.join();
+    }
+}
@@ -0,0 +1,155 @@
+package com.yuriykoziy.tetris.versus;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.stream.StateEncoder;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Two boards played against each other, lives on the server thread only.
+ * Both boards get the same tetromino sequence. Lines sent by a clear are handed to the opponent
+ * with a random hole column, the opponent board is caught up to the current tick first, so garbage
+ * never arrives in its past. The match is decided when a board tops out or a player disconnects.
+ * Each board is encoded once per server wakeup and its stream goes to both players.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class Match {
+    // the stream runs over TCP, nothing is lost, so only the first packet is a keyframe
+    private static final int KEYFRAME_TICKS = Integer.MAX_VALUE;
+
+    private final VersusServer server;
+    private final int id;
+    private final VersusSession[] sessions;
+    private final Board[] boards = new Board[2];
+    private final StateEncoder[] encoders = new StateEncoder[2];
+    private final SplittableRandom holes;
+    private final int[] sent = new int[2];
+    private int winner = -1;
+    private boolean decided;
+    private boolean resultSent;
+    private boolean dirty;
+
+    Match(VersusServer server, int id, VersusSession first, VersusSession second, int width, int height,
+            int level, SplittableRandom random, long startTick) {
+        this.server = server;
+        this.id = id;
+        sessions = new VersusSession[] {first, second};
+        long seed = random.nextLong();
+        holes = random.split();
+        for(int i = 0; i < 2; i++) {
+            boards[i] = new Board(width, height, level, seed);
+            encoders[i] = new StateEncoder(boards[i], KEYFRAME_TICKS);
+            boards[i].startGame();
+        }
+        for(int i = 0; i < 2; i++) {
+            sessions[i].join(this, i, startTick);
+        }
+        markDirty();
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Board getBoard(int index) {
+        return boards[index];
+    }
+
+    boolean isDecided() {
+        return decided;
+    }
+
+    /**
+     * @return true once RESULT was written to both players.
+     */
+    boolean isResultSent() {
+        return resultSent;
+    }
+
+    /**
+     * Called after a board has visibly changed: passes garbage to the opponent
+     * and decides the match when a board has ended.
+     *
+     * @param tick current wheel tick.
+     */
+    void changed(long tick) {
+        for(int i = 0; i < 2; i++) {
+            int lines = boards[i].takeOutgoingGarbage();
+            if((lines > 0) && !decided) {
+                sessions[1 - i].catchUp(tick);
+                // catching up may end the opponent's game and decide the match
+                if(decided) {
+                    break;
+                }
+                boards[1 - i].receiveGarbage(lines, holes.nextInt(boards[1 - i].getField().getWidth()));
+                sent[i] += lines;
+                server.addGarbage(lines);
+            }
+        }
+        if(!decided && (!boards[0].isGameRunning() || !boards[1].isGameRunning())) {
+            decide(boards[0].isGameRunning() ? 0 : (boards[1].isGameRunning() ? 1 : -1));
+        }
+        markDirty();
+    }
+
+    /**
+     * The opponent of a disconnected player wins.
+     *
+     * @param index index of the player that left.
+     */
+    void forfeit(int index) {
+        if(!decided) {
+            decide(1 - index);
+            markDirty();
+        }
+    }
+
+    /**
+     * Writes stream packets of changed boards and the result to both players, once per wakeup.
+     */
+    void encode() {
+        if(!dirty) {
+            return;
+        }
+        dirty = false;
+        for(int i = 0; i < 2; i++) {
+            ByteBuffer packet = server.getScratch(encoders[i].getMaxPacketSize());
+            if(encoders[i].encode(packet) == 0) {
+                continue;
+            }
+            packet.flip();
+            for(VersusSession session : sessions) {
+                if(session.getChannel().isOpen()) {
+                    session.writeStream(i, packet);
+                    packet.rewind();
+                }
+            }
+        }
+        if(decided && !resultSent) {
+            resultSent = true;
+            for(VersusSession session : sessions) {
+                if(session.getChannel().isOpen()) {
+                    session.writeResult(winner, sent[0], sent[1]);
+                }
+            }
+        }
+    }
+
+    private void decide(int winner) {
+        this.winner = winner;
+        decided = true;
+        for(VersusSession session : sessions) {
+            server.getTimer().cancel(session);
+        }
+        server.matchFinished();
+    }
+
+    private void markDirty() {
+        dirty = true;
+        for(VersusSession session : sessions) {
+            server.queueFlush(session);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.yuriykoziy.tetris.versus;
+
+import com.yuriykoziy.tetris.ai.BeamSearch;
+import com.yuriykoziy.tetris.ai.Heuristic;
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardSnapshot;
+import com.yuriykoziy.tetris.logic.GameLoop;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.metrics.LatencyHistogram;
+import com.yuriykoziy.tetris.server.HashedWheelTimer;
+import com.yuriykoziy.tetris.stream.StateDecoder;
+import com.yuriykoziy.tetris.stream.StateEncoder;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Load generator of the versus server: keeps the given number of bot players connected on one thread
+ * and opens a new connection for every finished match. A bot rebuilds both boards of its match
+ * from the streams with {@link StateDecoder}s and, after a think delay following each landing,
+ * plans the current tetromino on the rebuilt field with a {@link BeamSearch} shared by all bots
+ * and sends the whole input path at once, so it plays against the server view of its board
+ * as late as the network makes it. Round trip time is measured with a ping every second.
+ * Without a port a server and a {@link LatencyProxy} in front of it are started in this JVM
+ * and their thread CPU time is reported too.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class VersusClient {
+    private static final int PING_TICKS = 1000 / Board.TICK_MILLIS;
+    private static final int MAX_PATH = 32;
+
+    private final InetSocketAddress address;
+    private final int thinkTicks;
+    private final Selector selector;
+    private final HashedWheelTimer timer;
+    private final ByteBuffer send = ByteBuffer.allocateDirect(MAX_PATH * VersusProtocol.INPUT_FRAME_SIZE);
+    private final LatencyHistogram rtt = new LatencyHistogram("pingRoundTrip");
+    private final int[] preview = new int[1];
+    private BeamSearch search;
+    private int open;
+    private long frames, pieces, matches, desyncs;
+
+    /**
+     * Client side of one player.
+     */
+    private final class Bot extends HashedWheelTimer.Timeout {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(64 * VersusProtocol.FRAME_SIZE);
+        private final StateDecoder[] decoders = {new StateDecoder(null), new StateDecoder(null)};
+        private final ByteBuffer[] streams = new ByteBuffer[2];
+        private int index = -1;
+        private int plannedVersion = -1;
+        private long thinkTick = -1;
+        private long pingTick;
+        private int pingSequence;
+        private long pingNanos;
+
+        Bot(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        protected void expire(long tick) {
+            try {
+                if((thinkTick >= 0) && (tick >= thinkTick)) {
+                    thinkTick = -1;
+                    play();
+                }
+                if(tick >= pingTick) {
+                    ping();
+                    pingTick = tick + PING_TICKS;
+                }
+                schedule();
+            } catch (IOException ex) {
+                close(this);
+            }
+        }
+
+        /**
+         * @return false if the match has ended.
+         */
+        boolean read() throws IOException {
+            if(channel.read(in) < 0) {
+                return false;
+            }
+            in.flip();
+            boolean running = true;
+            while(in.remaining() >= VersusProtocol.FRAME_SIZE) {
+                int frame = in.position();
+                frames++;
+                byte player = in.get(frame + 1);
+                switch(in.get(frame)) {
+                    case VersusProtocol.MATCHED: matched(player, in.getShort(frame + 6), in.getShort(frame + 8)); break;
+                    case VersusProtocol.STREAM: stream(player, frame, in.get(frame + 2)); break;
+                    case VersusProtocol.PONG: pong(player); break;
+                    case VersusProtocol.RESULT: running = false; break;
+                    default: throw new IOException("Invalid frame type " + in.get(frame));
+                }
+                in.position(frame + VersusProtocol.FRAME_SIZE);
+            }
+            in.compact();
+            return running;
+        }
+
+        private void matched(int index, int width, int height) {
+            this.index = index;
+            if(search == null) {
+                search = new BeamSearch(width, height, Heuristic.DEFAULT, 0, null);
+            }
+            for(int i = 0; i < 2; i++) {
+                streams[i] = ByteBuffer.allocate(StateEncoder.getMaxPacketSize(width, height)
+                        + VersusProtocol.MAX_CHUNK);
+            }
+        }
+
+        private void stream(int player, int frame, int length) throws IOException {
+            if((player < 0) || (player > 1) || (length > VersusProtocol.MAX_CHUNK) || (streams[player] == null)) {
+                throw new IOException("Invalid stream frame");
+            }
+            ByteBuffer stream = streams[player];
+            stream.put(stream.position(), in, frame + VersusProtocol.STREAM_HEADER, length);
+            stream.position(stream.position() + length);
+            stream.flip();
+            decoders[player].decode(stream);
+            stream.compact();
+            BoardSnapshot s = decoders[player].getSnapshot();
+            // a landing changes the field, think about the next tetromino
+            if((player == index) && (s != null) && s.isGameRunning()
+                    && (s.getField().getVersion() != plannedVersion) && (thinkTick < 0)) {
+                plannedVersion = s.getField().getVersion();
+                thinkTick = timer.getTick() + thinkTicks;
+                schedule();
+            }
+        }
+
+        private void pong(byte sequence) {
+            if((pingNanos != 0) && (sequence == (byte) pingSequence)) {
+                rtt.record(System.nanoTime() - pingNanos);
+                pingNanos = 0;
+            }
+        }
+
+        private void ping() throws IOException {
+            send.clear();
+            VersusProtocol.writePing(send, ++pingSequence);
+            send.flip();
+            if(channel.write(send) > 0) {
+                pingNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * Sends the input path to the best placement of the tetromino as rebuilt from the stream.
+         */
+        private void play() throws IOException {
+            BoardSnapshot s = decoders[index].getSnapshot();
+            if((s == null) || !s.isGameRunning()) {
+                return;
+            }
+            plannedVersion = s.getField().getVersion();
+            preview[0] = s.getNextType();
+            int best = search.search(s.getField(), s.getPieceType(), s.getPieceRotation(), s.getPieceX(),
+                    s.getPieceY(), preview, 0);
+            Input[] path = (best >= 0) ? search.getPlacements().getPath(best) : new Input[] {Input.HARD_DROP};
+            send.clear();
+            for(int i = Math.max(0, path.length - MAX_PATH); i < path.length; i++) {
+                VersusProtocol.writeInput(send, path[i]);
+            }
+            send.flip();
+            channel.write(send);
+            pieces++;
+        }
+
+        private void schedule() {
+            long next = (thinkTick >= 0) ? Math.min(thinkTick, pingTick) : pingTick;
+            timer.schedule(this, next - timer.getTick());
+        }
+
+        /**
+         * Collects statistics of the finished match.
+         */
+        private void finish() {
+            for(StateDecoder decoder : decoders) {
+                desyncs += decoder.getDesyncCount();
+            }
+        }
+    }
+
+    /**
+     * @param address     server address.
+     * @param thinkMillis delay between a landing and sending the inputs for the next tetromino.
+     * @throws IOException if the selector can not be opened.
+     */
+    public VersusClient(InetSocketAddress address, int thinkMillis) throws IOException {
+        this.address = address;
+        thinkTicks = Math.max(1, thinkMillis / Board.TICK_MILLIS);
+        selector = Selector.open();
+        timer = new HashedWheelTimer(1024, GameLoop.TICK_NANOS, System.nanoTime());
+    }
+
+    /**
+     * Opens connections until the given number is open.
+     *
+     * @param players target number of players.
+     * @throws IOException if a connection fails.
+     */
+    public void connect(int players) throws IOException {
+        while(open < players) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Bot bot = new Bot(channel);
+            channel.register(selector, SelectionKey.OP_READ, bot);
+            bot.pingTick = timer.getTick() + PING_TICKS;
+            bot.schedule();
+            open++;
+        }
+    }
+
+    /**
+     * Runs the client for the given time, keeping the number of players.
+     *
+     * @param players number of players.
+     * @param nanos   run time.
+     * @param report  invoked about once per second.
+     * @throws IOException if a connection fails.
+     */
+    public void run(int players, long nanos, Runnable report) throws IOException {
+        long end = System.nanoTime() + nanos;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        while(System.nanoTime() < end) {
+            selector.select(1);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Bot bot = (Bot) key.attachment();
+                try {
+                    if(key.isValid() && key.isReadable() && !bot.read()) {
+                        matches++;
+                        close(bot);
+                    }
+                } catch (IOException ex) {
+                    close(bot);
+                }
+            }
+            timer.advance(System.nanoTime());
+            connect(players);
+            if(System.nanoTime() >= nextReport) {
+                report.run();
+                nextReport += 1_000_000_000L;
+            }
+        }
+    }
+
+    private void close(Bot bot) {
+        timer.cancel(bot);
+        bot.finish();
+        try {
+            bot.channel.close();
+        } catch (IOException ex) {
+            // already closed
+        }
+        open--;
+    }
+
+    /**
+     * Arguments: matches, seconds, one way latency and jitter of the proxy in milliseconds,
+     * think delay in milliseconds, level, server or proxy port (a server and a proxy are started
+     * in this JVM when it is missing).
+     *
+     * @param args command line arguments.
+     * @throws IOException if the server can not be reached.
+     */
+    public static void main(String[] args) throws IOException {
+        int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int jitter = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int think = args.length > 4 ? Integer.parseInt(args[4]) : 300;
+        int level = args.length > 5 ? Integer.parseInt(args[5]) : 7;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        VersusServer server = null;
+        LatencyProxy proxy = null;
+        int port;
+        if(args.length > 6) {
+            port = Integer.parseInt(args[6]);
+        } else {
+            server = new VersusServer(new InetSocketAddress(loopback, 0), matchCount, 10, 20, level, 0);
+            server.start();
+            proxy = new LatencyProxy(new InetSocketAddress(loopback, 0),
+                    new InetSocketAddress(loopback, server.getPort()), latency, jitter, 0);
+            proxy.start();
+            port = proxy.getPort();
+        }
+
+        int players = 2 * matchCount;
+        VersusClient client = new VersusClient(new InetSocketAddress(loopback, port), think);
+        long start = System.nanoTime();
+        client.connect(players);
+        System.out.printf("%d players connected in %d ms%n", players, (System.nanoTime() - start) / 1_000_000);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long serverThread = -1, proxyThread = -1;
+        for(Thread t : Thread.getAllStackTraces().keySet()) {
+            if(t.getName().equals("versus-server")) {
+                serverThread = t.getId();
+            } else if(t.getName().equals("latency-proxy")) {
+                proxyThread = t.getId();
+            }
+        }
+        long[] last = {System.nanoTime(), 0, 0, cpu(threads, serverThread), cpu(threads, proxyThread)};
+        VersusServer embedded = server;
+        long serverCpu = serverThread, proxyCpu = proxyThread;
+        client.run(players, seconds * 1_000_000_000L, () -> {
+            long now = System.nanoTime();
+            double elapsed = (now - last[0]) / 1e9;
+            StringBuilder line = new StringBuilder(String.format("players %d, frames/s %.0f, pieces/s %.0f, "
+                    + "finished %d, desyncs %d, rtt p50 %.1f ms p99 %.1f ms", client.open,
+                    (client.frames - last[1]) / elapsed, (client.pieces - last[2]) / elapsed, client.matches / 2,
+                    client.desyncs, client.rtt.getP50Nanos() / 1e6, client.rtt.getP99Nanos() / 1e6));
+            if(embedded != null) {
+                long s = cpu(threads, serverCpu);
+                long p = cpu(threads, proxyCpu);
+                line.append(String.format(", server matches %d, garbage lines %d, server cpu %.1f%%, proxy cpu %.1f%%",
+                        embedded.getMatchCount(), embedded.getGarbageLines(),
+                        100.0 * (s - last[3]) / (now - last[0]), 100.0 * (p - last[4]) / (now - last[0])));
+                last[3] = s;
+                last[4] = p;
+            }
+            System.out.println(line);
+            last[0] = now;
+            last[1] = client.frames;
+            last[2] = client.pieces;
+            client.rtt.reset();
+        });
+        if(server != null) {
+            System.out.printf("%d matches finished on the server, %d garbage lines sent, %d bytes through the proxy%n",
+                    server.getFinishedMatches(), server.getGarbageLines(), proxy.getByteCount());
+            proxy.stop();
+            server.stop();
+        }
+    }
+
+    private static long cpu(ThreadMXBean threads, long thread) {
+        return (thread < 0) ? 0 : threads.getThreadCpuTime(thread);
+    }
+}
@@ -0,0 +1,152 @@
+package com.yuriykoziy.tetris.versus;
+
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.stream.StreamFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encoders of the versus protocol. Frames have fixed size, multi-byte values
+ * are big endian. Both boards of a match are sent to both players as spectator streams
+ * of {@link StreamFormat}, cut into STREAM frames.
+ *
+ * <pre>
+ * client to server, 2 bytes:
+ *   INPUT    opcode, input ordinal
+ *   PING     opcode, sequence number echoed by PONG
+ * server to client, 32 bytes:
+ *   MATCHED  type, player index, match id (int), width, height (shorts), level byte, padding
+ *   STREAM   type, player index of the board, length, up to 29 bytes of its stream
+ *   PONG     type, sequence number, padding
+ *   RESULT   type, winner index (-1 none), lines sent by player 0 and 1 (ints), padding,
+ *            sent once as the last frame of the match
+ * </pre>
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public final class VersusProtocol {
+    public static final int DEFAULT_PORT = 7532;
+    public static final int INPUT_FRAME_SIZE = 2;
+    public static final int FRAME_SIZE = 32;
+    public static final int STREAM_HEADER = 3;
+    public static final int MAX_CHUNK = FRAME_SIZE - STREAM_HEADER;
+
+    public static final byte OP_INPUT = 1;
+    public static final byte OP_PING = 2;
+
+    public static final byte MATCHED = 1;
+    public static final byte STREAM = 2;
+    public static final byte PONG = 3;
+    public static final byte RESULT = 4;
+
+    private static final Input[] INPUTS = Input.values();
+
+    private VersusProtocol() {
+    }
+
+    /**
+     * @param buf   destination buffer.
+     * @param input player input.
+     */
+    public static void writeInput(ByteBuffer buf, Input input) {
+        buf.put(OP_INPUT);
+        buf.put((byte) input.ordinal());
+    }
+
+    /**
+     * @param arg argument of an INPUT frame.
+     * @return decoded input or null if the argument is not a valid input.
+     */
+    public static Input toInput(byte arg) {
+        return ((arg >= 0) && (arg < INPUTS.length)) ? INPUTS[arg] : null;
+    }
+
+    /**
+     * @param buf      destination buffer.
+     * @param sequence sequence number.
+     */
+    public static void writePing(ByteBuffer buf, int sequence) {
+        buf.put(OP_PING);
+        buf.put((byte) sequence);
+    }
+
+    /**
+     * @param bytes stream bytes.
+     * @return number of STREAM frames carrying them.
+     */
+    public static int getStreamFrames(int bytes) {
+        return (bytes + MAX_CHUNK - 1) / MAX_CHUNK;
+    }
+
+    /**
+     * @param buf    destination buffer, needs {@link #FRAME_SIZE} bytes remaining.
+     * @param player player index.
+     * @param match  match id.
+     * @param width  board width.
+     * @param height board height.
+     * @param level  initial level.
+     */
+    public static void writeMatched(ByteBuffer buf, int player, int match, int width, int height, int level) {
+        int start = buf.position();
+        buf.put(MATCHED);
+        buf.put((byte) player);
+        buf.putInt(match);
+        buf.putShort((short) width);
+        buf.putShort((short) height);
+        buf.put((byte) level);
+        pad(buf, start);
+    }
+
+    /**
+     * Cuts stream bytes into STREAM frames.
+     *
+     * @param buf    destination buffer, needs {@link #getStreamFrames(int)} frames remaining.
+     * @param player player index of the board.
+     * @param stream stream bytes in read mode, consumed.
+     */
+    public static void writeStream(ByteBuffer buf, int player, ByteBuffer stream) {
+        while(stream.hasRemaining()) {
+            int start = buf.position();
+            int length = Math.min(stream.remaining(), MAX_CHUNK);
+            buf.put(STREAM);
+            buf.put((byte) player);
+            buf.put((byte) length);
+            buf.put(buf.position(), stream, stream.position(), length);
+            buf.position(buf.position() + length);
+            stream.position(stream.position() + length);
+            pad(buf, start);
+        }
+    }
+
+    /**
+     * @param buf      destination buffer, needs {@link #FRAME_SIZE} bytes remaining.
+     * @param sequence sequence number of the ping.
+     */
+    public static void writePong(ByteBuffer buf, byte sequence) {
+        int start = buf.position();
+        buf.put(PONG);
+        buf.put(sequence);
+        pad(buf, start);
+    }
+
+    /**
+     * @param buf    destination buffer, needs {@link #FRAME_SIZE} bytes remaining.
+     * @param winner index of the winner, -1 if there is none.
+     * @param sent0  garbage lines sent by player 0.
+     * @param sent1  garbage lines sent by player 1.
+     */
+    public static void writeResult(ByteBuffer buf, int winner, int sent0, int sent1) {
+        int start = buf.position();
+        buf.put(RESULT);
+        buf.put((byte) winner);
+        buf.putInt(sent0);
+        buf.putInt(sent1);
+        pad(buf, start);
+    }
+
+    private static void pad(ByteBuffer buf, int start) {
+        while(buf.position() < start + FRAME_SIZE) {
+            buf.put((byte) 0);
+        }
+    }
+}
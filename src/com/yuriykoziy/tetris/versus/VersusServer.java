@@ -0,0 +1,350 @@
+package com.yuriykoziy.tetris.versus;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.GameLoop;
+import com.yuriykoziy.tetris.server.HashedWheelTimer;
+import com.yuriykoziy.tetris.stream.StateEncoder;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts two player versus matches on a single thread. Connections are paired in the order they
+ * arrive, sockets are multiplexed by a {@link Selector} and all boards share one
+ * {@link HashedWheelTimer} with ticks of {@link Board#TICK_MILLIS}. A player gets MATCHED,
+ * then the streams of both boards and RESULT before the server closes the connection,
+ * see {@link VersusProtocol}. Memory per player is a small board, its encoder and two fixed
+ * direct buffers, the number of matches is capped.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+public class VersusServer implements Runnable {
+    private static final int WHEEL_SIZE = 512;
+    // frames a player may fall behind by, on top of the two keyframes starting a match
+    private static final int SLACK_FRAMES = 32;
+    private static final Logger LOG = Logger.getLogger(VersusServer.class.getName());
+
+    private final Selector selector;
+    private final ServerSocketChannel acceptor;
+    private final HashedWheelTimer timer;
+    private final int maxMatches;
+    private final int width;
+    private final int height;
+    private final int level;
+    private final int outputFrames;
+    private final SplittableRandom random;
+    // sessions changed since the last flush, each at most once
+    private final ArrayList<VersusSession> flushQueue = new ArrayList<>();
+    private ByteBuffer scratch;
+    private VersusSession waiting;
+    private int nextId;
+    private int nextMatchId;
+    private volatile int connectionCount;
+    private volatile int matchCount;
+    private volatile long finishedMatches;
+    private volatile long garbageLines;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Opens the listening socket.
+     *
+     * @param address    address to listen on, port 0 picks a free one.
+     * @param maxMatches maximum number of concurrent matches, connections above it are refused.
+     * @param width      board width.
+     * @param height     board height.
+     * @param level      initial level.
+     * @param seed       seed of tetromino sequences and garbage holes.
+     * @throws IOException if the socket can not be bound.
+     */
+    public VersusServer(InetSocketAddress address, int maxMatches, int width, int height, int level, long seed)
+            throws IOException {
+        if(maxMatches < 1) {
+            throw new IllegalArgumentException("Invalid match limit: " + maxMatches);
+        }
+        this.maxMatches = maxMatches;
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        random = new SplittableRandom(seed);
+        int maxPacket = StateEncoder.getMaxPacketSize(width, height);
+        outputFrames = 2 * VersusProtocol.getStreamFrames(maxPacket) + SLACK_FRAMES;
+        scratch = ByteBuffer.allocate(maxPacket);
+        timer = new HashedWheelTimer(WHEEL_SIZE, GameLoop.TICK_NANOS, System.nanoTime());
+        selector = Selector.open();
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(address, 2 * maxMatches);
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return port the server listens on.
+     */
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of open connections, playing or waiting for an opponent.
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * @return number of matches being played.
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return number of decided matches.
+     */
+    public long getFinishedMatches() {
+        return finishedMatches;
+    }
+
+    /**
+     * @return garbage lines sent in all matches.
+     */
+    public long getGarbageLines() {
+        return garbageLines;
+    }
+
+    /**
+     * Starts the server thread, does nothing if already running.
+     */
+    public synchronized void start() {
+        if(running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "versus-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the server thread, which closes all connections and the listening socket.
+     */
+    public synchronized void stop() {
+        running = false;
+        selector.wakeup();
+        if(thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    void queueFlush(VersusSession session) {
+        if(!session.isQueued()) {
+            session.setQueued(true);
+            flushQueue.add(session);
+        }
+    }
+
+    /**
+     * @return cleared buffer shared by all matches for encoding one packet.
+     */
+    ByteBuffer getScratch(int capacity) {
+        if(scratch.capacity() < capacity) {
+            scratch = ByteBuffer.allocate(capacity);
+        }
+        scratch.clear();
+        return scratch;
+    }
+
+    void addGarbage(int lines) {
+        garbageLines += lines;
+    }
+
+    void matchFinished() {
+        matchCount--;
+        finishedMatches++;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(running) {
+                long wait = timer.nanosUntilNextTick(System.nanoTime());
+                if(wait > 0) {
+                    selector.select(Math.max(1, wait / 1_000_000L));
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(key.isValid()) {
+                        handle(key);
+                    }
+                }
+                timer.advance(System.nanoTime());
+                flushAll();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Versus server failed", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if(key.isAcceptable()) {
+            accept();
+            return;
+        }
+        VersusSession session = (VersusSession) key.attachment();
+        try {
+            if(key.isReadable() && !session.read(timer.getTick())) {
+                close(session);
+                return;
+            }
+            if(key.isValid() && key.isWritable()) {
+                queueFlush(session);
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Session " + session.getId() + " closed", ex);
+            close(session);
+        }
+    }
+
+    /**
+     * Accepts pending connections. A connection that fails to set up is closed and skipped,
+     * only a failure of the listening socket is thrown.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while((channel = acceptor.accept()) != null) {
+            VersusSession session;
+            try {
+                if(connectionCount >= 2 * maxMatches) {
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                session = new VersusSession(this, nextId++, channel, outputFrames);
+                session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Connection setup failed", ex);
+                closeQuietly(channel);
+                continue;
+            }
+            connectionCount++;
+            if(waiting == null) {
+                waiting = session;
+                continue;
+            }
+            matchCount++;
+            new Match(this, nextMatchId++, waiting, session, width, height, level, random, timer.getTick());
+            waiting = null;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Connection close failed", ex);
+        }
+    }
+
+    private void flushAll() {
+        for(int i = 0; i < flushQueue.size(); i++) {
+            VersusSession session = flushQueue.get(i);
+            session.setQueued(false);
+            if(!session.getChannel().isOpen()) {
+                continue;
+            }
+            try {
+                session.flush();
+                if(session.isFinished()) {
+                    close(session);
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Session " + session.getId() + " closed", ex);
+                close(session);
+            }
+        }
+        flushQueue.clear();
+    }
+
+    private void close(VersusSession session) {
+        timer.cancel(session);
+        if(waiting == session) {
+            waiting = null;
+        }
+        if(session.getChannel().isOpen()) {
+            connectionCount--;
+            try {
+                session.getChannel().close();
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Session " + session.getId() + " close failed", ex);
+            }
+        }
+        if(session.getMatch() != null) {
+            session.getMatch().forfeit(session.getIndex());
+        }
+    }
+
+    private void closeAll() {
+        for(SelectionKey key : selector.keys()) {
+            if(key.attachment() instanceof VersusSession) {
+                close((VersusSession) key.attachment());
+            }
+        }
+        try {
+            acceptor.close();
+            selector.close();
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Versus server close failed", ex);
+        }
+    }
+
+    /**
+     * Runs the server until the process is killed.
+     * Arguments: port, match limit, level, board width and height.
+     *
+     * @param args command line arguments.
+     * @throws IOException          if the socket can not be bound.
+     * @throws InterruptedException if interrupted while serving.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : VersusProtocol.DEFAULT_PORT;
+        int maxMatches = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int level = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+        VersusServer server = new VersusServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                maxMatches, width, height, level, System.nanoTime());
+        System.out.println("Listening on port " + server.getPort());
+        server.start();
+        server.thread.join();
+    }
+}
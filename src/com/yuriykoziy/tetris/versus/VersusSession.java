@@ -0,0 +1,234 @@
+package com.yuriykoziy.tetris.versus;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.server.HashedWheelTimer;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One connection of the versus server, waiting for an opponent or playing one board of a {@link Match}.
+ * Lives on the server thread only. Like a game server session the board is caught up to the wheel
+ * tick before each gravity expiry and each input instead of being ticked every {@link Board#TICK_MILLIS}.
+ * Buffers are direct and have fixed size, a client that does not read its frames fast enough
+ * overflows the output buffer and loses the match.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+final class VersusSession extends HashedWheelTimer.Timeout {
+    private static final int FRAMES_PER_READ = 16;
+
+    private final VersusServer server;
+    private final int id;
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(FRAMES_PER_READ * VersusProtocol.INPUT_FRAME_SIZE);
+    private final ByteBuffer out;
+    private SelectionKey key;
+    private Match match;
+    private int index;
+    private Board board;
+    private long startTick;
+    private boolean queued;
+    private boolean overflow;
+
+    VersusSession(VersusServer server, int id, SocketChannel channel, int outputFrames) {
+        this.server = server;
+        this.id = id;
+        this.channel = channel;
+        out = ByteBuffer.allocateDirect(outputFrames * VersusProtocol.FRAME_SIZE);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    Match getMatch() {
+        return match;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * @return true if the session is in the server queue of sessions to flush.
+     */
+    boolean isQueued() {
+        return queued;
+    }
+
+    void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    /**
+     * @return true if the match has ended and the result was sent.
+     */
+    boolean isFinished() {
+        return (match != null) && match.isResultSent() && (out.position() == 0);
+    }
+
+    /**
+     * Starts playing a board of the match, its gravity is counted from the given tick.
+     */
+    void join(Match match, int index, long startTick) {
+        this.match = match;
+        this.index = index;
+        this.startTick = startTick;
+        board = match.getBoard(index);
+        if(reserve(1)) {
+            VersusProtocol.writeMatched(out, index, match.getId(), board.getField().getWidth(),
+                    board.getField().getHeight(), board.getLevel());
+        }
+        scheduleGravity();
+    }
+
+    @Override
+    protected void expire(long tick) {
+        catchUp(tick);
+        scheduleGravity();
+    }
+
+    /**
+     * Reads and applies available inputs, answers pings.
+     *
+     * @param tick current wheel tick.
+     * @return false if the peer has closed the connection.
+     * @throws IOException on socket error or malformed frame.
+     */
+    boolean read(long tick) throws IOException {
+        int n = channel.read(in);
+        if(n < 0) {
+            return false;
+        }
+        in.flip();
+        catchUp(tick);
+        boolean moved = false;
+        while(in.remaining() >= VersusProtocol.INPUT_FRAME_SIZE) {
+            byte opcode = in.get();
+            byte arg = in.get();
+            if(opcode == VersusProtocol.OP_PING) {
+                if(reserve(1)) {
+                    VersusProtocol.writePong(out, arg);
+                }
+                server.queueFlush(this);
+                continue;
+            }
+            Input input = (opcode == VersusProtocol.OP_INPUT) ? VersusProtocol.toInput(arg) : null;
+            if(input == null) {
+                throw new ProtocolException("Invalid frame " + opcode + "/" + arg + " in session " + id);
+            }
+            // inputs before the match starts or after it ends are dropped
+            if(isPlaying()) {
+                moved |= board.apply(input);
+            }
+        }
+        in.compact();
+        if(moved) {
+            match.changed(tick);
+        }
+        scheduleGravity();
+        return true;
+    }
+
+    /**
+     * Appends stream bytes of a board as STREAM frames.
+     *
+     * @param player index of the board.
+     * @param stream stream bytes in read mode.
+     */
+    void writeStream(int player, ByteBuffer stream) {
+        if(reserve(VersusProtocol.getStreamFrames(stream.remaining()))) {
+            VersusProtocol.writeStream(out, player, stream);
+        }
+    }
+
+    void writeResult(int winner, int sent0, int sent1) {
+        if(reserve(1)) {
+            VersusProtocol.writeResult(out, winner, sent0, sent1);
+        }
+    }
+
+    /**
+     * Writes pending frames, interest in OP_WRITE is set while the socket buffer is full.
+     *
+     * @throws IOException on socket error or when the output buffer has overflowed.
+     */
+    void flush() throws IOException {
+        if(match != null) {
+            match.encode();
+        }
+        if(overflow) {
+            throw new IOException("Output buffer overflow in session " + id);
+        }
+        if(out.position() == 0) {
+            setWriteInterest(false);
+            return;
+        }
+        out.flip();
+        channel.write(out);
+        out.compact();
+        setWriteInterest(out.position() > 0);
+    }
+
+    /**
+     * Advances the board to the wheel tick.
+     */
+    void catchUp(long tick) {
+        if(!isPlaying()) {
+            return;
+        }
+        long target = tick - startTick;
+        boolean moved = false;
+        while(board.isGameRunning() && (board.getTicks() < target)) {
+            moved |= board.tick();
+        }
+        if(moved) {
+            match.changed(tick);
+        }
+    }
+
+    private boolean isPlaying() {
+        return (match != null) && !match.isDecided() && board.isGameRunning();
+    }
+
+    private void scheduleGravity() {
+        if(isPlaying()) {
+            server.getTimer().schedule(this, board.getTicksUntilGravity());
+        } else {
+            server.getTimer().cancel(this);
+        }
+    }
+
+    /**
+     * @return false and marks the session overflowed if the frames do not fit.
+     */
+    private boolean reserve(int frames) {
+        if(out.remaining() < frames * VersusProtocol.FRAME_SIZE) {
+            overflow = true;
+            return false;
+        }
+        return true;
+    }
+
+    private void setWriteInterest(boolean write) {
+        if((key != null) && key.isValid()) {
+            int ops = write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if(key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.yuriykoziy.tetris.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Field;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares {@link PlacementFinder} with a naive breadth first search over (rotation, x, y) states
+ * on random fields. Placements are compared as sets of occupied cells, so rotations with the
+ * same shape count once, and every path is replayed to check it ends at its placement.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class PlacementFinderTest {
+    private static final int HEIGHT = 20;
+
+    @Test
+    void oneWordFieldsMatchNaiveSearch() {
+        SplittableRandom random = new SplittableRandom(1);
+        for(int width : new int[] {4, 5, 10, 17, 33, 61}) {
+            compare(width, 100, random);
+        }
+        for(int i = 0; i < 500; i++) {
+            compare(4 + random.nextInt(58), 1, random);
+        }
+    }
+
+    @Test
+    void wideFieldsMatchNaiveSearch() {
+        // columns of the bit parallel flood do not fit one word, the breadth first search is used
+        SplittableRandom random = new SplittableRandom(2);
+        for(int width : new int[] {62, 64, 65, 100, 130}) {
+            compare(width, 30, random);
+        }
+    }
+
+    private static void compare(int width, int fields, SplittableRandom random) {
+        PlacementFinder finder = new PlacementFinder(width, HEIGHT);
+        for(int f = 0; f < fields; f++) {
+            Field field = randomField(width, random);
+            for(int type = 0; type < Tetromino.TYPES; type++) {
+                // starting away from the spawn column, a wide field needs moves across most of its width
+                int x = (f % 2 == 0) ? Board.getSpawnX(width) : random.nextInt(width - 1);
+                int y = Board.SPAWN_Y + random.nextInt(3);
+                int rotation = random.nextInt(Tetromino.ROTATIONS);
+                Set<List<Integer>> expected = naivePlacements(field, type, rotation, x, y);
+                int count = finder.find(field, type, rotation, x, y);
+
+                Set<List<Integer>> found = new HashSet<>();
+                for(int i = 0; i < count; i++) {
+                    int r = finder.getRotation(i);
+                    int px = finder.getX(i);
+                    int py = finder.getY(i);
+                    assertFalse(Board.isColliding(field, type, r, px, py));
+                    assertTrue(Board.isColliding(field, type, r, px, py + 1), "placement does not land");
+                    assertTrue(found.add(cells(type, r, px, py)), "placement found twice");
+                    assertEquals(Arrays.asList(r, px, py), replay(field, type, rotation, x, y, finder.getPath(i)));
+                }
+                assertEquals(expected, found, "width " + width + ", type " + type);
+            }
+        }
+    }
+
+    /**
+     * Fills rows below a random surface with random cells, leaving overhangs to tuck under.
+     */
+    private static Field randomField(int width, SplittableRandom random) {
+        Field field = new Field(width, HEIGHT);
+        int surface = 2 + random.nextInt(HEIGHT - 2);
+        double density = 0.2 + 0.6 * random.nextDouble();
+        for(int y = surface; y < HEIGHT; y++) {
+            for(int x = 0; x < width; x++) {
+                if(random.nextDouble() < density) {
+                    field.setBlock(x, y, 1);
+                }
+            }
+        }
+        return field;
+    }
+
+    private static Set<List<Integer>> naivePlacements(Field field, int type, int rotation, int x, int y) {
+        Set<List<Integer>> placements = new HashSet<>();
+        if(Board.isColliding(field, type, rotation, x, y)) {
+            return placements;
+        }
+        Set<List<Integer>> visited = new HashSet<>();
+        ArrayDeque<List<Integer>> queue = new ArrayDeque<>();
+        List<Integer> start = Arrays.asList(rotation, x, y);
+        visited.add(start);
+        queue.add(start);
+        while(!queue.isEmpty()) {
+            List<Integer> s = queue.poll();
+            int r = s.get(0);
+            int sx = s.get(1);
+            int sy = s.get(2);
+            List<List<Integer>> next = Arrays.asList(Arrays.asList(r, sx - 1, sy), Arrays.asList(r, sx + 1, sy),
+                    Arrays.asList(Tetromino.nextRotation(r), sx, sy), Arrays.asList(r, sx, sy + 1));
+            for(List<Integer> n : next) {
+                if(!Board.isColliding(field, type, n.get(0), n.get(1), n.get(2)) && visited.add(n)) {
+                    queue.add(n);
+                }
+            }
+            if(Board.isColliding(field, type, r, sx, sy + 1)) {
+                placements.add(cells(type, r, sx, sy));
+            }
+        }
+        return placements;
+    }
+
+    /**
+     * Applies the path with the moves of the Board and returns the final rotation and position.
+     */
+    private static List<Integer> replay(Field field, int type, int r, int x, int y, Input[] path) {
+        assertEquals(Input.HARD_DROP, path[path.length - 1]);
+        for(int i = 0; i < path.length - 1; i++) {
+            int nr = r;
+            int nx = x;
+            int ny = y;
+            switch(path[i]) {
+                case LEFT: nx--; break;
+                case RIGHT: nx++; break;
+                case ROTATE: nr = Tetromino.nextRotation(r); break;
+                case SOFT_DROP: ny++; break;
+                default: throw new AssertionError("Unexpected input " + path[i]);
+            }
+            assertFalse(Board.isColliding(field, type, nr, nx, ny), "path goes through a block");
+            r = nr;
+            x = nx;
+            y = ny;
+        }
+        return Arrays.asList(r, x, y);
+    }
+
+    /**
+     * @return sorted cell indexes covered by the tetromino.
+     */
+    private static List<Integer> cells(int type, int rotation, int x, int y) {
+        Integer[] cells = new Integer[Tetromino.CELLS];
+        for(int c = 0; c < Tetromino.CELLS; c++) {
+            int cx = x + Tetromino.getCellX(type, rotation, c);
+            int cy = y + Tetromino.getCellY(type, rotation, c);
+            cells[c] = cy * 1024 + cx;
+        }
+        Arrays.sort(cells);
+        return Arrays.asList(cells);
+    }
+}
@@ -0,0 +1,52 @@
+package com.yuriykoziy.tetris.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.yuriykoziy.tetris.piece.Tetromino;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that moving and rotating the falling tetromino does not allocate once warmed up.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class BoardAllocationTest {
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    void tryMoveAndTryRotateDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+        Board board = new Board(10, 20, 0, 1);
+        board.startGame();
+
+        moves(board, WARMUP);
+        // reading the counter may allocate itself, measure that first
+        long before = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - before;
+        before = threads.getThreadAllocatedBytes(thread);
+        int moved = moves(board, ITERATIONS);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        assertEquals(0, allocated, "bytes allocated by " + ITERATIONS + " iterations (" + moved + " moves)");
+    }
+
+    /**
+     * Shifts the tetromino left and right and rotates it, it never lands.
+     */
+    private static int moves(Board board, int iterations) {
+        int moved = 0;
+        for(int i = 0; i < iterations; i++) {
+            moved += board.tryMove(-1, 0) ? 1 : 0;
+            moved += board.tryMove(1, 0) ? 1 : 0;
+            int rotation = Tetromino.nextRotation(board.getCurrentTetromino().getRotation());
+            moved += board.tryRotate(rotation) ? 1 : 0;
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,50 @@
+package com.yuriykoziy.tetris.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Restarts a {@link GameLoop} the way Swing does when a panel is re-parented and checks
+ * that only one thread keeps ticking the board.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class GameLoopTest {
+    private static final long MEASURE_MILLIS = 1_000;
+
+    @Test
+    void restartedLoopTicksAtTheTickRate() throws InterruptedException {
+        Board board = new Board(10, 20, 0, 1);
+        board.startGame();
+        GameLoop loop = new GameLoop(board, () -> { });
+        loop.start();
+        Thread.sleep(100);
+        loop.stop();
+        loop.start();
+        Thread.sleep(200);
+
+        assertEquals(1, countLoopThreads(), "live game loop threads");
+        long before = ticks(board);
+        Thread.sleep(MEASURE_MILLIS);
+        long ticked = ticks(board) - before;
+        loop.stop();
+
+        long expected = MEASURE_MILLIS / Board.TICK_MILLIS;
+        assertTrue(ticked <= expected * 3 / 2, ticked + " ticks in " + MEASURE_MILLIS + " ms");
+        assertTrue(ticked >= expected / 2, ticked + " ticks in " + MEASURE_MILLIS + " ms");
+    }
+
+    private static long ticks(Board board) {
+        synchronized(board) {
+            return board.getTicks();
+        }
+    }
+
+    private static long countLoopThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().equals("game-loop")).count();
+    }
+}
@@ -0,0 +1,123 @@
+package com.yuriykoziy.tetris.logic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares {@link RowKernels} implementations with a reference reading one cell at a time
+ * on random rows. Tall fields hold more words than the byte counters of the vector kernels
+ * take before a flush.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class RowKernelsTest {
+    private static final int[] WIDTHS = {1, 10, 63, 64, 65, 127, 128, 200, 256, 300, 512, 520};
+    private static final int[] HEIGHTS = {1, 7, 20, 300, 1000};
+    private static final int FIELDS = 20;
+
+    @Test
+    void scalarMatchesReference() {
+        compare(RowKernels.scalar());
+    }
+
+    @Test
+    void vectorMatchesReference() {
+        assumeTrue(RowKernels.vector() != null, "jdk.incubator.vector is not available");
+        compare(RowKernels.vector());
+    }
+
+    private static void compare(RowKernels kernels) {
+        SplittableRandom random = new SplittableRandom(3);
+        for(int width : WIDTHS) {
+            int words = (width + Long.SIZE - 1) >>> 6;
+            long lastWordMask = ScalarRowKernels.wordMask(width, words - 1);
+            for(int height : HEIGHTS) {
+                for(int f = 0; f < FIELDS; f++) {
+                    int first = random.nextInt(height + 1);
+                    long[] rows = randomRows(width, words, first, height, random);
+                    String name = kernels + " width " + width + ", height " + height + ", first " + first;
+
+                    for(int i = 0; i < 10; i++) {
+                        int from = random.nextInt(height + 1);
+                        int to = from + random.nextInt(height - from + 1);
+                        assertEquals(findFullRow(rows, words, width, from, to),
+                                kernels.findFullRow(rows, words, lastWordMask, from, to), name);
+                    }
+                    assertEquals(findFullRow(rows, words, width, 0, height),
+                            kernels.findFullRow(rows, words, lastWordMask, 0, height), name);
+
+                    int[] expected = new int[width];
+                    int holes = analyzeColumns(rows, words, width, height, expected);
+                    int[] heights = new int[width + 1];
+                    heights[width] = -1;
+                    assertEquals(holes, kernels.analyzeColumns(rows, words, width, first, height, heights), name);
+                    assertArrayEquals(expected, Arrays.copyOf(heights, width), name);
+                    assertEquals(-1, heights[width], name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rows above first stay empty, below it rows are full, empty or random with a random
+     * density, some columns are left empty all the way down.
+     */
+    private static long[] randomRows(int width, int words, int first, int height, SplittableRandom random) {
+        long[] rows = new long[height * words];
+        double density = random.nextDouble();
+        boolean[] emptyColumn = new boolean[width];
+        for(int x = 0; x < width; x++) {
+            emptyColumn[x] = random.nextInt(8) == 0;
+        }
+        for(int y = first; y < height; y++) {
+            int kind = random.nextInt(10);
+            for(int x = 0; x < width; x++) {
+                boolean set = (kind == 0) || ((kind > 1) && !emptyColumn[x] && (random.nextDouble() < density));
+                if(set) {
+                    rows[y * words + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isSet(long[] rows, int words, int x, int y) {
+        return (rows[y * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    private static int findFullRow(long[] rows, int words, int width, int from, int to) {
+        for(int y = from; y < to; y++) {
+            int x = 0;
+            while((x < width) && isSet(rows, words, x, y)) {
+                x++;
+            }
+            if(x == width) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    private static int analyzeColumns(long[] rows, int words, int width, int height, int[] heights) {
+        int holes = 0;
+        for(int x = 0; x < width; x++) {
+            int y = 0;
+            while((y < height) && !isSet(rows, words, x, y)) {
+                y++;
+            }
+            heights[x] = height - y;
+            for(; y < height; y++) {
+                if(!isSet(rows, words, x, y)) {
+                    holes++;
+                }
+            }
+        }
+        return holes;
+    }
+}
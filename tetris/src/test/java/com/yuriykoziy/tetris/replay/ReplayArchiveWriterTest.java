@@ -0,0 +1,142 @@
+package com.yuriykoziy.tetris.replay;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.yuriykoziy.tetris.random.RandomizerType;
+import com.yuriykoziy.tetris.sim.GameResult;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes archives with {@link ReplayArchiveWriter}, reopens them for appending and reads them
+ * back with {@link ReplayArchive}.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class ReplayArchiveWriterTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] replay(long gameId) {
+        return ReplayRoundTripTest.record(gameId, RandomizerType.BAG, null);
+    }
+
+    private static void append(ReplayArchiveWriter writer, long gameId) throws IOException {
+        byte[] replay = replay(gameId);
+        writer.append(gameId, replay, ReplayPlayer.play(ByteBuffer.wrap(replay)).getScore());
+    }
+
+    @Test
+    void reopenedArchiveKeepsOldReplays() throws IOException {
+        Path file = dir.resolve("games.trpa");
+        try(ReplayArchiveWriter writer = new ReplayArchiveWriter(file)) {
+            for(long id = 0; id < 3; id++) {
+                append(writer, 100 + id);
+            }
+        }
+        try(ReplayArchiveWriter writer = new ReplayArchiveWriter(file)) {
+            assertEquals(3, writer.size());
+            for(long id = 3; id < 5; id++) {
+                append(writer, 100 + id);
+            }
+            assertEquals(5, writer.size());
+        }
+
+        try(ReplayArchive archive = new ReplayArchive(file)) {
+            assertEquals(5, archive.size());
+            for(long id = 0; id < 5; id++) {
+                int i = archive.find(100 + id);
+                assertEquals((int) id, i);
+                ByteBuffer buf = archive.get(i);
+                byte[] stored = new byte[buf.remaining()];
+                buf.get(stored);
+                assertArrayEquals(replay(100 + id), stored);
+                GameResult result = ReplayPlayer.play(archive.get(i));
+                assertEquals(result.getScore(), archive.getScore(i));
+            }
+            assertEquals(-1, archive.find(99));
+            ReplayArchive.Validation validation = archive.validateAll(2);
+            assertEquals(5, validation.getGames());
+            assertEquals(0, validation.getFailures());
+        }
+    }
+
+    @Test
+    void appendingDoesNotTouchClosedArchive() throws IOException {
+        Path file = dir.resolve("games.trpa");
+        try(ReplayArchiveWriter writer = new ReplayArchiveWriter(file)) {
+            append(writer, 1);
+            append(writer, 2);
+        }
+        byte[] closed = Files.readAllBytes(file);
+
+        // appended but not closed, as if the process died before writing the new footer
+        ReplayArchiveWriter writer = new ReplayArchiveWriter(file);
+        append(writer, 3);
+        byte[] written = Files.readAllBytes(file);
+        assertArrayEquals(closed, Arrays.copyOf(written, closed.length));
+
+        writer.close();
+        try(ReplayArchive archive = new ReplayArchive(file)) {
+            assertEquals(3, archive.size());
+            assertEquals(2, archive.find(3));
+        }
+    }
+
+    @Test
+    void reopeningWithoutAppendLeavesFileUnchanged() throws IOException {
+        Path file = dir.resolve("games.trpa");
+        try(ReplayArchiveWriter writer = new ReplayArchiveWriter(file)) {
+            append(writer, 1);
+        }
+        byte[] closed = Files.readAllBytes(file);
+        for(int i = 0; i < 3; i++) {
+            new ReplayArchiveWriter(file).close();
+        }
+        assertArrayEquals(closed, Files.readAllBytes(file));
+    }
+
+    @Test
+    void emptyArchiveCanBeOpened() throws IOException {
+        Path file = dir.resolve("games.trpa");
+        new ReplayArchiveWriter(file).close();
+        new ReplayArchiveWriter(file).close();
+        try(ReplayArchive archive = new ReplayArchive(file)) {
+            assertEquals(0, archive.size());
+        }
+    }
+
+    @Test
+    void validationReportsFailedGames() throws IOException {
+        Path file = dir.resolve("games.trpa");
+        try(ReplayArchiveWriter writer = new ReplayArchiveWriter(file)) {
+            append(writer, 1);
+            writer.append(2, replay(2), -1);
+            writer.append(3, new byte[] {1, 2, 3, 4, 5}, 0);
+        }
+        try(ReplayArchive archive = new ReplayArchive(file)) {
+            ReplayArchive.Validation validation = archive.validateAll(1);
+            assertEquals(3, validation.getGames());
+            assertEquals(2, validation.getFailures());
+            assertEquals(List.of(2L, 3L), new ArrayList<>(validation.getFailedGames().keySet()));
+        }
+    }
+
+    @Test
+    void fileWithoutFooterIsRejected() throws IOException {
+        Path file = dir.resolve("games.trpa");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> new ReplayArchive(file));
+        assertThrows(IOException.class, () -> new ReplayArchiveWriter(file));
+    }
+}
@@ -0,0 +1,76 @@
+package com.yuriykoziy.tetris.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.Input;
+import com.yuriykoziy.tetris.random.RandomizerType;
+import com.yuriykoziy.tetris.sim.GameResult;
+import com.yuriykoziy.tetris.sim.RandomPlayer;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Records games with {@link ReplayRecorder} and plays them back with {@link ReplayPlayer}.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class ReplayRoundTripTest {
+
+    /**
+     * Plays a game of random inputs to the end and returns its replay.
+     */
+    static byte[] record(long seed, RandomizerType randomizer, Board[] played) {
+        ReplayRecorder recorder = new ReplayRecorder(10, 20, 0, randomizer, seed);
+        Board board = recorder.createBoard();
+        RandomPlayer player = new RandomPlayer(seed);
+        board.startGame();
+        while(board.isGameRunning()) {
+            board.step(player.nextInput(board));
+        }
+        if(played != null) {
+            played[0] = board;
+        }
+        return recorder.finish(board);
+    }
+
+    @Test
+    void replayEndsInRecordedState() {
+        for(RandomizerType randomizer : RandomizerType.values()) {
+            for(long seed = 0; seed < 10; seed++) {
+                Board[] played = new Board[1];
+                GameResult result = ReplayPlayer.play(ByteBuffer.wrap(record(seed, randomizer, played)));
+                Board board = played[0];
+                assertFalse(board.isGameRunning());
+                assertEquals(seed, result.getSeed());
+                assertEquals(board.getScore(), result.getScore(), randomizer + " seed " + seed);
+                assertEquals(board.getLinesCleared(), result.getLines());
+                assertEquals(board.getLevel(), result.getLevel());
+                assertEquals(board.getPiecesPlaced(), result.getPieces());
+                assertEquals(board.getTicks(), result.getTicks());
+            }
+        }
+    }
+
+    @Test
+    void changedInputIsDetected() {
+        byte[] replay = record(3, RandomizerType.BAG, null);
+        // the first event follows the header: magic, version, three one byte varints, randomizer, seed
+        int firstEvent = 4 + 1 + 3 + 1 + 8;
+        assertEquals(0, replay[firstEvent] & 0x80, "first event should be a single byte varint");
+        int input = replay[firstEvent] & ReplayFormat.INPUT_MASK;
+        Input changed = (input == Input.HARD_DROP.ordinal()) ? Input.LEFT : Input.HARD_DROP;
+        replay[firstEvent] = (byte) ((replay[firstEvent] & ~ReplayFormat.INPUT_MASK) | changed.ordinal());
+        assertThrows(ReplayMismatchException.class, () -> ReplayPlayer.play(ByteBuffer.wrap(replay)));
+    }
+
+    @Test
+    void invalidHeaderIsRejected() {
+        byte[] replay = record(1, RandomizerType.BAG, null);
+        replay[0] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> ReplayPlayer.play(ByteBuffer.wrap(replay)));
+    }
+}
@@ -0,0 +1,157 @@
+package com.yuriykoziy.tetris.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives a {@link HashedWheelTimer} with ticks of one nanosecond, so {@code advance(n)}
+ * processes ticks up to n.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class HashedWheelTimerTest {
+    private static final int WHEEL_SIZE = 8;
+
+    /**
+     * Records ticks it expired at, reschedules itself while repeats are left.
+     */
+    private static class Recorder extends HashedWheelTimer.Timeout {
+        private final HashedWheelTimer timer;
+        private final List<Long> expired = new ArrayList<>();
+        private final long period;
+        private int repeats;
+
+        Recorder(HashedWheelTimer timer, long period, int repeats) {
+            this.timer = timer;
+            this.period = period;
+            this.repeats = repeats;
+        }
+
+        @Override
+        protected void expire(long tick) {
+            expired.add(tick);
+            if(repeats-- > 0) {
+                timer.schedule(this, period);
+            }
+        }
+    }
+
+    @Test
+    void timeoutExpiresAtItsDeadline() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, 0);
+        Recorder r = new Recorder(timer, 0, 0);
+        timer.schedule(r, 3);
+        assertTrue(r.isScheduled());
+        assertEquals(3, r.getDeadline());
+        assertEquals(1, timer.size());
+
+        assertEquals(0, timer.advance(2));
+        assertTrue(r.expired.isEmpty());
+        assertEquals(1, timer.advance(3));
+        assertEquals(List.of(3L), r.expired);
+        assertFalse(r.isScheduled());
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void delaysLongerThanTheWheelWaitExtraRounds() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, 0);
+        Recorder near = new Recorder(timer, 0, 0);
+        Recorder far = new Recorder(timer, 0, 0);
+        Recorder farther = new Recorder(timer, 0, 0);
+        // all three share one bucket
+        timer.schedule(near, 2);
+        timer.schedule(far, 2 + WHEEL_SIZE);
+        timer.schedule(farther, 2 + 3 * WHEEL_SIZE);
+
+        timer.advance(2 + WHEEL_SIZE - 1);
+        assertEquals(List.of(2L), near.expired);
+        assertTrue(far.expired.isEmpty());
+        timer.advance(2 + 3 * WHEEL_SIZE - 1);
+        assertEquals(List.of(2L + WHEEL_SIZE), far.expired);
+        assertTrue(farther.expired.isEmpty());
+        timer.advance(100);
+        assertEquals(List.of(2L + 3 * WHEEL_SIZE), farther.expired);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void cancelledTimeoutDoesNotExpire() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, 0);
+        Recorder a = new Recorder(timer, 0, 0);
+        Recorder b = new Recorder(timer, 0, 0);
+        Recorder c = new Recorder(timer, 0, 0);
+        timer.schedule(a, 5);
+        timer.schedule(b, 5);
+        timer.schedule(c, 5 + WHEEL_SIZE);
+        timer.cancel(b);
+        timer.cancel(b);
+        assertFalse(b.isScheduled());
+        assertEquals(-1, b.getDeadline());
+        assertEquals(2, timer.size());
+
+        timer.advance(5 + WHEEL_SIZE);
+        assertEquals(List.of(5L), a.expired);
+        assertTrue(b.expired.isEmpty());
+        assertEquals(List.of(5L + WHEEL_SIZE), c.expired);
+    }
+
+    @Test
+    void rescheduleMovesTheDeadline() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, 0);
+        Recorder r = new Recorder(timer, 0, 0);
+        timer.schedule(r, 4);
+        timer.schedule(r, 20);
+        assertEquals(1, timer.size());
+        timer.advance(19);
+        assertTrue(r.expired.isEmpty());
+        timer.advance(20);
+        assertEquals(List.of(20L), r.expired);
+    }
+
+    @Test
+    void periodicTimeoutReschedulesItself() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, 0);
+        // a period of the wheel size lands in the bucket being expired
+        Recorder r = new Recorder(timer, WHEEL_SIZE, 3);
+        timer.schedule(r, 1);
+        assertEquals(4, timer.advance(1000));
+        assertEquals(List.of(1L, 1L + WHEEL_SIZE, 1L + 2 * WHEEL_SIZE, 1L + 3 * WHEEL_SIZE), r.expired);
+        assertFalse(r.isScheduled());
+    }
+
+    @Test
+    void expiringTimeoutMayCancelItsNeighbour() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, 0);
+        Recorder other = new Recorder(timer, 0, 0);
+        Recorder canceller = new Recorder(timer, 0, 0) {
+            @Override
+            protected void expire(long tick) {
+                super.expire(tick);
+                timer.cancel(other);
+            }
+        };
+        // the last scheduled is the head of the bucket and expires first
+        timer.schedule(other, 3);
+        timer.schedule(canceller, 3);
+        assertEquals(1, timer.advance(10));
+        assertEquals(List.of(3L), canceller.expired);
+        assertTrue(other.expired.isEmpty());
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void nanosUntilNextTickFollowsTheClock() {
+        HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1_000, 5_000);
+        assertEquals(1_000, timer.nanosUntilNextTick(5_000));
+        timer.advance(7_500);
+        assertEquals(2, timer.getTick());
+        assertEquals(500, timer.nanosUntilNextTick(7_500));
+    }
+}
@@ -0,0 +1,128 @@
+package com.yuriykoziy.tetris.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.yuriykoziy.tetris.logic.Board;
+import com.yuriykoziy.tetris.logic.BoardSnapshot;
+import com.yuriykoziy.tetris.logic.FieldFrame;
+import com.yuriykoziy.tetris.sim.RandomPlayer;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Streams games through {@link StateEncoder} and checks that {@link StateDecoder} rebuilds
+ * the board after every packet.
+ *
+ * @author Yuriy Koziy
+ * @version 1.01
+ */
+class StateRoundTripTest {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+
+    @Test
+    void decodedBoardMatchesAfterEveryPacket() {
+        for(long seed = 0; seed < 5; seed++) {
+            stream(seed, 0, 10);
+        }
+    }
+
+    @Test
+    void garbageIsStreamed() {
+        int raised = 0;
+        for(long seed = 0; seed < 5; seed++) {
+            raised += stream(seed, 15, 10);
+        }
+        assertTrue(raised > 0, "expected garbage rows on the field");
+    }
+
+    @Test
+    void packetsSplitAcrossReadsAreDecoded() {
+        Board board = new Board(WIDTH, HEIGHT, 5, 7);
+        StateEncoder encoder = new StateEncoder(board, 10);
+        StateDecoder decoder = new StateDecoder(null);
+        RandomPlayer player = new RandomPlayer(7);
+        ByteBuffer out = ByteBuffer.allocate(encoder.getMaxPacketSize());
+        ByteBuffer in = ByteBuffer.allocate(1 << 16);
+        board.startGame();
+        while(board.isGameRunning()) {
+            board.step(player.nextInput(board));
+            out.clear();
+            encoder.encode(out);
+            out.flip();
+            // bytes arrive one at a time
+            while(out.hasRemaining()) {
+                in.put(out.get());
+                in.flip();
+                decoder.decode(in);
+                in.compact();
+            }
+        }
+        assertEquals(0, in.position());
+        assertEquals(encoder.getPacketCount(), decoder.getPacketCount());
+        assertSame(board, decoder);
+    }
+
+    /**
+     * Plays a game of random inputs, sending garbage every given number of ticks,
+     * and compares the decoded board with the played one after each packet.
+     *
+     * @return number of garbage rows raised.
+     */
+    private static int stream(long seed, int garbageTicks, int keyframeTicks) {
+        Board board = new Board(WIDTH, HEIGHT, 5, seed);
+        StateEncoder encoder = new StateEncoder(board, keyframeTicks);
+        StateDecoder decoder = new StateDecoder(null);
+        RandomPlayer player = new RandomPlayer(seed);
+        SplittableRandom holes = new SplittableRandom(seed);
+        ByteBuffer out = ByteBuffer.allocate(encoder.getMaxPacketSize());
+        int received = 0;
+        board.startGame();
+        while(board.isGameRunning()) {
+            if((garbageTicks > 0) && (board.getTicks() % garbageTicks == 0)) {
+                int lines = 1 + holes.nextInt(3);
+                board.receiveGarbage(lines, holes.nextInt(WIDTH));
+                received += lines;
+            }
+            board.step(player.nextInput(board));
+            out.clear();
+            if(encoder.encode(out) > 0) {
+                out.flip();
+                assertEquals(1, decoder.decode(out));
+                assertFalse(out.hasRemaining());
+                assertSame(board, decoder);
+            }
+        }
+        assertEquals(0, decoder.getDesyncCount());
+        assertTrue(encoder.getKeyframeCount() > 1, "expected keyframes during the game");
+        assertFalse(decoder.getSnapshot().isGameRunning());
+        return received - board.getPendingGarbage();
+    }
+
+    private static void assertSame(Board board, StateDecoder decoder) {
+        BoardSnapshot s = decoder.getSnapshot();
+        assertNotNull(s);
+        assertTrue(decoder.isSynced());
+        FieldFrame field = s.getField();
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                assertEquals(board.getField().getType(x, y), field.getType(x, y), "cell " + x + "," + y);
+            }
+        }
+        assertEquals(board.getScore(), s.getScore());
+        assertEquals(board.getLinesCleared(), s.getLines());
+        assertEquals(board.getLevel(), s.getLevel());
+        assertEquals(board.getPreviewType(0), s.getNextType());
+        assertEquals(board.isGameRunning(), s.isGameRunning());
+        if(s.isGameRunning()) {
+            assertEquals(board.getCurrentTetromino().getType(), s.getPieceType());
+            assertEquals(board.getCurrentTetromino().getRotation(), s.getPieceRotation());
+            assertEquals(board.getCurrentTetromino().getXposition(), s.getPieceX());
+            assertEquals(board.getCurrentTetromino().getYposition(), s.getPieceY());
+        }
+    }
+}